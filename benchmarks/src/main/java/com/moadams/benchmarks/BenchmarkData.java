@@ -0,0 +1,33 @@
+package com.moadams.benchmarks;
+
+import com.moadams.enums.TaskStatus;
+import com.moadams.state.TaskStateStore;
+
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Deterministic fixtures shared by the benchmarks.
+ */
+final class BenchmarkData {
+    private BenchmarkData() {
+    }
+
+    /**
+     * Builds a task-state store shaped like a long-running system: mostly COMPLETED,
+     * with a few FAILED and a thin layer of live SUBMITTED/PROCESSING entries.
+     */
+    static TaskStateStore taskStates(int entries) {
+        Random random = new Random(42);
+        TaskStateStore taskStates = new TaskStateStore();
+        for (int i = 0; i < entries; i++) {
+            int roll = random.nextInt(100);
+            TaskStatus status = roll < 90 ? TaskStatus.COMPLETED
+                    : roll < 95 ? TaskStatus.FAILED
+                    : roll < 98 ? TaskStatus.SUBMITTED
+                    : TaskStatus.PROCESSING;
+            taskStates.put(new UUID(random.nextLong(), random.nextLong()), status);
+        }
+        return taskStates;
+    }
+}
@@ -0,0 +1,91 @@
+package com.moadams.benchmarks;
+
+import com.moadams.enums.QueueMode;
+import com.moadams.enums.RejectionPolicy;
+import com.moadams.enums.TaskStatus;
+import com.moadams.model.Task;
+import com.moadams.queue.BackpressureQueue;
+import com.moadams.queue.BoundedPriorityBlockingQueue;
+import com.moadams.queue.WorkStealingTaskQueue;
+import com.moadams.state.TaskStateStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end dispatch latency with a no-op handler: the time from marking a task SUBMITTED and
+ * enqueuing it until a consumer thread has taken it, marked it PROCESSING and then COMPLETED.
+ * The consumer performs the same queue and state-map bookkeeping as TaskWorker, without the
+ * simulated sleep or demo locks, and signals the submitting thread when the task is done.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatchLatencyBenchmark {
+    @Param({"SHARED", "WORK_STEALING"})
+    public QueueMode queueMode;
+
+    private BackpressureQueue<Task> queue;
+    private TaskStateStore taskStates;
+    private Thread consumer;
+    private volatile Thread waiter;
+    private volatile Task completed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        queue = queueMode == QueueMode.WORK_STEALING
+                ? new WorkStealingTaskQueue<>(1, 1024, RejectionPolicy.BLOCK, Task::getPriority, 0)
+                : new BoundedPriorityBlockingQueue<>(1024, RejectionPolicy.BLOCK);
+        taskStates = new TaskStateStore();
+        consumer = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Task task = queue.take();
+                    taskStates.put(task.getId(), TaskStatus.PROCESSING);
+                    taskStates.put(task.getId(), TaskStatus.COMPLETED);
+                    completed = task;
+                    LockSupport.unpark(waiter);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "Bench-Consumer");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        consumer.interrupt();
+        consumer.join();
+    }
+
+    @Benchmark
+    public Task submitAndAwait() throws InterruptedException {
+        Task task = new Task("LatencyTask", 5, "payload");
+        waiter = Thread.currentThread();
+        taskStates.put(task.getId(), TaskStatus.SUBMITTED);
+        queue.put(task);
+        while (completed != task) {
+            LockSupport.park(this);
+        }
+        taskStates.remove(task.getId());
+        return task;
+    }
+}
@@ -0,0 +1,78 @@
+package com.moadams.benchmarks;
+
+import com.moadams.enums.TaskStatus;
+import com.moadams.state.TaskStateStore;
+import com.moadams.util.StatusJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one incremental StatusJournal flush (1,000 transitions) at the same store sizes as
+ * JsonExporterBenchmark, to compare against rewriting the full export.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class StatusJournalBenchmark {
+    private static final int TRANSITIONS_PER_FLUSH = 1000;
+
+    @Param({"10000", "100000", "1000000"})
+    public int entries;
+
+    private TaskStateStore taskStates;
+    private StatusJournal journal;
+    private Path snapshotFile;
+    private UUID[] liveTasks;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        taskStates = BenchmarkData.taskStates(entries);
+        snapshotFile = Files.createTempFile("task_statuses", ".json");
+        journal = new StatusJournal(snapshotFile.toString());
+        taskStates.addTransitionListener(journal);
+        liveTasks = new UUID[TRANSITIONS_PER_FLUSH];
+        for (int i = 0; i < liveTasks.length; i++) {
+            liveTasks[i] = UUID.randomUUID();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void compact() throws IOException {
+        journal.writeSnapshot(taskStates.view());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journal.close();
+        Files.deleteIfExists(journal.getJournalPath());
+        Files.deleteIfExists(snapshotFile);
+    }
+
+    @Benchmark
+    public int transitionAndFlush() throws IOException {
+        for (UUID taskId : liveTasks) {
+            taskStates.put(taskId, TaskStatus.PROCESSING);
+        }
+        return journal.flush();
+    }
+}
@@ -0,0 +1,48 @@
+package com.moadams.benchmarks;
+
+import com.moadams.enums.TaskIdMode;
+import com.moadams.model.Task;
+import com.moadams.model.TaskIds;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of Task construction from 8 concurrent producers, with random UUIDs versus sequence-based IDs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class TaskCreationBenchmark {
+    @Param({"RANDOM_UUID", "SEQUENTIAL"})
+    public TaskIdMode idMode;
+
+    @Setup
+    public void setUp() {
+        if (idMode == TaskIdMode.SEQUENTIAL) {
+            TaskIds.useSequential(1);
+        } else {
+            TaskIds.useRandomUuids();
+        }
+    }
+
+    @Benchmark
+    public Task createTask() {
+        return new Task("bench", 5, "payload");
+    }
+}
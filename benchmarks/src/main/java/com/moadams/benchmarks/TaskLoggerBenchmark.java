@@ -0,0 +1,105 @@
+package com.moadams.benchmarks;
+
+import com.moadams.enums.LogLevel;
+import com.moadams.util.TaskLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call cost of TaskLogger with stdout/stderr redirected to a discarding stream,
+ * so the numbers cover formatting, styling and the synchronized println rather than the terminal.
+ * The contended variant runs the same call from four threads. With async=true the calls only
+ * enqueue into the logger's ring buffer; records the writer cannot keep up with are dropped.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaskLoggerBenchmark {
+    private static final String WORKER_COMPLETED = "Worker pool-1-thread-3 completed Task{id=a1b2c3d4, " +
+            "name='UrgentTask-Producer-HighPriority-1-7', priority=2, retries=0} in 987ms. Total processed: 42";
+    private static final String MONITOR_LINE = "MONITOR - Queue Size: 12 | Active Workers: 4/5 | In-Flight: 5 | " +
+            "Processed Tasks (Total): 1200 | Task Statuses: SUBMITTED:12 PROCESSING:5 COMPLETED:1200 FAILED:3";
+    private static final String PLAIN = "Starting producer: Producer-LowPriority-1";
+
+    @Param({"false", "true"})
+    public boolean async;
+
+    @Param({"true", "false"})
+    public boolean ansi;
+
+    private PrintStream originalOut;
+    private PrintStream originalErr;
+
+    @Setup(Level.Trial)
+    public void redirect() {
+        originalOut = System.out;
+        originalErr = System.err;
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(discard);
+        System.setErr(discard);
+        TaskLogger.setAnsiEnabled(ansi);
+        if (async) {
+            TaskLogger.startAsync(8192);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void restore() {
+        TaskLogger.stopAsync();
+        TaskLogger.setAnsiEnabled(true);
+        System.setOut(originalOut);
+        System.setErr(originalErr);
+    }
+
+    @Benchmark
+    public void logBelowLevel() {
+        TaskLogger.setLevel(LogLevel.INFO);
+        TaskLogger.logLock(PLAIN);
+        TaskLogger.setLevel(LogLevel.DEBUG);
+    }
+
+    @Benchmark
+    public void logWorkerCompleted() {
+        TaskLogger.log(WORKER_COMPLETED);
+    }
+
+    @Benchmark
+    public void logMonitorLine() {
+        TaskLogger.log(MONITOR_LINE);
+    }
+
+    @Benchmark
+    public void logPlain() {
+        TaskLogger.log(PLAIN);
+    }
+
+    @Benchmark
+    public void logLockDebug() {
+        TaskLogger.logLock("Worker pool-1-thread-2 acquired [resource-3] (stripes [61]) for MixedTask-Producer-Mixed-1-3");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void logWorkerCompletedContended() {
+        TaskLogger.log(WORKER_COMPLETED);
+    }
+}
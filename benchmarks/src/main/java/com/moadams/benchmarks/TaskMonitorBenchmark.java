@@ -0,0 +1,50 @@
+package com.moadams.benchmarks;
+
+import com.moadams.consumer.WorkerStats;
+import com.moadams.enums.RejectionPolicy;
+import com.moadams.queue.BoundedPriorityBlockingQueue;
+import com.moadams.service.TaskMonitor;
+import com.moadams.state.TaskStateStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building the monitor's status summary line at increasing task-state store sizes.
+ * The summary reads transition counters, so it should stay flat as the store grows.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class TaskMonitorBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int entries;
+
+    private TaskMonitor monitor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TaskStateStore taskStates = BenchmarkData.taskStates(entries);
+        monitor = new TaskMonitor(new BoundedPriorityBlockingQueue<>(16, RejectionPolicy.BLOCK), new WorkerStats(1), null,
+                taskStates, 1000, null);
+    }
+
+    @Benchmark
+    public String statusSummary() {
+        return monitor.getStatusSummary();
+    }
+}
@@ -0,0 +1,125 @@
+package com.moadams.benchmarks;
+
+import com.moadams.enums.QueueMode;
+import com.moadams.enums.RejectionPolicy;
+import com.moadams.model.Task;
+import com.moadams.queue.BackpressureQueue;
+import com.moadams.queue.BoundedPriorityBlockingQueue;
+import com.moadams.queue.WorkStealingTaskQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Submit/take throughput of the task queues at several producer:consumer ratios.
+ * Producers use offer and consumers use poll so a full or empty queue shows up as a
+ * failed operation rather than a thread parked past the end of an iteration.
+ * Other ratios can be run with JMH's -tg option, e.g. {@code -tg 8,2}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskQueueBenchmark {
+    private static final int TASK_POOL_SIZE = 1024;
+
+    @State(Scope.Group)
+    public static class QueueState {
+        @Param({"SHARED", "WORK_STEALING"})
+        public QueueMode queueMode;
+
+        @Param({"1024"})
+        public int capacity;
+
+        public BackpressureQueue<Task> queue;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            int shards = Runtime.getRuntime().availableProcessors();
+            queue = queueMode == QueueMode.WORK_STEALING
+                    ? new WorkStealingTaskQueue<>(shards, capacity, RejectionPolicy.FAIL_FAST, Task::getPriority, 0)
+                    : new BoundedPriorityBlockingQueue<>(capacity, RejectionPolicy.FAIL_FAST);
+        }
+    }
+
+    /**
+     * Pre-built tasks so the benchmark measures the queue, not Task construction.
+     */
+    @State(Scope.Thread)
+    public static class ProducerState {
+        public Task[] tasks;
+        public int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            tasks = new Task[TASK_POOL_SIZE];
+            for (int i = 0; i < TASK_POOL_SIZE; i++) {
+                int priority = ThreadLocalRandom.current().nextInt(1, 10);
+                tasks[i] = new Task("BenchTask-" + i, priority, "payload");
+            }
+        }
+
+        public Task nextTask() {
+            Task task = tasks[next];
+            next = (next + 1) & (TASK_POOL_SIZE - 1);
+            return task;
+        }
+    }
+
+    @Benchmark
+    @Group("oneToOne")
+    @GroupThreads(1)
+    public boolean oneToOneOffer(QueueState state, ProducerState producer) {
+        return state.queue.offer(producer.nextTask());
+    }
+
+    @Benchmark
+    @Group("oneToOne")
+    @GroupThreads(1)
+    public Task oneToOnePoll(QueueState state) {
+        return state.queue.poll();
+    }
+
+    @Benchmark
+    @Group("fourToFour")
+    @GroupThreads(4)
+    public boolean fourToFourOffer(QueueState state, ProducerState producer) {
+        return state.queue.offer(producer.nextTask());
+    }
+
+    @Benchmark
+    @Group("fourToFour")
+    @GroupThreads(4)
+    public Task fourToFourPoll(QueueState state) {
+        return state.queue.poll();
+    }
+
+    @Benchmark
+    @Group("fourToOne")
+    @GroupThreads(4)
+    public boolean fourToOneOffer(QueueState state, ProducerState producer) {
+        return state.queue.offer(producer.nextTask());
+    }
+
+    @Benchmark
+    @Group("fourToOne")
+    @GroupThreads(1)
+    public Task fourToOnePoll(QueueState state) {
+        return state.queue.poll();
+    }
+}
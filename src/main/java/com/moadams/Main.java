@@ -1,16 +1,20 @@
 package com.moadams;
 
 import com.moadams.enums.DemoType;
+import com.moadams.load.LoadGenerator;
+import com.moadams.load.LoadTestConfig;
 import com.moadams.service.TaskDispatcher;
 import com.moadams.service.TaskMonitor;
 import com.moadams.util.TaskLogger;
 
+import java.io.IOException;
 import java.util.Scanner;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class Main {
-    public static final Object LOCK_A = new Object();
-    public static final Object LOCK_B = new Object();
+    public static final ReentrantLock LOCK_A = new ReentrantLock();
+    public static final ReentrantLock LOCK_B = new ReentrantLock();
 
     public static final String RESET = "\u001B[0m";
     public static final String BLACK = "\u001B[30m";
@@ -25,12 +29,51 @@ public class Main {
     private static Scanner scanner = new Scanner(System.in);
 
     public static void main(String[] args) {
+        if (isHeadless(args)) {
+            runLoadTest(args);
+            return;
+        }
         displayWelcomeMessage();
         mainMenuLoop();
         scanner.close();
         TaskLogger.log("🚪 ConcurQueue Application Exited. Goodbye!");
     }
 
+    /**
+     * Headless mode skips the menu and runs a load test, for CI and load boxes. It is selected with the
+     * {@code --headless} argument or the {@code concurqueue.headless} system property.
+     */
+    private static boolean isHeadless(String[] args) {
+        for (String arg : args) {
+            if (arg.equals("--headless")) {
+                return true;
+            }
+        }
+        return Boolean.getBoolean("concurqueue.headless");
+    }
+
+    private static void runLoadTest(String[] args) {
+        LoadTestConfig config;
+        try {
+            config = LoadTestConfig.parse(args, System.getProperties());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: --headless [--option=value ...], options and defaults: " + LoadTestConfig.describeOptions());
+            System.exit(2);
+            return;
+        }
+        try {
+            new LoadGenerator(config).run();
+        } catch (IOException e) {
+            System.err.println("Could not write the load test summary: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            System.err.println("Load test interrupted.");
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        }
+    }
+
     private static void clearConsole() {
         System.out.print("\033[H\033[2J");
         System.out.flush();
@@ -106,7 +149,7 @@ public class Main {
                 TaskLogger.printSectionHeader("🏁 RACE CONDITION FIX DEMONSTRATION", GREEN);
 
                 String raceFixExplanation = BOLD + "🔍 Race Condition Fix Explanation:" + RESET + "\n\n" +
-                        "The 'processedTaskCount' is handled using " + YELLOW + BOLD + "AtomicInteger" + RESET + ", " +
+                        "The processed-task count is kept in " + YELLOW + BOLD + "striped LongAdder counters" + RESET + " updated on every status transition, " +
                         "which ensures thread-safe increments and accurate final counts, " +
                         "preventing the race condition that would occur with a simple 'int' variable.\n\n" +
                         GREEN + "📊 What to observe:" + RESET + "\n" +
@@ -130,6 +173,7 @@ public class Main {
                         YELLOW + "👀 What to watch for:" + RESET + "\n" +
                         "• Look for " + PURPLE + "[LOCK_DEBUG]" + RESET + " messages\n" +
                         "• Notice when workers stop progressing\n" +
+                        "• The monitor's watchdog reports the deadlocked workers with each lock's owner and waiters\n" +
                         "• You may need " + BOLD + "Ctrl+C" + RESET + " to terminate";
 
                 TaskLogger.printBox(deadlockExplanation, RED);
@@ -140,12 +184,13 @@ public class Main {
                 TaskLogger.printSectionHeader("🔧 DEADLOCK RESOLUTION DEMONSTRATION", GREEN);
 
                 String resolutionExplanation = BOLD + GREEN + "🛠️  DEADLOCK RESOLUTION EXPLANATION:" + RESET + "\n\n" +
-                        "Worker threads acquire locks using a " + GREEN + BOLD + "consistent, predefined order" + RESET +
-                        " (always LOCK_A then LOCK_B).\n\n" +
+                        "Each task declares the resources it needs, and workers lock them through striped locks in a " +
+                        GREEN + BOLD + "consistent, predefined order" + RESET + " (ascending stripe index).\n\n" +
                         GREEN + BOLD + "✅ This prevents deadlocks completely!" + RESET + "\n\n" +
                         BLUE + "📈 What you'll see:" + RESET + "\n" +
                         "• All " + PURPLE + "[LOCK_DEBUG]" + RESET + " messages show successful operations\n" +
                         "• Tasks complete successfully without hanging\n" +
+                        "• Tasks on different resources run in parallel\n" +
                         "• Consistent processing throughout the demonstration";
 
                 TaskLogger.printBox(resolutionExplanation, GREEN);
@@ -188,11 +233,13 @@ public class Main {
 
         Thread monitorThread = new Thread(new TaskMonitor(
                 dispatcher.getTaskQueue(),
-                dispatcher.getWorkerPool(),
+                dispatcher.getWorkerStats(),
+                dispatcher.getLatencyTracker(),
                 dispatcher.getTaskStates(),
-                dispatcher.getProcessedTaskCount(),
                 monitorInterval,
-                jsonExportPath
+                jsonExportPath,
+                dispatcher.getTenantAdmission(),
+                dispatcher.getWatchdog()
         ), "TaskMonitor-Thread");
         monitorThread.start();
 
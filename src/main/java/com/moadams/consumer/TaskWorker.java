@@ -1,172 +1,574 @@
 package com.moadams.consumer;
 
 import com.moadams.model.Task;
+import com.moadams.enums.LogLevel;
 import com.moadams.enums.TaskStatus;
+import com.moadams.handler.AsyncTaskHandler;
+import com.moadams.handler.TaskHandlerRegistry;
+import com.moadams.lock.ResourceLockManager;
+import com.moadams.metrics.TaskLatencyTracker;
+import com.moadams.model.RetryPolicy;
+import com.moadams.retry.RetryScheduler;
+import com.moadams.state.TaskStateStore;
 import com.moadams.util.TaskLogger;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
 
 /**
  * TaskWorker represents a consumer thread that fetches tasks from the shared queue,
- * simulates processing, updates task status, and tracks processed task count.
- * It also includes a retry mechanism for failed tasks.
- * This class now also demonstrates a potential deadlock scenario and its resolution.
+ * runs each with the handler registered for it, updates task status, and tracks processed task count.
+ * It also includes a retry mechanism for failed tasks, shared by every handler.
+ * This class now also demonstrates a potential deadlock scenario (two global locks in conflicting order)
+ * and its resolution (per-resource striped locks taken in a canonical order).
+ * With a batch size above one, each wakeup drains up to that many tasks, optionally lingering
+ * briefly for more, and processes them in priority order.
+ * A worker can be retired: it finishes the task or batch in hand and then leaves its run loop, so no task is lost.
+ * A deadlocked or stuck worker can be recovered: it is interrupted, re-queues the task in hand and leaves; after
+ * {@code maxRecoveries} such re-queues the attempt counts as failed, so a task that always stalls cannot cycle forever.
+ * Cancelled tasks are discarded and tasks past their deadline expire when taken, without running.
  */
 public class TaskWorker implements Runnable {
+    private static final long RETIREMENT_CHECK_MILLIS = 100;
+
     private final BlockingQueue<Task> taskQueue;
-    private final ConcurrentHashMap<UUID, TaskStatus> taskStates;
-    private final AtomicInteger processedTaskCount;
+    private final TaskStateStore taskStates;
     private final ConcurrentHashMap<UUID, Integer> retryCounts;
     private final Object lockA;
     private final Object lockB;
     private final boolean introduceDeadlock;
-    private static final int MAX_RETRIES = 3;
+    private final WorkerStats workerStats;
+    private final TaskLatencyTracker latencyTracker;
+    private final RetryScheduler retryScheduler;
+    private final ResourceLockManager resourceLockManager;
+    private final long lockTimeoutMillis;
+    private final int maxLockTimeouts;
+    private final int maxRecoveries;
+    private final int maxBatchSize;
+    private final long maxLingerMillis;
+    private final TaskHandlerRegistry handlers;
+    private final Semaphore asyncPermits;
+    private final Queue<Task> unfinished;
+    private volatile boolean retired;
+    private volatile boolean recovering;
+    private volatile Thread thread;
+    private volatile Task currentTask;
+    private volatile long currentSinceNanos;
 
     /**
      * Constructs a TaskWorker.
      * @param taskQueue The shared blocking queue from which tasks are consumed.
-     * @param taskStates A concurrent map to update the status of tasks.
-     * @param processedTaskCount An atomic integer to safely track the total number of tasks processed.
+     * @param taskStates The store used to update the status of tasks.
      * @param retryCounts A concurrent map to store retry counts for tasks.
      * @param lockA Shared lock A for deadlock demonstration.
      * @param lockB Shared lock B for deadlock demonstration.
-     * @param introduceDeadlock If true, workers will use conflicting lock orders (deadlock prone).
-     * If false, workers will use a fixed lock order (deadlock resolved).
+     * @param introduceDeadlock If true, workers will use conflicting orders on lockA/lockB (deadlock prone).
+     * If false, workers lock the task's resource keys through the lock manager (deadlock resolved).
+     * @param workerStats Shared activity counters reported by TaskMonitor.
+     * @param latencyTracker Shared histograms that each finished attempt is recorded into.
+     * @param retryScheduler Holds failed tasks for their backoff delay and dead-letters exhausted ones.
+     * @param resourceLockManager Striped locks for task resource keys, used when introduceDeadlock is false.
+     * @param lockTimeoutMillis How long to wait for a task's resource locks before re-queuing it.
+     * @param maxLockTimeouts How many lock timeouts an attempt may re-queue after before it counts as failed.
+     * @param maxRecoveries How many watchdog recoveries an attempt may re-queue after before it counts as failed.
+     * @param maxBatchSize The most tasks taken per wakeup; 1 takes tasks one at a time.
+     * @param maxLingerMillis How long a partial batch waits for more tasks before processing starts.
+     * @param handlers The handlers tasks are run with, resolved per task.
+     * @param asyncPermits Bounds how many tasks async handlers have outstanding, shared by all workers.
+     * @param unfinished Receives the tasks a shutdown interrupts mid-processing, or that cannot be returned to
+     * the queue, so the dispatcher can spill them instead of failing them.
      */
     public TaskWorker(BlockingQueue<Task> taskQueue,
-                      ConcurrentHashMap<UUID, TaskStatus> taskStates,
-                      AtomicInteger processedTaskCount,
+                      TaskStateStore taskStates,
                       ConcurrentHashMap<UUID, Integer> retryCounts,
-                      Object lockA, Object lockB, boolean introduceDeadlock) {
+                      Object lockA, Object lockB, boolean introduceDeadlock,
+                      WorkerStats workerStats, TaskLatencyTracker latencyTracker, RetryScheduler retryScheduler,
+                      ResourceLockManager resourceLockManager, long lockTimeoutMillis, int maxLockTimeouts,
+                      int maxRecoveries, int maxBatchSize, long maxLingerMillis,
+                      TaskHandlerRegistry handlers, Semaphore asyncPermits, Queue<Task> unfinished) {
         this.taskQueue = taskQueue;
         this.taskStates = taskStates;
-        this.processedTaskCount = processedTaskCount;
         this.retryCounts = retryCounts;
         this.lockA = lockA;
         this.lockB = lockB;
         this.introduceDeadlock = introduceDeadlock;
+        this.workerStats = workerStats;
+        this.latencyTracker = latencyTracker;
+        this.retryScheduler = retryScheduler;
+        this.resourceLockManager = resourceLockManager;
+        this.lockTimeoutMillis = lockTimeoutMillis;
+        this.maxLockTimeouts = maxLockTimeouts;
+        this.maxRecoveries = maxRecoveries;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxLingerMillis = maxLingerMillis;
+        this.handlers = handlers;
+        this.asyncPermits = asyncPermits;
+        this.unfinished = unfinished;
     }
 
     @Override
     public void run() {
+        thread = Thread.currentThread();
         TaskLogger.log("Worker " + Thread.currentThread().getName() + " started.");
+        List<Task> batch = new ArrayList<>(maxBatchSize);
         try {
-            while (!Thread.currentThread().isInterrupted()) {
-                Task task = taskQueue.take();
-                TaskLogger.log("Worker " + Thread.currentThread().getName() + " picked up " + task);
-
-
-                taskStates.put(task.getId(), TaskStatus.PROCESSING);
-
-                try {
-                    if (introduceDeadlock) {
-
-
-                        if (task.getId().getLeastSignificantBits() % 2 == 0) {
-                            synchronized (lockA) {
-                                TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " acquired LOCK_A for " + task.getName());
-                                Thread.sleep(ThreadLocalRandom.current().nextLong(50, 150));
-                                TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " attempting to acquire LOCK_B for " + task.getName());
-                                synchronized (lockB) {
-                                    TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " acquired LOCK_B for " + task.getName());
-
-                                    simulateTaskProcessing(task);
-                                }
-                                TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " released LOCK_B for " + task.getName());
-                            }
-                            TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " released LOCK_A for " + task.getName());
-                        } else {
-                            synchronized (lockB) {
-                                TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " acquired LOCK_B for " + task.getName());
-                                Thread.sleep(ThreadLocalRandom.current().nextLong(50, 150));
-                                TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " attempting to acquire LOCK_A for " + task.getName());
-                                synchronized (lockA) {
-                                    TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " acquired LOCK_A for " + task.getName());
-
-                                    simulateTaskProcessing(task);
-                                }
-                                TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " released LOCK_A for " + task.getName());
-                            }
-                            TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " released LOCK_B for " + task.getName());
-                        }
-                    } else {
-
-                        synchronized (lockA) {
-                            TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " acquired LOCK_A for " + task.getName());
-                            Thread.sleep(ThreadLocalRandom.current().nextLong(50, 150));
-                            TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " attempting to acquire LOCK_B for " + task.getName());
-                            synchronized (lockB) {
-                                TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " acquired LOCK_B for " + task.getName());
-
-                                simulateTaskProcessing(task);
-                            }
-                            TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " released LOCK_B for " + task.getName());
-                        }
-                        TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " released LOCK_A for " + task.getName());
+            while (!Thread.currentThread().isInterrupted() && !retired) {
+                if (maxBatchSize == 1) {
+                    Task task = awaitTask();
+                    if (task != null) {
+                        process(task);
                     }
-
-                } catch (InterruptedException e) {
-                    TaskLogger.logError("Worker " + Thread.currentThread().getName() +
-                            " interrupted during processing of " + task.getName() + ": " + e.getMessage());
-                    taskStates.put(task.getId(), TaskStatus.FAILED);
-                    Thread.currentThread().interrupt();
-                } catch (Exception e) {
-                    TaskLogger.logError("Worker " + Thread.currentThread().getName() +
-                            " encountered an unexpected error processing " + task.getName() + ": " + e.getMessage());
-                    taskStates.put(task.getId(), TaskStatus.FAILED);
+                    continue;
                 }
+                if (!takeBatch(batch)) {
+                    continue;
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        requeue(batch.subList(i, batch.size()));
+                        break;
+                    }
+                    process(batch.get(i));
+                }
+                batch.clear();
             }
         } catch (InterruptedException e) {
             TaskLogger.log("Worker " + Thread.currentThread().getName() + " interrupted and shutting down.");
             Thread.currentThread().interrupt();
         }
-        TaskLogger.log("Worker " + Thread.currentThread().getName() + " stopped.");
+        TaskLogger.log("Worker " + Thread.currentThread().getName() + (retired ? " retired." : " stopped."));
     }
 
     /**
-     * Simulates the actual task processing, including potential failure and retry logic.
-     * This logic was extracted to be called after locks are acquired.
-     * @param task The task to process.
-     * @throws InterruptedException If the thread is interrupted during sleep.
+     * Asks the worker to leave its run loop once the task or batch it holds is finished.
+     * An idle worker notices within {@value #RETIREMENT_CHECK_MILLIS}ms.
      */
-    private void simulateTaskProcessing(Task task) throws InterruptedException {
+    public void retire() {
+        retired = true;
+    }
 
-        long processingTime = ThreadLocalRandom.current().nextLong(200, 2001);
-        Thread.sleep(processingTime);
+    public boolean isRetired() {
+        return retired;
+    }
 
+    /**
+     * Interrupts the worker to free it from a deadlock or stall. The task it holds is re-queued if the
+     * interrupt reaches it, and the worker then leaves its run loop; a thread blocked entering a
+     * {@code synchronized} block cannot be interrupted and stays stuck.
+     */
+    public void recover() {
+        recovering = true;
+        retired = true;
+        Thread current = thread;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
 
-        boolean failed = ThreadLocalRandom.current().nextInt(10) < 1; // 10% chance
-        if (failed && task.getRetryCount() < MAX_RETRIES) {
-            task.incrementRetryCount();
-            retryCounts.put(task.getId(), task.getRetryCount());
-            taskStates.put(task.getId(), TaskStatus.FAILED);
+    /**
+     * @return The thread running this worker, or null before it starts. Only meaningful for platform-pool workers.
+     */
+    public Thread getThread() {
+        return thread;
+    }
+
+    /**
+     * @return The task this worker is processing, or null between tasks and once a task is handed to an async handler.
+     */
+    public Task getCurrentTask() {
+        return currentTask;
+    }
+
+    /**
+     * @return The System.nanoTime() at which the worker started its current task.
+     */
+    public long getCurrentSinceNanos() {
+        return currentSinceNanos;
+    }
+
+    /**
+     * Waits for the next task, waking periodically to check for retirement.
+     * @return The task, or null if the worker was retired while idle.
+     */
+    private Task awaitTask() throws InterruptedException {
+        while (!retired) {
+            Task task = taskQueue.poll(RETIREMENT_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+            if (task != null) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Blocks for one task, then drains up to maxBatchSize - 1 more without blocking.
+     * If the batch is still short it lingers up to maxLingerMillis for stragglers.
+     * The batch is sorted so tasks run in priority order; a task arriving mid-batch
+     * can therefore wait behind at most maxBatchSize - 1 lower-priority tasks on this worker.
+     * @return false if the worker was retired before any task arrived.
+     */
+    private boolean takeBatch(List<Task> batch) throws InterruptedException {
+        Task first = awaitTask();
+        if (first == null) {
+            return false;
+        }
+        batch.add(first);
+        taskQueue.drainTo(batch, maxBatchSize - 1);
+        if (batch.size() < maxBatchSize && maxLingerMillis > 0) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
             try {
-                taskQueue.put(task);
-                TaskLogger.logWarning("Worker " + Thread.currentThread().getName() +
-                        " failed processing " + task + ". Retrying (" +
-                        task.getRetryCount() + "/" + MAX_RETRIES + ").");
+                while (batch.size() < maxBatchSize) {
+                    Task next = taskQueue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    taskQueue.drainTo(batch, maxBatchSize - batch.size());
+                }
             } catch (InterruptedException e) {
-                TaskLogger.logError("Worker " + Thread.currentThread().getName() +
-                        " interrupted while re-queuing " + task.getName() + ": " + e.getMessage());
                 Thread.currentThread().interrupt();
             }
-        } else {
+        }
+        Collections.sort(batch);
+        return true;
+    }
 
-            if (failed) {
-                taskStates.put(task.getId(), TaskStatus.FAILED);
+    /**
+     * Returns unprocessed batch tasks to the queue when the worker is interrupted mid-batch.
+     * Any the full queue refuses are handed to the dispatcher as unfinished.
+     */
+    private void requeue(List<Task> remaining) {
+        for (Task task : remaining) {
+            task.markEnqueued();
+            if (!taskQueue.offer(task)) {
+                unfinished.add(task);
+            }
+        }
+    }
+
+    /**
+     * Processes a single task that has already been taken from the queue.
+     * Platform-pool workers call this from their run loop; in virtual-thread mode
+     * the dispatcher calls it directly on a fresh virtual thread per task.
+     * @param task The task to process.
+     */
+    public void process(Task task) {
+        if (!task.claim()) {
+            discardCancelled(task);
+            return;
+        }
+        try {
+            if (task.isExpired(System.nanoTime())) {
+                expire(task);
+                return;
+            }
+            processClaimed(task);
+        } finally {
+            task.release();
+            if (task.isCancelled()) {
+                // The interrupt was aimed at the task, not the worker; don't let it stop the next task.
+                Thread.interrupted();
+            }
+        }
+    }
+
+    private void processClaimed(Task task) {
+        task.markTaken();
+        workerStats.taskStarted();
+        currentSinceNanos = System.nanoTime();
+        currentTask = task;
+        boolean handedOff = false;
+        try {
+            if (TaskLogger.isEnabled(LogLevel.INFO)) {
+                TaskLogger.log("Worker " + Thread.currentThread().getName() + " picked up " + task);
+            }
+
+
+            taskStates.put(task.getId(), TaskStatus.PROCESSING);
+
+            try {
+                if (introduceDeadlock) {
+                    if (task.getId().getLeastSignificantBits() % 2 == 0) {
+                        handedOff = processWithDemoLocks(task, lockA, "LOCK_A", lockB, "LOCK_B");
+                    } else {
+                        handedOff = processWithDemoLocks(task, lockB, "LOCK_B", lockA, "LOCK_A");
+                    }
+                } else {
+
+                    handedOff = processWithResourceLocks(task);
+                }
+
+            } catch (InterruptedException e) {
+                if (task.isCancelled()) {
+                    taskStates.put(task.getId(), TaskStatus.CANCELLED);
+                    retryCounts.remove(task.getId());
+                    TaskLogger.logWarning("Worker " + Thread.currentThread().getName() + " stopped cancelled " + task + ".");
+                    return;
+                }
+                if (recovering) {
+                    if (task.incrementRecoveryCount() > maxRecoveries) {
+                        finishAttempt(task, new TimeoutException("Freed by the watchdog " + (maxRecoveries + 1) + " times"),
+                                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - currentSinceNanos));
+                    } else {
+                        TaskLogger.logWarning("Worker " + Thread.currentThread().getName() + " freed by the watchdog; re-queuing " +
+                                task + " (" + task.getRecoveryCount() + "/" + maxRecoveries + ").");
+                        requeueOrDefer(task);
+                    }
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                // Otherwise only a shutdown interrupts a worker; the attempt did not finish, so the task is kept, not failed.
+                TaskLogger.logWarning("Worker " + Thread.currentThread().getName() +
+                        " interrupted during processing of " + task.getName() + "; returning it as unfinished.");
+                taskStates.put(task.getId(), TaskStatus.SUBMITTED);
+                unfinished.add(task);
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
                 TaskLogger.logError("Worker " + Thread.currentThread().getName() +
-                        " failed processing " + task + ". Max retries reached. Task abandoned.");
+                        " encountered an unexpected error processing " + task.getName() + ": " + e.getMessage());
+                taskStates.put(task.getId(), TaskStatus.FAILED);
+                latencyTracker.recordAttempt(task, TaskStatus.FAILED, true);
+            }
+        } finally {
+            currentTask = null;
+            if (handedOff) {
+                workerStats.taskHandedOff();
             } else {
-                taskStates.put(task.getId(), TaskStatus.COMPLETED);
-                processedTaskCount.incrementAndGet();
-                TaskLogger.log("Worker " + Thread.currentThread().getName() + " completed " + task +
-                        " in " + processingTime + "ms. Total processed: " + processedTaskCount.get());
+                workerStats.taskFinished();
+            }
+        }
+    }
+
+    /**
+     * Drops a task that was cancelled while it waited in the queue.
+     */
+    private void discardCancelled(Task task) {
+        taskStates.replace(task.getId(), TaskStatus.SUBMITTED, TaskStatus.CANCELLED);
+        retryCounts.remove(task.getId());
+        if (TaskLogger.isEnabled(LogLevel.INFO)) {
+            TaskLogger.log("Worker " + Thread.currentThread().getName() + " discarded cancelled " + task + ".");
+        }
+    }
+
+    /**
+     * Drops a task whose deadline passed while it waited in the queue, without running it.
+     */
+    private void expire(Task task) {
+        taskStates.put(task.getId(), TaskStatus.EXPIRED);
+        retryCounts.remove(task.getId());
+        TaskLogger.logWarning("Worker " + Thread.currentThread().getName() + " dropped " + task + ": deadline passed " +
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - task.getDeadlineNanos()) + "ms before it could start.");
+    }
+
+    /**
+     * Puts a task whose attempt did not run back on the queue, or, if the queue is full, hands it to the retry
+     * scheduler, which defers a due task tick by tick while the queue is full and spills it at shutdown.
+     */
+    private void requeueOrDefer(Task task) {
+        taskStates.put(task.getId(), TaskStatus.SUBMITTED);
+        task.markEnqueued();
+        if (!taskQueue.offer(task)) {
+            taskStates.put(task.getId(), TaskStatus.RETRY_SCHEDULED);
+            retryScheduler.schedule(task, 0);
+        }
+    }
+
+    /**
+     * Locks only the resources the task declares, through the striped lock manager's canonical order,
+     * so tasks on disjoint resources run in parallel without risking deadlock.
+     * If the locks cannot be acquired in time the task goes back on the queue instead of blocking the worker;
+     * after {@code maxLockTimeouts} such re-queues the attempt fails, so tasks contending for the same locks
+     * cannot cycle forever.
+     * @return true if the task was handed to an async handler and is still outstanding.
+     */
+    private boolean processWithResourceLocks(Task task) throws InterruptedException {
+        Set<String> keys = task.getResourceKeys();
+        if (keys.isEmpty()) {
+            return processWithinLocks(task);
+        }
+
+        ResourceLockManager.ResourceLocks locks = resourceLockManager.tryAcquire(keys, lockTimeoutMillis, TimeUnit.MILLISECONDS);
+        if (locks == null) {
+            if (task.incrementLockTimeoutCount() > maxLockTimeouts) {
+                task.resetLockTimeoutCount();
+                finishAttempt(task, new TimeoutException("Timed out " + (maxLockTimeouts + 1) + " times waiting for " + keys),
+                        lockTimeoutMillis);
+                return false;
+            }
+            TaskLogger.logWarning("Worker " + Thread.currentThread().getName() + " timed out after " + lockTimeoutMillis +
+                    "ms waiting for " + keys + " for " + task.getName() + ". Re-queuing (" + task.getLockTimeoutCount() +
+                    "/" + maxLockTimeouts + ").");
+            requeueOrDefer(task);
+            return false;
+        }
+        task.resetLockTimeoutCount();
+        boolean handedOff;
+        try (locks) {
+            if (TaskLogger.isEnabled(LogLevel.DEBUG)) {
+                TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " acquired " + keys +
+                        " (stripes " + Arrays.toString(locks.getStripes()) + ") for " + task.getName());
+            }
+            handedOff = processWithinLocks(task);
+        }
+        if (TaskLogger.isEnabled(LogLevel.DEBUG)) {
+            TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " released " + keys + " for " + task.getName());
+        }
+        return handedOff;
+    }
+
+    /**
+     * Takes the two demonstration locks in the given order, pausing in between so workers taking them in the
+     * opposite order deadlock. Locks that are {@link Lock}s are taken interruptibly, so a deadlock among them
+     * can be broken by interrupting one of the workers; plain monitors cannot.
+     * @return true if the task was handed to an async handler and is still outstanding.
+     */
+    private boolean processWithDemoLocks(Task task, Object first, String firstName, Object second, String secondName)
+            throws InterruptedException {
+        if (first instanceof Lock firstLock && second instanceof Lock secondLock) {
+            firstLock.lockInterruptibly();
+            try {
+                TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " acquired " + firstName + " for " + task.getName());
+                Thread.sleep(ThreadLocalRandom.current().nextLong(50, 150));
+                TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " attempting to acquire " + secondName + " for " + task.getName());
+                secondLock.lockInterruptibly();
+                try {
+                    TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " acquired " + secondName + " for " + task.getName());
+                    return processWithinLocks(task);
+                } finally {
+                    secondLock.unlock();
+                    TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " released " + secondName + " for " + task.getName());
+                }
+            } finally {
+                firstLock.unlock();
+                TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " released " + firstName + " for " + task.getName());
             }
-            retryCounts.remove(task.getId());
         }
+        boolean handedOff;
+        synchronized (first) {
+            TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " acquired " + firstName + " for " + task.getName());
+            Thread.sleep(ThreadLocalRandom.current().nextLong(50, 150));
+            TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " attempting to acquire " + secondName + " for " + task.getName());
+            synchronized (second) {
+                TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " acquired " + secondName + " for " + task.getName());
+                handedOff = processWithinLocks(task);
+            }
+            TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " released " + secondName + " for " + task.getName());
+        }
+        TaskLogger.logLock("Worker " + Thread.currentThread().getName() + " released " + firstName + " for " + task.getName());
+        return handedOff;
+    }
+
+    /**
+     * Runs the task with the handler registered for it. A blocking handler runs to completion here; an async
+     * handler is started, and the attempt is finished by whichever thread completes its stage.
+     * @return true if the task was handed to an async handler and is still outstanding.
+     * @throws InterruptedException If the thread is interrupted while a blocking handler runs.
+     */
+    private boolean processWithinLocks(Task task) throws InterruptedException {
+        TaskHandlerRegistry.Registration registration = handlers.resolve(task);
+        if (registration.isAsync()) {
+            startAsync(task, registration.getAsyncHandler());
+            return true;
+        }
+        workerStats.processingStarted();
+        long started = System.nanoTime();
+        Exception failure = null;
+        try {
+            registration.getHandler().handle(task);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            failure = e;
+        } finally {
+            workerStats.processingFinished();
+        }
+        finishAttempt(task, failure, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return false;
+    }
+
+    /**
+     * Starts an async handler once the in-flight limit allows, and finishes the attempt when its stage completes.
+     */
+    private void startAsync(Task task, AsyncTaskHandler handler) throws InterruptedException {
+        asyncPermits.acquire();
+        long started = System.nanoTime();
+        CompletionStage<?> stage;
+        try {
+            stage = handler.handle(task);
+            if (stage == null) {
+                throw new IllegalStateException("Async handler returned no stage");
+            }
+        } catch (RuntimeException e) {
+            stage = CompletableFuture.failedFuture(e);
+        }
+        stage.whenComplete((result, error) -> {
+            try {
+                finishAttempt(task, unwrap(error), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            } catch (RuntimeException e) {
+                TaskLogger.logError("Failed to record the outcome of " + task + ": " + e);
+            } finally {
+                asyncPermits.release();
+                workerStats.awaitedTaskFinished();
+            }
+        });
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * Records the outcome of an attempt: a failed task is handed to the retry scheduler for its policy's backoff
+     * delay rather than re-queued immediately, and is dead-lettered once its retries are exhausted.
+     * @param task The task whose attempt finished.
+     * @param failure Why the attempt failed, or null if it succeeded.
+     * @param elapsedMillis How long the handler ran.
+     */
+    private void finishAttempt(Task task, Throwable failure, long elapsedMillis) {
+        task.resetRecoveryCount();
+        String thread = Thread.currentThread().getName();
+        RetryPolicy retryPolicy = retryScheduler.policyFor(task);
+        if (failure != null && task.getRetryCount() < retryPolicy.getMaxRetries()) {
+            task.incrementRetryCount();
+            retryCounts.put(task.getId(), task.getRetryCount());
+            taskStates.put(task.getId(), TaskStatus.RETRY_SCHEDULED);
+            latencyTracker.recordAttempt(task, TaskStatus.FAILED, false);
+            long delayMillis = retryPolicy.nextDelayMillis(task.getRetryCount());
+            retryScheduler.schedule(task, delayMillis);
+            TaskLogger.logWarning("Worker " + thread + " failed processing " + task + " (" + failure.getMessage() +
+                    "). Retrying (" + task.getRetryCount() + "/" + retryPolicy.getMaxRetries() + ") in " + delayMillis + "ms.");
+            return;
+        }
+        if (failure != null) {
+            taskStates.put(task.getId(), TaskStatus.FAILED);
+            latencyTracker.recordAttempt(task, TaskStatus.FAILED, true);
+            retryScheduler.deadLetter(task, "Failed after " + task.getRetryCount() + " retries: " + failure);
+            TaskLogger.logError("Worker " + thread + " failed processing " + task + " (" + failure.getMessage() +
+                    "). Max retries reached. Task moved to dead letters.");
+        } else {
+            taskStates.put(task.getId(), TaskStatus.COMPLETED);
+            latencyTracker.recordAttempt(task, TaskStatus.COMPLETED, true);
+            TaskLogger.log("Worker " + thread + " completed " + task +
+                    " in " + elapsedMillis + "ms. Total processed: " + taskStates.getCounters().getProcessedCount());
+        }
+        retryCounts.remove(task.getId());
     }
 }
\ No newline at end of file
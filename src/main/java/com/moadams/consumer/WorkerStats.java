@@ -0,0 +1,87 @@
+package com.moadams.consumer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * WorkerStats tracks worker activity independently of how workers are scheduled,
+ * so TaskMonitor reports the same figures for platform pools and virtual threads.
+ * In-flight tasks have left the queue but not finished; active tasks are past
+ * lock acquisition and are being processed. Awaiting tasks were handed to an async handler and no longer
+ * occupy a worker; their attempt finishes when the handler's stage completes.
+ */
+public class WorkerStats {
+    private volatile int concurrencyLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger awaiting = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+
+    /**
+     * @param concurrencyLimit The maximum number of tasks that may be in flight at once.
+     */
+    public WorkerStats(int concurrencyLimit) {
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    void taskStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    void processingStarted() {
+        active.incrementAndGet();
+    }
+
+    void processingFinished() {
+        active.decrementAndGet();
+    }
+
+    void taskFinished() {
+        inFlight.decrementAndGet();
+        completed.increment();
+    }
+
+    void taskHandedOff() {
+        inFlight.decrementAndGet();
+        awaiting.incrementAndGet();
+    }
+
+    void awaitedTaskFinished() {
+        awaiting.decrementAndGet();
+        completed.increment();
+    }
+
+    public int getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    /**
+     * Updates the limit as workers are added or retired by the autoscaler.
+     * @param concurrencyLimit The current number of workers.
+     */
+    public void setConcurrencyLimit(int concurrencyLimit) {
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    /**
+     * @return The number of tasks outstanding in async handlers.
+     */
+    public int getAwaitingCount() {
+        return awaiting.get();
+    }
+
+    /**
+     * @return The number of tasks that have finished a processing attempt, whatever the outcome.
+     */
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+}
@@ -0,0 +1,13 @@
+package com.moadams.enums;
+
+/**
+ * How a load-test producer spaces its submissions around the configured mean rate.
+ */
+public enum ArrivalProcess {
+    /** One task every 1/rate seconds. */
+    CONSTANT,
+    /** Exponentially distributed gaps with mean 1/rate: independent arrivals, as from many uncoordinated clients. */
+    POISSON,
+    /** Back-to-back bursts of tasks, the bursts arriving as a Poisson process, keeping the same mean rate. */
+    BURSTY
+}
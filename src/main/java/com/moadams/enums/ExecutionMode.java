@@ -0,0 +1,11 @@
+package com.moadams.enums;
+
+/**
+ * How TaskDispatcher runs tasks once they leave the queue.
+ */
+public enum ExecutionMode {
+    /** A fixed pool of platform threads, each running a long-lived TaskWorker loop. */
+    PLATFORM_POOL,
+    /** A dispatch loop that starts one virtual thread per task, capped by a semaphore. */
+    VIRTUAL_THREADS
+}
@@ -0,0 +1,13 @@
+package com.moadams.enums;
+
+/**
+ * The intervals of a task's life that TaskLatencyTracker records.
+ */
+public enum LatencySpan {
+    /** From being put on the queue until a worker takes it. */
+    QUEUE_WAIT,
+    /** From being taken until the attempt finishes. */
+    SERVICE,
+    /** From first submission until the task reaches COMPLETED or FAILED. */
+    END_TO_END
+}
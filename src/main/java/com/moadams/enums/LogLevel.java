@@ -0,0 +1,15 @@
+package com.moadams.enums;
+
+/**
+ * Severity levels understood by TaskLogger, lowest first.
+ */
+public enum LogLevel {
+    /** Lock acquisition and release tracing. */
+    DEBUG,
+    /** Normal progress, including success messages. */
+    INFO,
+    WARN,
+    ERROR,
+    /** Disables all log output. */
+    OFF
+}
@@ -0,0 +1,11 @@
+package com.moadams.enums;
+
+/**
+ * How TaskDispatcher lays out its task queue.
+ */
+public enum QueueMode {
+    /** One shared bounded priority queue that every worker takes from. */
+    SHARED,
+    /** One local priority shard per worker, with idle workers stealing from their peers. */
+    WORK_STEALING
+}
@@ -0,0 +1,13 @@
+package com.moadams.enums;
+
+/**
+ * What a bounded task queue does with a timed or non-blocking offer when it is full.
+ */
+public enum RejectionPolicy {
+    /** Wait for space up to the offer timeout, then reject. */
+    BLOCK,
+    /** Reject immediately without waiting. */
+    FAIL_FAST,
+    /** Evict the lowest-priority queued task if the new task outranks it, otherwise reject. */
+    DROP_LOWEST_PRIORITY
+}
@@ -0,0 +1,15 @@
+package com.moadams.enums;
+
+/**
+ * The order in which the shared task queue hands tasks to workers.
+ */
+public enum SchedulingMode {
+    /** Lowest priority number first, FIFO within a priority. Low-priority work can starve under sustained load. */
+    STRICT_PRIORITY,
+    /** Like STRICT_PRIORITY, but a waiting task's effective priority improves by one level per aging interval. */
+    AGING,
+    /** Each priority band gets a weighted share of dequeues whenever it has work, FIFO within a band. */
+    WEIGHTED_FAIR,
+    /** Strict priority between priorities; within one, tenants take turns by deficit round robin, FIFO per tenant. */
+    TENANT_FAIR
+}
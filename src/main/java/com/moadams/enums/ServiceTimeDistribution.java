@@ -0,0 +1,13 @@
+package com.moadams.enums;
+
+/**
+ * The distribution of the simulated service time of a load-test task around the configured mean.
+ */
+public enum ServiceTimeDistribution {
+    /** Every task takes exactly the mean. */
+    CONSTANT,
+    /** Uniform between zero and twice the mean. */
+    UNIFORM,
+    /** Exponential with the given mean: mostly short tasks with a long tail. */
+    EXPONENTIAL
+}
@@ -0,0 +1,11 @@
+package com.moadams.enums;
+
+/**
+ * How new tasks get their IDs.
+ */
+public enum TaskIdMode {
+    /** A random (version 4) UUID per task, drawn from SecureRandom. */
+    RANDOM_UUID,
+    /** A node prefix plus the task's global sequence number, rendered as a version 8 UUID. No randomness involved. */
+    SEQUENTIAL
+}
@@ -1,8 +1,62 @@
 package com.moadams.enums;
 
+/**
+ * The statuses a task moves through. Each has a fixed code that the write-ahead log stores instead of the
+ * ordinal, so constants can be added or reordered without misreading existing logs; a new status needs a new,
+ * unused code.
+ */
 public enum TaskStatus {
-    SUBMITTED,
-    PROCESSING,
-    COMPLETED,
-    FAILED,
+    SUBMITTED(0),
+    PROCESSING(1),
+    RETRY_SCHEDULED(2),
+    COMPLETED(3),
+    FAILED(4),
+    CANCELLED(5),
+    EXPIRED(6),
+    ;
+
+    private static final TaskStatus[] BY_CODE = new TaskStatus[Byte.MAX_VALUE + 1];
+
+    static {
+        for (TaskStatus status : values()) {
+            if (BY_CODE[status.code] != null) {
+                throw new IllegalStateException("Duplicate status code " + status.code + " for " + status);
+            }
+            BY_CODE[status.code] = status;
+        }
+    }
+
+    private final byte code;
+
+    TaskStatus(int code) {
+        this.code = (byte) code;
+    }
+
+    /**
+     * @return The status's stable code, as persisted.
+     */
+    public byte getCode() {
+        return code;
+    }
+
+    /**
+     * Looks up a status by its persisted code.
+     * @param code The code.
+     * @return The status.
+     * @throws IllegalArgumentException If no status has that code.
+     */
+    public static TaskStatus fromCode(byte code) {
+        TaskStatus status = code < 0 ? null : BY_CODE[code];
+        if (status == null) {
+            throw new IllegalArgumentException("Unknown task status code: " + code);
+        }
+        return status;
+    }
+
+    /**
+     * Returns true for the statuses a task never leaves: completed, failed, cancelled or expired.
+     */
+    public boolean isTerminal() {
+        return this == COMPLETED || this == FAILED || this == CANCELLED || this == EXPIRED;
+    }
 }
@@ -0,0 +1,24 @@
+package com.moadams.handler;
+
+import com.moadams.model.Task;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * AsyncTaskHandler starts the work of a task and returns without waiting for it, so the worker thread moves
+ * on to the next task while the work is outstanding. The returned stage completing normally completes the
+ * task; completing exceptionally (or the handler throwing) fails the attempt, and the framework retries,
+ * dead-letters, records status and latency exactly as for a {@link TaskHandler}.
+ *
+ * <p>A task's resource locks are held only while the handler starts its work, not while the stage is
+ * outstanding, and an outstanding task cannot be interrupted by cancellation.</p>
+ */
+@FunctionalInterface
+public interface AsyncTaskHandler {
+    /**
+     * Starts the task.
+     * @param task The task to run.
+     * @return A stage that completes when the task's work does.
+     */
+    CompletionStage<?> handle(Task task);
+}
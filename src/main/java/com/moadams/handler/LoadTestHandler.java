@@ -0,0 +1,57 @@
+package com.moadams.handler;
+
+import com.moadams.enums.ServiceTimeDistribution;
+import com.moadams.model.Task;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LoadTestHandler simulates work with a configurable service-time distribution and failure rate.
+ * Each attempt draws from a generator seeded by the run seed, the task name and the attempt number, so an
+ * attempt takes the same time and has the same outcome in every run with the same seed, whichever worker
+ * runs it and in whatever order.
+ */
+public class LoadTestHandler implements TaskHandler {
+    private final ServiceTimeDistribution distribution;
+    private final long meanNanos;
+    private final double failureRate;
+    private final long seed;
+
+    /**
+     * Constructs a LoadTestHandler.
+     * @param distribution How service times are distributed around the mean.
+     * @param meanMicros The mean service time in microseconds.
+     * @param failureRate The probability that an attempt fails, from 0 to 1.
+     * @param seed The run seed.
+     */
+    public LoadTestHandler(ServiceTimeDistribution distribution, long meanMicros, double failureRate, long seed) {
+        this.distribution = distribution;
+        this.meanNanos = TimeUnit.MICROSECONDS.toNanos(meanMicros);
+        this.failureRate = failureRate;
+        this.seed = seed;
+    }
+
+    @Override
+    public void handle(Task task) throws InterruptedException {
+        SplittableRandom random = new SplittableRandom(seed ^ (task.getName().hashCode() * 0x9E3779B97F4A7C15L) + task.getRetryCount());
+        long serviceNanos = serviceTime(random);
+        if (serviceNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(serviceNanos);
+        }
+        if (random.nextDouble() < failureRate) {
+            throw new IllegalStateException("Simulated failure");
+        }
+    }
+
+    private long serviceTime(SplittableRandom random) {
+        switch (distribution) {
+            case UNIFORM:
+                return meanNanos == 0 ? 0 : random.nextLong(2 * meanNanos + 1);
+            case EXPONENTIAL:
+                return (long) (-Math.log(1 - random.nextDouble()) * meanNanos);
+            default:
+                return meanNanos;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.moadams.handler;
+
+import com.moadams.model.Task;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * SimulatedTaskHandler is the default handler: it sleeps for 200-2000ms, plus 50-150ms of work under the
+ * task's resource locks when it declares any, and fails one attempt in ten.
+ */
+public class SimulatedTaskHandler implements TaskHandler {
+    @Override
+    public void handle(Task task) throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (!task.getResourceKeys().isEmpty()) {
+            Thread.sleep(random.nextLong(50, 150));
+        }
+        Thread.sleep(random.nextLong(200, 2001));
+        if (random.nextInt(10) < 1) { // 10% chance
+            throw new IllegalStateException("Simulated failure");
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.moadams.handler;
+
+import com.moadams.model.Task;
+
+/**
+ * TaskHandler does the work of a task on the worker thread that took it. Returning normally completes the
+ * task; throwing fails the attempt, and the framework retries, dead-letters, records status and latency.
+ * A handler should respond to interruption, which is how a running task is cancelled.
+ */
+@FunctionalInterface
+public interface TaskHandler {
+    /**
+     * Runs the task.
+     * @param task The task to run.
+     * @throws Exception If the attempt failed.
+     */
+    void handle(Task task) throws Exception;
+}
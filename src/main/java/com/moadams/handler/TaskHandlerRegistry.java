@@ -0,0 +1,108 @@
+package com.moadams.handler;
+
+import com.moadams.model.Task;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TaskHandlerRegistry maps tasks to the handler that runs them. A handler registered for a task's exact name
+ * wins over one registered for its type ({@link Task#getType()}); tasks matching neither go to the default
+ * handler, which is the built-in simulation unless replaced. Registration is safe while workers are running.
+ */
+public class TaskHandlerRegistry {
+    private final ConcurrentHashMap<String, Registration> handlers = new ConcurrentHashMap<>();
+    private volatile Registration fallback = new Registration(new SimulatedTaskHandler(), null);
+
+    /**
+     * A resolved handler: exactly one of the blocking and the async handler is set.
+     */
+    public static final class Registration {
+        private final TaskHandler handler;
+        private final AsyncTaskHandler asyncHandler;
+
+        private Registration(TaskHandler handler, AsyncTaskHandler asyncHandler) {
+            this.handler = handler;
+            this.asyncHandler = asyncHandler;
+        }
+
+        public boolean isAsync() {
+            return asyncHandler != null;
+        }
+
+        public TaskHandler getHandler() {
+            return handler;
+        }
+
+        public AsyncTaskHandler getAsyncHandler() {
+            return asyncHandler;
+        }
+    }
+
+    /**
+     * Registers a blocking handler, replacing any handler registered under the same key.
+     * @param typeOrName A task type or an exact task name.
+     * @param handler The handler.
+     */
+    public void register(String typeOrName, TaskHandler handler) {
+        if (handler == null) {
+            throw new IllegalArgumentException("Handler is required");
+        }
+        handlers.put(typeOrName, new Registration(handler, null));
+    }
+
+    /**
+     * Registers an async handler, replacing any handler registered under the same key.
+     * @param typeOrName A task type or an exact task name.
+     * @param handler The handler.
+     */
+    public void registerAsync(String typeOrName, AsyncTaskHandler handler) {
+        if (handler == null) {
+            throw new IllegalArgumentException("Handler is required");
+        }
+        handlers.put(typeOrName, new Registration(null, handler));
+    }
+
+    /**
+     * Removes the handler registered under a key; matching tasks fall back to the default handler.
+     * @param typeOrName The key it was registered under.
+     */
+    public void unregister(String typeOrName) {
+        handlers.remove(typeOrName);
+    }
+
+    /**
+     * @param handler The blocking handler for tasks no registration matches.
+     */
+    public void setDefault(TaskHandler handler) {
+        if (handler == null) {
+            throw new IllegalArgumentException("Handler is required");
+        }
+        fallback = new Registration(handler, null);
+    }
+
+    /**
+     * @param handler The async handler for tasks no registration matches.
+     */
+    public void setDefaultAsync(AsyncTaskHandler handler) {
+        if (handler == null) {
+            throw new IllegalArgumentException("Handler is required");
+        }
+        fallback = new Registration(null, handler);
+    }
+
+    /**
+     * Finds the handler for a task: its exact name, then its type, then the default.
+     * @param task The task about to run.
+     * @return The registration to run it with; never null.
+     */
+    public Registration resolve(Task task) {
+        if (handlers.isEmpty()) {
+            return fallback;
+        }
+        Registration registration = handlers.get(task.getName());
+        if (registration == null) {
+            registration = handlers.get(task.getType());
+        }
+        return registration != null ? registration : fallback;
+    }
+}
@@ -0,0 +1,75 @@
+package com.moadams.load;
+
+import com.moadams.enums.ArrivalProcess;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * ArrivalSchedule supplies the gaps between one producer's submissions for an arrival process at a mean rate.
+ * Gaps are drawn from a generator seeded at construction, so two schedules built with the same arguments
+ * supply the same gaps; the load generator uses that to count a producer's arrivals in the run up front.
+ */
+public class ArrivalSchedule implements LongSupplier {
+    private final ArrivalProcess process;
+    private final double ratePerSecond;
+    private final int burstSize;
+    private final long seed;
+    private final double meanGapNanos;
+    private final Random random;
+    private int burstPosition;
+
+    /**
+     * Constructs an ArrivalSchedule.
+     * @param process How gaps are distributed.
+     * @param ratePerSecond The mean number of arrivals per second.
+     * @param burstSize In BURSTY mode, how many tasks arrive back to back in each burst.
+     * @param seed Seeds the gap generator.
+     */
+    public ArrivalSchedule(ArrivalProcess process, double ratePerSecond, int burstSize, long seed) {
+        this.process = process;
+        this.ratePerSecond = ratePerSecond;
+        this.burstSize = burstSize;
+        this.seed = seed;
+        this.meanGapNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @return The gap before the next arrival, in nanoseconds.
+     */
+    @Override
+    public long getAsLong() {
+        switch (process) {
+            case POISSON:
+                return exponential(meanGapNanos);
+            case BURSTY:
+                if (++burstPosition < burstSize) {
+                    return 0;
+                }
+                burstPosition = 0;
+                return exponential(meanGapNanos * burstSize);
+            default:
+                return Math.round(meanGapNanos);
+        }
+    }
+
+    private long exponential(double mean) {
+        return (long) (-Math.log(1 - random.nextDouble()) * mean);
+    }
+
+    /**
+     * Counts how many arrivals a fresh copy of this schedule makes within a period, the first at its start.
+     * @param nanos The length of the period.
+     * @return The number of arrivals.
+     */
+    public int arrivalsWithin(long nanos) {
+        ArrivalSchedule copy = new ArrivalSchedule(process, ratePerSecond, burstSize, seed);
+        int arrivals = 1;
+        for (long due = copy.getAsLong(); due < nanos && arrivals < Integer.MAX_VALUE; due += copy.getAsLong()) {
+            arrivals++;
+        }
+        return arrivals;
+    }
+}
@@ -0,0 +1,194 @@
+package com.moadams.load;
+
+import com.moadams.enums.LatencySpan;
+import com.moadams.enums.TaskStatus;
+import com.moadams.handler.LoadTestHandler;
+import com.moadams.metrics.HistogramSnapshot;
+import com.moadams.service.TaskDispatcher;
+import com.moadams.state.StatusCounters;
+import com.moadams.util.TaskLogger;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LoadGenerator runs a headless, repeatable capacity test: paced producers offer tasks to a TaskDispatcher at
+ * the configured rate and arrival process, a {@link LoadTestHandler} simulates the service time and failures,
+ * and after a warmup the run's throughput, latency percentiles and GC activity are measured and written as
+ * a JSON summary.
+ *
+ * <p>With a fixed seed the workload is deterministic: every producer submits the same tasks (names,
+ * priorities, resources) at the same offsets from the start, and every attempt takes the same time and has the
+ * same outcome. What the dispatcher does with that workload - which worker takes what, and when - still
+ * depends on the machine.</p>
+ *
+ * <p>Latencies are measured from when a task is put on the queue, so time a producer spends blocked on a full
+ * queue is not in them; the offered and submitted rates in the summary show when the system fell behind.</p>
+ */
+public class LoadGenerator {
+    private final LoadTestConfig config;
+
+    public LoadGenerator(LoadTestConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Runs the test and writes the summary to standard output and, if configured, the output file.
+     * @return The JSON summary.
+     * @throws InterruptedException If interrupted before the run finished.
+     * @throws IOException If the summary file cannot be written.
+     */
+    public String run() throws InterruptedException, IOException {
+        TaskLogger.setLevel(config.getLogLevel());
+        TaskDispatcher dispatcher = new TaskDispatcher(config.toDispatcherConfig(), new Object(), new Object(), false);
+        dispatcher.getHandlerRegistry().setDefault(new LoadTestHandler(config.getServiceTime(),
+                config.getServiceMeanMicros(), config.getFailureRate(), config.getSeed()));
+        LongAdder submitted = new LongAdder();
+        dispatcher.getTaskStates().addSubmissionListener(tasks -> submitted.add(tasks.size()));
+        StatusCounters counters = dispatcher.getTaskStates().getCounters();
+
+        long warmupNanos = TimeUnit.SECONDS.toNanos(config.getWarmupSeconds());
+        long runNanos = warmupNanos + TimeUnit.SECONDS.toNanos(config.getDurationSeconds());
+        double ratePerProducer = config.getRate() / config.getProducers();
+        long offered = 0;
+
+        dispatcher.startWorkers();
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < config.getProducers(); i++) {
+            long producerSeed = config.getSeed() * 31 + i;
+            ArrivalSchedule schedule = new ArrivalSchedule(config.getArrival(), ratePerProducer, config.getBurstSize(), producerSeed);
+            int tasks = schedule.arrivalsWithin(runNanos);
+            offered += tasks;
+            producers.add(dispatcher.startProducer("LoadProducer-" + (i + 1), tasks, schedule, new Random(producerSeed)));
+        }
+        System.out.println("Load test running: " + config.getProducers() + " producers offering " + offered +
+                " tasks over " + (config.getWarmupSeconds() + config.getDurationSeconds()) + "s (" +
+                config.getWarmupSeconds() + "s warmup).");
+
+        TimeUnit.NANOSECONDS.sleep(warmupNanos);
+        Sample start = new Sample(submitted, counters);
+        dispatcher.getLatencyTracker().intervalSnapshot();
+        TimeUnit.SECONDS.sleep(config.getDurationSeconds());
+        Sample end = new Sample(submitted, counters);
+        Map<LatencySpan, Map<Integer, Map<TaskStatus, HistogramSnapshot>>> latencies = dispatcher.getLatencyTracker().intervalSnapshot();
+        int backlog = dispatcher.getTaskQueue().size();
+
+        for (Thread producer : producers) {
+            producer.interrupt();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        // The backlog is not part of the measurement; interrupt the workers rather than wait for them to drain it.
+        dispatcher.getWorkerPool().shutdownNow();
+        dispatcher.shutdown();
+
+        String summary = summarize(offered, start, end, latencies, backlog);
+        System.out.println(summary);
+        if (config.getOutput() != null) {
+            Path output = Paths.get(config.getOutput());
+            Files.writeString(output, summary + System.lineSeparator(), StandardCharsets.UTF_8);
+            System.out.println("Load test summary written to " + output.toAbsolutePath());
+        }
+        return summary;
+    }
+
+    /**
+     * The cumulative counters at one instant of the run.
+     */
+    private static final class Sample {
+        final long nanos = System.nanoTime();
+        final long submitted;
+        final long completed;
+        final long failed;
+        final long retried;
+        final Map<String, long[]> gc = new LinkedHashMap<>();
+
+        Sample(LongAdder submitted, StatusCounters counters) {
+            this.submitted = submitted.sum();
+            this.completed = counters.getEnteredCount(TaskStatus.COMPLETED);
+            this.failed = counters.getEnteredCount(TaskStatus.FAILED);
+            this.retried = counters.getEnteredCount(TaskStatus.RETRY_SCHEDULED);
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gc.put(collector.getName(), new long[] {collector.getCollectionCount(), collector.getCollectionTime()});
+            }
+        }
+    }
+
+    private String summarize(long offered, Sample start, Sample end,
+                             Map<LatencySpan, Map<Integer, Map<TaskStatus, HistogramSnapshot>>> latencies, int backlog) {
+        double seconds = (end.nanos - start.nanos) / 1e9;
+        StringBuilder json = new StringBuilder("{\n  \"config\": {");
+        String separator = "";
+        for (Map.Entry<String, String> option : config.asMap().entrySet()) {
+            json.append(separator).append("\n    \"").append(option.getKey()).append("\": \"")
+                    .append(escape(option.getValue())).append('"');
+            separator = ",";
+        }
+        json.append("\n  },\n");
+        json.append("  \"offered_tasks\": ").append(offered).append(",\n");
+        json.append("  \"measured_seconds\": ").append(format(seconds)).append(",\n");
+        json.append("  \"submitted\": ").append(end.submitted - start.submitted).append(",\n");
+        json.append("  \"completed\": ").append(end.completed - start.completed).append(",\n");
+        json.append("  \"failed\": ").append(end.failed - start.failed).append(",\n");
+        json.append("  \"retried\": ").append(end.retried - start.retried).append(",\n");
+        json.append("  \"submitted_per_second\": ").append(format((end.submitted - start.submitted) / seconds)).append(",\n");
+        json.append("  \"throughput_per_second\": ").append(format((end.completed - start.completed) / seconds)).append(",\n");
+        json.append("  \"backlog_at_end\": ").append(backlog).append(",\n");
+        json.append("  \"latency_micros\": {");
+        separator = "";
+        for (Map.Entry<LatencySpan, Map<Integer, Map<TaskStatus, HistogramSnapshot>>> span : latencies.entrySet()) {
+            HistogramSnapshot all = HistogramSnapshot.empty();
+            for (Map<TaskStatus, HistogramSnapshot> byOutcome : span.getValue().values()) {
+                for (HistogramSnapshot snapshot : byOutcome.values()) {
+                    all = all.merge(snapshot);
+                }
+            }
+            json.append(separator).append("\n    \"").append(span.getKey().name().toLowerCase(Locale.ROOT)).append("\": {")
+                    .append("\"count\": ").append(all.getTotalCount())
+                    .append(", \"p50\": ").append(all.getValueAtPercentile(50))
+                    .append(", \"p99\": ").append(all.getValueAtPercentile(99))
+                    .append(", \"p999\": ").append(all.getValueAtPercentile(99.9))
+                    .append(", \"max\": ").append(all.getMaxMicros()).append('}');
+            separator = ",";
+        }
+        json.append("\n  },\n  \"gc\": {");
+        long collections = 0;
+        long millis = 0;
+        separator = "";
+        for (Map.Entry<String, long[]> collector : end.gc.entrySet()) {
+            long[] before = start.gc.getOrDefault(collector.getKey(), new long[2]);
+            long count = collector.getValue()[0] - before[0];
+            long time = collector.getValue()[1] - before[1];
+            collections += count;
+            millis += time;
+            json.append(separator).append("\n    \"").append(escape(collector.getKey())).append("\": {\"collections\": ")
+                    .append(count).append(", \"time_millis\": ").append(time).append('}');
+            separator = ",";
+        }
+        json.append(separator).append("\n    \"total\": {\"collections\": ").append(collections)
+                .append(", \"time_millis\": ").append(millis).append("}\n  }\n}");
+        return json.toString();
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
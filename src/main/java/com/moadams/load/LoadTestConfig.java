@@ -0,0 +1,265 @@
+package com.moadams.load;
+
+import com.moadams.enums.ArrivalProcess;
+import com.moadams.enums.ExecutionMode;
+import com.moadams.enums.LogLevel;
+import com.moadams.enums.SchedulingMode;
+import com.moadams.enums.ServiceTimeDistribution;
+import com.moadams.enums.TaskIdMode;
+import com.moadams.service.DispatcherConfig;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Function;
+
+/**
+ * Immutable settings of a headless load-test run. Each option is read from a {@code --name=value} command-line
+ * argument, else from the {@code concurqueue.load.name} system property, else its default; see {@link #OPTIONS}.
+ */
+public final class LoadTestConfig {
+    /** The prefix of the system properties options can be set with. */
+    public static final String PROPERTY_PREFIX = "concurqueue.load.";
+
+    /** Every option with its default. */
+    public static final Map<String, String> OPTIONS;
+
+    private static final String[] ORDER;
+
+    static {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("workers", "8");
+        options.put("producers", "2");
+        options.put("queueCapacity", "10000");
+        options.put("executionMode", ExecutionMode.PLATFORM_POOL.name());
+        options.put("schedulingMode", SchedulingMode.STRICT_PRIORITY.name());
+        options.put("rate", "1000");
+        options.put("arrival", ArrivalProcess.POISSON.name());
+        options.put("burstSize", "50");
+        options.put("serviceTime", ServiceTimeDistribution.EXPONENTIAL.name());
+        options.put("serviceMeanMicros", "5000");
+        options.put("failureRate", "0");
+        options.put("warmupSeconds", "5");
+        options.put("durationSeconds", "30");
+        options.put("seed", "42");
+        options.put("logLevel", LogLevel.ERROR.name());
+        options.put("asyncLogBuffer", "0");
+        options.put("plainLog", "false");
+        options.put("taskIds", TaskIdMode.RANDOM_UUID.name());
+        options.put("nodeId", "0");
+        options.put("output", "");
+        OPTIONS = Map.copyOf(options);
+        ORDER = options.keySet().toArray(new String[0]);
+    }
+
+    private final Map<String, String> values;
+    private final int workers;
+    private final int producers;
+    private final int queueCapacity;
+    private final ExecutionMode executionMode;
+    private final SchedulingMode schedulingMode;
+    private final double rate;
+    private final ArrivalProcess arrival;
+    private final int burstSize;
+    private final ServiceTimeDistribution serviceTime;
+    private final long serviceMeanMicros;
+    private final double failureRate;
+    private final long warmupSeconds;
+    private final long durationSeconds;
+    private final long seed;
+    private final LogLevel logLevel;
+    private final int asyncLogBuffer;
+    private final boolean plainLog;
+    private final TaskIdMode taskIds;
+    private final int nodeId;
+    private final String output;
+
+    private LoadTestConfig(Map<String, String> values) {
+        this.values = values;
+        this.workers = parse("workers", Integer::parseInt);
+        this.producers = parse("producers", Integer::parseInt);
+        this.queueCapacity = parse("queueCapacity", Integer::parseInt);
+        this.executionMode = parse("executionMode", v -> ExecutionMode.valueOf(v.toUpperCase(Locale.ROOT)));
+        this.schedulingMode = parse("schedulingMode", v -> SchedulingMode.valueOf(v.toUpperCase(Locale.ROOT)));
+        this.rate = parse("rate", Double::parseDouble);
+        this.arrival = parse("arrival", v -> ArrivalProcess.valueOf(v.toUpperCase(Locale.ROOT)));
+        this.burstSize = parse("burstSize", Integer::parseInt);
+        this.serviceTime = parse("serviceTime", v -> ServiceTimeDistribution.valueOf(v.toUpperCase(Locale.ROOT)));
+        this.serviceMeanMicros = parse("serviceMeanMicros", Long::parseLong);
+        this.failureRate = parse("failureRate", Double::parseDouble);
+        this.warmupSeconds = parse("warmupSeconds", Long::parseLong);
+        this.durationSeconds = parse("durationSeconds", Long::parseLong);
+        this.seed = parse("seed", Long::parseLong);
+        this.logLevel = parse("logLevel", v -> LogLevel.valueOf(v.toUpperCase(Locale.ROOT)));
+        this.asyncLogBuffer = parse("asyncLogBuffer", Integer::parseInt);
+        this.plainLog = parse("plainLog", LoadTestConfig::parseBoolean);
+        this.taskIds = parse("taskIds", v -> TaskIdMode.valueOf(v.toUpperCase(Locale.ROOT)));
+        this.nodeId = parse("nodeId", Integer::parseInt);
+        String path = values.get("output");
+        this.output = path.isEmpty() ? null : path;
+
+        if (workers <= 0 || producers <= 0 || queueCapacity <= 0 || burstSize <= 0) {
+            throw new IllegalArgumentException("workers, producers, queueCapacity and burstSize must be positive");
+        }
+        if (!(rate > 0) || serviceMeanMicros < 0 || !(failureRate >= 0 && failureRate <= 1)) {
+            throw new IllegalArgumentException("rate must be positive, serviceMeanMicros not negative and failureRate between 0 and 1");
+        }
+        if (warmupSeconds < 0 || durationSeconds <= 0) {
+            throw new IllegalArgumentException("warmupSeconds must not be negative and durationSeconds must be positive");
+        }
+        if (asyncLogBuffer < 0) {
+            throw new IllegalArgumentException("asyncLogBuffer must not be negative");
+        }
+        if (nodeId < 0 || nodeId > 0xFFFF) {
+            throw new IllegalArgumentException("nodeId must be between 0 and 65535");
+        }
+    }
+
+    private static boolean parseBoolean(String value) {
+        if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) {
+            throw new IllegalArgumentException("Not a boolean: " + value);
+        }
+        return Boolean.parseBoolean(value);
+    }
+
+    private <T> T parse(String option, Function<String, T> parser) {
+        String value = values.get(option);
+        try {
+            return parser.apply(value.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid value for " + option + ": '" + value + "'", e);
+        }
+    }
+
+    /**
+     * Reads a configuration from command-line arguments and system properties.
+     * @param args The arguments; {@code --name=value} pairs are options, anything else is ignored.
+     * @param properties The properties to fall back to, usually {@link System#getProperties()}.
+     * @return The configuration.
+     * @throws IllegalArgumentException If an option is unknown or has an invalid value.
+     */
+    public static LoadTestConfig parse(String[] args, Properties properties) {
+        Map<String, String> values = new HashMap<>(OPTIONS);
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(PROPERTY_PREFIX)) {
+                put(values, name.substring(PROPERTY_PREFIX.length()), properties.getProperty(name));
+            }
+        }
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (arg.startsWith("--") && equals > 2) {
+                put(values, arg.substring(2, equals), arg.substring(equals + 1));
+            }
+        }
+        return new LoadTestConfig(values);
+    }
+
+    /**
+     * @return Every option with its default as "name=default" pairs, in declaration order, for usage messages.
+     */
+    public static String describeOptions() {
+        StringBuilder sb = new StringBuilder();
+        for (String option : ORDER) {
+            sb.append(sb.length() == 0 ? "" : ", ").append(option).append('=').append(OPTIONS.get(option));
+        }
+        return sb.toString();
+    }
+
+    private static void put(Map<String, String> values, String option, String value) {
+        if (!OPTIONS.containsKey(option)) {
+            throw new IllegalArgumentException("Unknown load-test option '" + option + "'; known options are " +
+                    String.join(", ", ORDER));
+        }
+        values.put(option, value);
+    }
+
+    /**
+     * Builds the dispatcher configuration for the run: the worker, queue, scheduling, logging and task ID options over
+     * the defaults. Terminal statuses are evicted after five minutes or past 100,000, so a long run's memory stays
+     * bounded.
+     * @return The DispatcherConfig.
+     */
+    public DispatcherConfig toDispatcherConfig() {
+        return DispatcherConfig.builder()
+                .workerPoolSize(workers)
+                .maxConcurrentTasks(workers)
+                .queueCapacity(queueCapacity)
+                .executionMode(executionMode)
+                .schedulingMode(schedulingMode)
+                .asyncLogBufferSize(asyncLogBuffer)
+                .plainLogOutput(plainLog)
+                .taskIdMode(taskIds)
+                .nodeId(nodeId)
+                .terminalStateTtlMillis(300_000)
+                .maxTerminalStates(100_000)
+                .build();
+    }
+
+    /**
+     * @return Every option's effective value, in declaration order, for echoing into the summary.
+     */
+    public Map<String, String> asMap() {
+        Map<String, String> ordered = new LinkedHashMap<>();
+        for (String option : ORDER) {
+            ordered.put(option, values.get(option));
+        }
+        return ordered;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public int getProducers() {
+        return producers;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public ArrivalProcess getArrival() {
+        return arrival;
+    }
+
+    public int getBurstSize() {
+        return burstSize;
+    }
+
+    public ServiceTimeDistribution getServiceTime() {
+        return serviceTime;
+    }
+
+    public long getServiceMeanMicros() {
+        return serviceMeanMicros;
+    }
+
+    public double getFailureRate() {
+        return failureRate;
+    }
+
+    public long getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public long getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public LogLevel getLogLevel() {
+        return logLevel;
+    }
+
+    /**
+     * @return The file the JSON summary is written to, or null to print it only.
+     */
+    public String getOutput() {
+        return output;
+    }
+}
@@ -0,0 +1,135 @@
+package com.moadams.lock;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ResourceLockManager guards named resources with a fixed array of striped locks.
+ * Each key hashes to one stripe, and a multi-key request locks its distinct stripes
+ * in ascending stripe order. Every caller uses that same global order, so no two callers
+ * can each hold a stripe the other is waiting for, which rules out deadlock the same way
+ * the fixed LOCK_A-then-LOCK_B order does. Tasks on disjoint stripes run fully in parallel.
+ * Acquisition is bounded by a timeout instead of blocking indefinitely.
+ */
+public class ResourceLockManager {
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    /**
+     * Constructs a ResourceLockManager.
+     * @param stripeCount The number of lock stripes, rounded up to a power of two.
+     * More stripes mean fewer unrelated keys sharing a lock.
+     */
+    public ResourceLockManager(int stripeCount) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("Stripe count must be positive: " + stripeCount);
+        }
+        int size = Integer.highestOneBit(stripeCount);
+        if (size < stripeCount) {
+            size <<= 1;
+        }
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Maps a resource key to its stripe.
+     * @param key The resource key.
+     * @return The stripe index.
+     */
+    public int stripeFor(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Tries to lock every stripe covering the given keys, in canonical order, within the timeout.
+     * If the deadline passes part way, the stripes already held are released before returning.
+     * @param keys The resource keys the caller needs exclusive access to.
+     * @param timeout The maximum time to wait for the whole set.
+     * @param unit The unit of the timeout.
+     * @return A handle that releases the locks when closed, or null if the timeout expired.
+     * @throws InterruptedException If interrupted while waiting; no stripes remain held.
+     */
+    public ResourceLocks tryAcquire(Collection<String> keys, long timeout, TimeUnit unit) throws InterruptedException {
+        int[] order = canonicalStripes(keys);
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int held = 0;
+        try {
+            for (; held < order.length; held++) {
+                if (!stripes[order[held]].tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    release(order, held);
+                    return null;
+                }
+            }
+        } catch (InterruptedException e) {
+            release(order, held);
+            throw e;
+        }
+        return new ResourceLocks(order);
+    }
+
+    /**
+     * Gets the distinct stripes for a key set, sorted ascending.
+     * @param keys The resource keys.
+     * @return The stripe indices in acquisition order.
+     */
+    public int[] canonicalStripes(Collection<String> keys) {
+        int[] order = new int[keys.size()];
+        int n = 0;
+        for (String key : keys) {
+            order[n++] = stripeFor(key);
+        }
+        Arrays.sort(order);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || order[distinct - 1] != order[i]) {
+                order[distinct++] = order[i];
+            }
+        }
+        return distinct == n ? order : Arrays.copyOf(order, distinct);
+    }
+
+    private void release(int[] order, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            stripes[order[i]].unlock();
+        }
+    }
+
+    /**
+     * The set of stripes held by one caller. Closing it releases them in reverse acquisition order.
+     * It must be closed by the thread that acquired it.
+     */
+    public final class ResourceLocks implements AutoCloseable {
+        private final int[] order;
+        private boolean released;
+
+        private ResourceLocks(int[] order) {
+            this.order = order;
+        }
+
+        /**
+         * @return The stripe indices held, in acquisition order.
+         */
+        public int[] getStripes() {
+            return order.clone();
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(order, order.length);
+            }
+        }
+    }
+}
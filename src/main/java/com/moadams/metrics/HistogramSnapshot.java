@@ -0,0 +1,80 @@
+package com.moadams.metrics;
+
+import java.util.Locale;
+
+/**
+ * An immutable copy of one interval of a LatencyHistogram. Values are in microseconds.
+ */
+public final class HistogramSnapshot {
+    private final long[] counts;
+    private final long totalCount;
+    private final long maxMicros;
+
+    HistogramSnapshot(long[] counts, long maxMicros) {
+        this.counts = counts;
+        this.maxMicros = maxMicros;
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        this.totalCount = total;
+    }
+
+    /**
+     * @return An empty snapshot to merge others into.
+     */
+    public static HistogramSnapshot empty() {
+        return new HistogramSnapshot(new long[LatencyHistogram.BUCKET_COUNT], 0);
+    }
+
+    /**
+     * Combines two snapshots, e.g. to aggregate across priorities or outcomes.
+     * @param other The snapshot to add.
+     * @return A new snapshot holding both sets of values.
+     */
+    public HistogramSnapshot merge(HistogramSnapshot other) {
+        long[] merged = new long[counts.length];
+        for (int i = 0; i < merged.length; i++) {
+            merged[i] = counts[i] + other.counts[i];
+        }
+        return new HistogramSnapshot(merged, Math.max(maxMicros, other.maxMicros));
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+
+    /**
+     * Gets the value at or below which the given percentage of recorded values fall.
+     * @param percentile The percentile, e.g. 99.9.
+     * @return The value in microseconds, or 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(totalCount * Math.min(percentile, 100.0) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(LatencyHistogram.bucketUpperBound(i), maxMicros);
+            }
+        }
+        return maxMicros;
+    }
+
+    /**
+     * Formats p50/p99/p999/max in milliseconds, e.g. "1.20/4.01/4.01/4.10ms n=12".
+     * @return The formatted percentiles.
+     */
+    public String format() {
+        return String.format(Locale.ROOT, "%.2f/%.2f/%.2f/%.2fms n=%d",
+                getValueAtPercentile(50) / 1000.0, getValueAtPercentile(99) / 1000.0,
+                getValueAtPercentile(99.9) / 1000.0, maxMicros / 1000.0, totalCount);
+    }
+}
@@ -0,0 +1,104 @@
+package com.moadams.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram is a lock-free, fixed-size latency histogram with HdrHistogram-style log-linear buckets:
+ * values up to 127 microseconds get one bucket each, and every power-of-two range above that is split into
+ * 64 buckets, so any recorded value is reported within about 1.6% of its true value, up to roughly 19 hours.
+ *
+ * <p>Recording is wait-free apart from the bucket increment. {@link #intervalSnapshot()} hands back everything
+ * recorded since the previous snapshot without pausing writers: writers pick one of two count buffers by the
+ * sign of a shared epoch counter, and the reader flips the sign and waits only for writers already inside
+ * the old buffer to leave (the writer/reader phaser used by HdrHistogram's Recorder).</p>
+ */
+public class LatencyHistogram {
+    static final int LINEAR_BUCKETS = 128;
+    static final int BUCKETS_PER_OCTAVE = 64;
+    static final int MAX_SHIFT = 30;
+    static final int BUCKET_COUNT = LINEAR_BUCKETS + MAX_SHIFT * BUCKETS_PER_OCTAVE;
+
+    private final Buffer evenBuffer = new Buffer();
+    private final Buffer oddBuffer = new Buffer();
+    private final AtomicLong startEpoch = new AtomicLong(0);
+    private final AtomicLong evenEndEpoch = new AtomicLong(0);
+    private final AtomicLong oddEndEpoch = new AtomicLong(Long.MIN_VALUE);
+    private final Object readerLock = new Object();
+
+    private static final class Buffer {
+        final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+        final AtomicLong max = new AtomicLong();
+    }
+
+    /**
+     * Records one latency.
+     * @param nanos The latency in nanoseconds; negative values are recorded as zero.
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        long epoch = startEpoch.getAndIncrement();
+        Buffer buffer = epoch < 0 ? oddBuffer : evenBuffer;
+        try {
+            buffer.counts.incrementAndGet(bucketIndex(micros));
+            long max = buffer.max.get();
+            while (micros > max && !buffer.max.compareAndSet(max, micros)) {
+                max = buffer.max.get();
+            }
+        } finally {
+            (epoch < 0 ? oddEndEpoch : evenEndEpoch).getAndIncrement();
+        }
+    }
+
+    /**
+     * Returns the values recorded since the previous call and starts a new interval.
+     * Writers keep recording into the other buffer while this runs.
+     * @return The interval's counts.
+     */
+    public HistogramSnapshot intervalSnapshot() {
+        synchronized (readerLock) {
+            boolean evenWasActive = startEpoch.get() >= 0;
+            Buffer inactive = evenWasActive ? evenBuffer : oddBuffer;
+            AtomicLong inactiveEnd = evenWasActive ? evenEndEpoch : oddEndEpoch;
+
+            long nextPhaseStart = evenWasActive ? Long.MIN_VALUE : 0;
+            (evenWasActive ? oddEndEpoch : evenEndEpoch).set(nextPhaseStart);
+            long enteredOldPhase = startEpoch.getAndSet(nextPhaseStart);
+            while (inactiveEnd.get() != enteredOldPhase) {
+                Thread.onSpinWait();
+            }
+
+            long[] counts = new long[BUCKET_COUNT];
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] = inactive.counts.getAndSet(i, 0);
+            }
+            long max = inactive.max.getAndSet(0);
+            return new HistogramSnapshot(counts, max);
+        }
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - 6;
+        if (shift > MAX_SHIFT) {
+            return BUCKET_COUNT - 1;
+        }
+        return LINEAR_BUCKETS + (shift - 1) * BUCKETS_PER_OCTAVE + (int) ((micros >>> shift) - BUCKETS_PER_OCTAVE);
+    }
+
+    /**
+     * @return The highest value, in microseconds, that falls into the given bucket.
+     */
+    static long bucketUpperBound(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int offset = index - LINEAR_BUCKETS;
+        int shift = offset / BUCKETS_PER_OCTAVE + 1;
+        long mantissa = offset % BUCKETS_PER_OCTAVE + BUCKETS_PER_OCTAVE;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,93 @@
+package com.moadams.metrics;
+
+import com.moadams.enums.LatencySpan;
+import com.moadams.enums.TaskStatus;
+import com.moadams.model.Task;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * TaskLatencyTracker records queue wait, service time and end-to-end time for every task attempt,
+ * with one LatencyHistogram per span, priority and outcome (COMPLETED or FAILED).
+ * Histograms for a priority are created the first time that priority is seen; after that recording is lock-free.
+ */
+public class TaskLatencyTracker {
+    private static final LatencySpan[] SPANS = LatencySpan.values();
+
+    private final ConcurrentHashMap<Integer, LatencyHistogram[]> histogramsByPriority = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<LatencyHistogram> queueWaitObservers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Records a finished attempt, using the task's enqueue and take timestamps.
+     * @param task The task whose attempt finished.
+     * @param outcome COMPLETED or FAILED for this attempt.
+     * @param terminal Whether the task has reached its final status, so end-to-end time is recorded too.
+     */
+    public void recordAttempt(Task task, TaskStatus outcome, boolean terminal) {
+        long now = System.nanoTime();
+        LatencyHistogram[] histograms = histogramsByPriority.computeIfAbsent(task.getPriority(), p -> newHistograms());
+        if (task.getTakenNanos() != 0) {
+            long queueWait = task.getTakenNanos() - task.getEnqueuedNanos();
+            histograms[index(LatencySpan.QUEUE_WAIT, outcome)].record(queueWait);
+            for (LatencyHistogram observer : queueWaitObservers) {
+                observer.record(queueWait);
+            }
+            histograms[index(LatencySpan.SERVICE, outcome)].record(now - task.getTakenNanos());
+        }
+        if (terminal && task.getFirstSubmittedNanos() != 0) {
+            histograms[index(LatencySpan.END_TO_END, outcome)].record(now - task.getFirstSubmittedNanos());
+        }
+    }
+
+    /**
+     * Takes the interval snapshots of every histogram and starts new intervals.
+     * @return The snapshots keyed by span, then priority, then outcome (COMPLETED or FAILED).
+     */
+    public Map<LatencySpan, Map<Integer, Map<TaskStatus, HistogramSnapshot>>> intervalSnapshot() {
+        Map<LatencySpan, Map<Integer, Map<TaskStatus, HistogramSnapshot>>> result = new TreeMap<>();
+        for (LatencySpan span : SPANS) {
+            result.put(span, new TreeMap<>());
+        }
+        histogramsByPriority.forEach((priority, histograms) -> {
+            for (LatencySpan span : SPANS) {
+                Map<TaskStatus, HistogramSnapshot> byOutcome = new TreeMap<>();
+                byOutcome.put(TaskStatus.COMPLETED, histograms[index(span, TaskStatus.COMPLETED)].intervalSnapshot());
+                byOutcome.put(TaskStatus.FAILED, histograms[index(span, TaskStatus.FAILED)].intervalSnapshot());
+                result.get(span).put(priority, byOutcome);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Registers an extra histogram that receives every queue-wait sample, across all priorities and outcomes.
+     * It lets another reader, such as the autoscaler, take its own intervals without resetting the monitor's.
+     * @param histogram The histogram to feed.
+     */
+    public void addQueueWaitObserver(LatencyHistogram histogram) {
+        queueWaitObservers.add(histogram);
+    }
+
+    /**
+     * Stops feeding a histogram registered with {@link #addQueueWaitObserver}.
+     * @param histogram The histogram to remove.
+     */
+    public void removeQueueWaitObserver(LatencyHistogram histogram) {
+        queueWaitObservers.remove(histogram);
+    }
+
+    private static LatencyHistogram[] newHistograms() {
+        LatencyHistogram[] histograms = new LatencyHistogram[SPANS.length * 2];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+
+    private static int index(LatencySpan span, TaskStatus outcome) {
+        return span.ordinal() * 2 + (outcome == TaskStatus.COMPLETED ? 0 : 1);
+    }
+}
@@ -0,0 +1,35 @@
+package com.moadams.model;
+
+/**
+ * Immutable token-bucket settings: a sustained rate and the burst admitted at once after a quiet period.
+ */
+public final class RateLimit {
+    private final double permitsPerSecond;
+    private final int burst;
+
+    /**
+     * @param permitsPerSecond How many submissions per second are admitted in the long run.
+     * @param burst How many submissions a full bucket admits back to back; at least 1.
+     */
+    public RateLimit(double permitsPerSecond, int burst) {
+        if (!(permitsPerSecond > 0) || burst < 1) {
+            throw new IllegalArgumentException("Rate must be positive and burst at least 1 (rate=" + permitsPerSecond +
+                    ", burst=" + burst + ")");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+    }
+
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    @Override
+    public String toString() {
+        return permitsPerSecond + "/s (burst " + burst + ")";
+    }
+}
@@ -0,0 +1,87 @@
+package com.moadams.model;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Immutable retry settings for a task: how many times it may be retried and how long to wait before each retry.
+ * Delays grow exponentially from the base delay up to the maximum, and each is shortened by a random
+ * fraction of up to {@code jitter} so that tasks failing together do not all retry at the same moment.
+ */
+public final class RetryPolicy {
+    /** Three retries, starting at 100ms and doubling up to 10s, with up to 50% jitter. */
+    public static final RetryPolicy DEFAULT = new RetryPolicy(3, 100, 10_000, 2.0, 0.5);
+
+    private final int maxRetries;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final double multiplier;
+    private final double jitter;
+
+    /**
+     * @param maxRetries How many times a failed task is retried before it is dead-lettered.
+     * @param baseDelayMillis The delay before the first retry.
+     * @param maxDelayMillis The cap on any single delay.
+     * @param multiplier How much each delay grows over the previous one; 1.0 means a fixed delay.
+     * @param jitter The largest fraction, between 0 and 1, randomly taken off each delay.
+     */
+    public RetryPolicy(int maxRetries, long baseDelayMillis, long maxDelayMillis, double multiplier, double jitter) {
+        if (maxRetries < 0 || baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis) {
+            throw new IllegalArgumentException("Retries and delays must not be negative, and the max delay must not be below the base delay");
+        }
+        if (multiplier < 1.0 || jitter < 0.0 || jitter > 1.0) {
+            throw new IllegalArgumentException("Multiplier must be at least 1 and jitter must be between 0 and 1");
+        }
+        this.maxRetries = maxRetries;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+    }
+
+    /**
+     * @return A policy that never retries.
+     */
+    public static RetryPolicy noRetries() {
+        return new RetryPolicy(0, 0, 0, 1.0, 0.0);
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public long getBaseDelayMillis() {
+        return baseDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    /**
+     * Computes the delay before a retry.
+     * @param retryNumber The retry about to be scheduled, starting at 1.
+     * @return The delay in milliseconds, with jitter applied.
+     */
+    public long nextDelayMillis(int retryNumber) {
+        double delay = baseDelayMillis * Math.pow(multiplier, Math.max(0, retryNumber - 1));
+        long capped = (long) Math.min(delay, maxDelayMillis);
+        if (jitter == 0.0 || capped == 0) {
+            return capped;
+        }
+        return capped - (long) (capped * jitter * ThreadLocalRandom.current().nextDouble());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RetryPolicy{maxRetries=%d, base=%dms, max=%dms, x%.1f, jitter=%.0f%%}",
+                maxRetries, baseDelayMillis, maxDelayMillis, multiplier, jitter * 100);
+    }
+}
@@ -1,43 +1,233 @@
 package com.moadams.model;
 
+import com.moadams.payload.PayloadRef;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * A unit of work. Identity is the ID, built once so the many lookups keyed by it allocate nothing, a creation
+ * time in epoch milliseconds, and a process-wide sequence number (see {@link TaskIds}) that breaks priority ties
+ * in strict submission-creation order.
+ *
+ * <p>A task can carry a deadline, past which a worker drops it instead of running it, and can be cancelled.
+ * Cancellation is a flag the task carries through the queue: a worker that takes a cancelled task discards it,
+ * and a worker running one is interrupted if the canceller allows it. The running worker and the flag are
+ * guarded by the task's monitor, so a task is never both cancelled as queued and started.</p>
+ *
+ * <p>A large payload may be moved into a {@link com.moadams.payload.PayloadArena} at submission, after which
+ * the task holds only a {@link PayloadRef}; the payload is readable until the task reaches a terminal status.</p>
+ */
 public class Task implements Comparable<Task> {
+    /** The tenant of tasks that were never tagged with one. */
+    public static final String DEFAULT_TENANT = "default";
+
     private final UUID id;
+    private final long sequence;
     private final String name;
+    private final String type;
     private final int priority;
-    private final Instant createdTimestamp;
-    private final String payload;
+    private final long createdEpochMillis;
+    private String payload;
+    private PayloadRef payloadRef;
+    private final Set<String> resourceKeys;
+    private final RetryPolicy retryPolicy;
+    private final String idempotencyKey;
+    private String tenant = DEFAULT_TENANT;
     private int retryCount;
+    private int lockTimeoutCount;
+    private int recoveryCount;
+    private long firstSubmittedNanos;
+    private long enqueuedNanos;
+    private long takenNanos;
+    private volatile long deadlineNanos;
+    private volatile boolean cancelled;
+    private Thread runner;
 
     public Task(String name, int priority, String payload) {
-        this.id = UUID.randomUUID();
+        this(name, priority, payload, Set.of());
+    }
+
+    /**
+     * Constructs a Task that needs exclusive access to the given shared resources while it runs.
+     * @param resourceKeys The resource keys to lock; empty if the task touches no shared resource.
+     */
+    public Task(String name, int priority, String payload, Set<String> resourceKeys) {
+        this(name, priority, payload, resourceKeys, null);
+    }
+
+    /**
+     * Constructs a Task with its own retry limit and backoff.
+     * @param resourceKeys The resource keys to lock; empty if the task touches no shared resource.
+     * @param retryPolicy How this task is retried on failure, or null to use the dispatcher's default policy.
+     */
+    public Task(String name, int priority, String payload, Set<String> resourceKeys, RetryPolicy retryPolicy) {
+        this(name, priority, payload, resourceKeys, retryPolicy, null);
+    }
+
+    /**
+     * Constructs a Task that identifies one logical job across resubmissions.
+     * @param resourceKeys The resource keys to lock; empty if the task touches no shared resource.
+     * @param retryPolicy How this task is retried on failure, or null to use the dispatcher's default policy.
+     * @param idempotencyKey Submissions sharing this key are coalesced into one run; null for none.
+     */
+    public Task(String name, int priority, String payload, Set<String> resourceKeys, RetryPolicy retryPolicy,
+                String idempotencyKey) {
+        this(TaskIds.nextSequence(), null, name, priority, System.currentTimeMillis(), payload, resourceKeys, retryPolicy,
+                0, idempotencyKey);
+    }
+
+    private Task(long sequence, UUID id, String name, int priority, long createdEpochMillis, String payload,
+                 Set<String> resourceKeys, RetryPolicy retryPolicy, int retryCount, String idempotencyKey) {
+        this.id = id != null ? id : TaskIds.newId(sequence);
+        this.sequence = sequence;
         this.name = name;
+        int dash = name.indexOf('-');
+        this.type = dash > 0 ? name.substring(0, dash) : name;
         this.priority = priority;
-        this.createdTimestamp = Instant.now();
+        this.createdEpochMillis = createdEpochMillis;
         this.payload = payload;
-        this.retryCount = 0;
+        this.resourceKeys = Set.copyOf(resourceKeys);
+        this.retryPolicy = retryPolicy;
+        this.retryCount = retryCount;
+        this.idempotencyKey = idempotencyKey;
     }
 
+    /**
+     * Recreates a task exactly as it was persisted, keeping its ID, creation time and retry count.
+     * Used when recovering tasks from the write-ahead log. The task takes a fresh sequence number,
+     * so restored tasks keep their relative order but queue behind nothing created earlier in this process.
+     */
+    public static Task restore(UUID id, String name, int priority, Instant createdTimestamp, String payload,
+                               Set<String> resourceKeys, RetryPolicy retryPolicy, int retryCount) {
+        return restore(id, name, priority, createdTimestamp, payload, resourceKeys, retryPolicy, retryCount, null);
+    }
+
+    /**
+     * Recreates a persisted task together with its idempotency key.
+     */
+    public static Task restore(UUID id, String name, int priority, Instant createdTimestamp, String payload,
+                               Set<String> resourceKeys, RetryPolicy retryPolicy, int retryCount, String idempotencyKey) {
+        return new Task(TaskIds.nextSequence(), id, name, priority, createdTimestamp.toEpochMilli(), payload,
+                resourceKeys, retryPolicy, retryCount, idempotencyKey);
+    }
+
+    /**
+     * @return The task's external ID.
+     */
     public UUID getId() {
         return id;
     }
 
+    /**
+     * @return The eight hex digits of the ID used in log lines; always a substring of the full ID.
+     */
+    public String getShortId() {
+        return TaskIds.shortId(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    /**
+     * @return The process-wide creation sequence number that orders tasks of equal priority.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
     public String getName() {
         return name;
     }
 
+    /**
+     * @return The part of the name before the first '-', such as "UrgentTask" for "UrgentTask-Producer-7";
+     * the whole name if it has no '-'. Handlers are registered by type or by exact name.
+     */
+    public String getType() {
+        return type;
+    }
+
     public int getPriority() {
         return priority;
     }
 
     public Instant getCreatedTimestamp() {
-        return createdTimestamp;
+        return Instant.ofEpochMilli(createdEpochMillis);
     }
 
+    /**
+     * @return The payload; read back from the arena as a new String if it was moved there.
+     * @throws IllegalStateException If the payload was in the arena and has been released.
+     */
     public String getPayload() {
-        return payload;
+        PayloadRef ref = payloadRef;
+        return ref == null ? payload : ref.readString();
+    }
+
+    /**
+     * Gives handlers the payload as UTF-8 bytes. For a payload held uncompressed in the arena this is a view of
+     * the arena's memory, without copying, valid only until the task finishes.
+     * @return A read-only buffer holding the payload bytes.
+     * @throws IllegalStateException If the payload was in the arena and has been released.
+     */
+    public ByteBuffer getPayloadBuffer() {
+        PayloadRef ref = payloadRef;
+        if (ref != null) {
+            return ref.read();
+        }
+        return ByteBuffer.wrap(payload == null ? new byte[0] : payload.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return The handle of the payload in the arena, or null if the payload is on the heap.
+     */
+    public PayloadRef getPayloadRef() {
+        return payloadRef;
+    }
+
+    /**
+     * Replaces the heap payload with its copy in the arena. Called before the task is queued.
+     * @param ref The handle of the copy.
+     */
+    public void movePayload(PayloadRef ref) {
+        this.payloadRef = ref;
+        this.payload = null;
+    }
+
+    public Set<String> getResourceKeys() {
+        return resourceKeys;
+    }
+
+    /**
+     * @return The task's own retry policy, or null if it uses the dispatcher's default.
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * @return The key that identifies this task's logical job across resubmissions, or null if it has none.
+     */
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    /**
+     * @return The producer or tenant the task was submitted for; {@value #DEFAULT_TENANT} unless tagged.
+     */
+    public String getTenant() {
+        return tenant;
+    }
+
+    /**
+     * Tags the task with the producer or tenant it is submitted for, which admission limits and tenant-fair
+     * scheduling key on. Set it before submitting the task.
+     * @param tenant The tenant name; null resets it to {@value #DEFAULT_TENANT}.
+     */
+    public void setTenant(String tenant) {
+        this.tenant = tenant != null ? tenant : DEFAULT_TENANT;
     }
 
     public int getRetryCount() {
@@ -48,11 +238,143 @@ public class Task implements Comparable<Task> {
         this.retryCount++;
     }
 
+    /**
+     * @return How many times the current attempt has timed out waiting for the task's resource locks.
+     */
+    public int getLockTimeoutCount() {
+        return lockTimeoutCount;
+    }
+
+    public int incrementLockTimeoutCount() {
+        return ++lockTimeoutCount;
+    }
+
+    public void resetLockTimeoutCount() {
+        this.lockTimeoutCount = 0;
+    }
+
+    /**
+     * @return How many times the watchdog has freed a worker from the current attempt and re-queued the task.
+     */
+    public int getRecoveryCount() {
+        return recoveryCount;
+    }
+
+    public int incrementRecoveryCount() {
+        return ++recoveryCount;
+    }
+
+    public void resetRecoveryCount() {
+        this.recoveryCount = 0;
+    }
+
+    /**
+     * Stamps the task as just put on the queue. The first call also fixes the submission time
+     * that end-to-end latency is measured from; later calls (retries, re-queues) only restart queue wait.
+     */
+    public void markEnqueued() {
+        long now = System.nanoTime();
+        if (firstSubmittedNanos == 0) {
+            firstSubmittedNanos = now;
+        }
+        enqueuedNanos = now;
+        takenNanos = 0;
+    }
+
+    /**
+     * Stamps the task as just taken by a worker.
+     */
+    public void markTaken() {
+        this.takenNanos = System.nanoTime();
+    }
+
+    public long getFirstSubmittedNanos() {
+        return firstSubmittedNanos;
+    }
+
+    public long getEnqueuedNanos() {
+        return enqueuedNanos;
+    }
+
+    public long getTakenNanos() {
+        return takenNanos;
+    }
+
+    /**
+     * Gives the task a deadline relative to now. A task still queued at its deadline expires without running;
+     * one already running is allowed to finish.
+     * @param timeout How long the task may wait to start.
+     * @param unit The unit of the timeout.
+     */
+    public void expireAfter(long timeout, TimeUnit unit) {
+        this.deadlineNanos = System.nanoTime() + Math.max(1, unit.toNanos(timeout));
+    }
+
+    /**
+     * @return The System.nanoTime() deadline, or 0 if the task has none.
+     */
+    public long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+
+    public boolean isExpired(long nowNanos) {
+        long deadline = deadlineNanos;
+        return deadline != 0 && nowNanos - deadline >= 0;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Cancels the task if no worker is running it.
+     * @return true if this call cancelled a task that was not running; false if it is running or was already cancelled.
+     */
+    public synchronized boolean cancelIfNotRunning() {
+        if (cancelled || runner != null) {
+            return false;
+        }
+        cancelled = true;
+        return true;
+    }
+
+    /**
+     * Cancels the task and interrupts the worker running it.
+     * @return true if a worker was running the task and has been interrupted.
+     */
+    public synchronized boolean cancelAndInterrupt() {
+        if (runner == null) {
+            return false;
+        }
+        cancelled = true;
+        runner.interrupt();
+        return true;
+    }
+
+    /**
+     * Claims the task for the calling worker thread.
+     * @return false if the task was cancelled, in which case it must not run.
+     */
+    public synchronized boolean claim() {
+        if (cancelled) {
+            return false;
+        }
+        runner = Thread.currentThread();
+        return true;
+    }
+
+    /**
+     * Releases the task after its attempt, so a later cancellation can no longer interrupt the worker.
+     */
+    public synchronized void release() {
+        runner = null;
+    }
+
     @Override
     public int compareTo(Task otherTask) {
         int priorityCompare = Integer.compare(priority, otherTask.priority);
         if (priorityCompare == 0) {
-            return this.createdTimestamp.compareTo(otherTask.createdTimestamp);
+            return Long.compare(sequence, otherTask.sequence);
         }
         return priorityCompare;
     }
@@ -60,6 +382,6 @@ public class Task implements Comparable<Task> {
     @Override
     public String toString() {
         return String.format("Task{id=%s, name='%s', priority=%d, retries=%d}",
-                id.toString().substring(0, 8), name, priority, retryCount);
+                getShortId(), name, priority, retryCount);
     }
 }
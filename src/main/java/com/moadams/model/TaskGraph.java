@@ -0,0 +1,136 @@
+package com.moadams.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * An immutable group of tasks with declared dependencies: a task runs only after every task it depends on has
+ * completed. Tasks are added after the tasks they depend on, so a graph is acyclic by construction, and
+ * {@link #getTasks()} lists them in an order where every task follows its parents.
+ *
+ * <pre>{@code
+ * TaskGraph.Builder builder = TaskGraph.builder("report");
+ * List<Task> shards = ...;
+ * shards.forEach(builder::add);
+ * TaskGraph graph = builder.add(merge, shards).build();
+ * }</pre>
+ */
+public final class TaskGraph {
+    private final String name;
+    private final List<Task> tasks;
+    private final Map<UUID, List<Task>> parents;
+    private final Map<UUID, List<Task>> children;
+
+    private TaskGraph(Builder builder) {
+        this.name = builder.name;
+        this.tasks = List.copyOf(builder.tasks.values());
+        Map<UUID, List<Task>> parents = new HashMap<>();
+        Map<UUID, List<Task>> children = new HashMap<>();
+        for (Task task : tasks) {
+            parents.put(task.getId(), List.copyOf(builder.parents.get(task.getId())));
+            children.put(task.getId(), new ArrayList<>());
+        }
+        for (Task task : tasks) {
+            for (Task parent : parents.get(task.getId())) {
+                children.get(parent.getId()).add(task);
+            }
+        }
+        children.replaceAll((id, list) -> Collections.unmodifiableList(list));
+        this.parents = parents;
+        this.children = children;
+    }
+
+    public static Builder builder(String name) {
+        return new Builder(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Every task, each after the tasks it depends on.
+     */
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    /**
+     * @param task A task in the graph.
+     * @return The tasks it waits for; empty for a root.
+     */
+    public List<Task> getParents(Task task) {
+        return parents.get(task.getId());
+    }
+
+    /**
+     * @param task A task in the graph.
+     * @return The tasks that wait for it.
+     */
+    public List<Task> getChildren(Task task) {
+        return children.get(task.getId());
+    }
+
+    public int size() {
+        return tasks.size();
+    }
+
+    @Override
+    public String toString() {
+        return "TaskGraph{name='" + name + "', tasks=" + tasks.size() + "}";
+    }
+
+    public static class Builder {
+        private final String name;
+        private final LinkedHashMap<UUID, Task> tasks = new LinkedHashMap<>();
+        private final Map<UUID, List<Task>> parents = new HashMap<>();
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Adds a task.
+         * @param task The task; not already in the graph.
+         * @param dependsOn The tasks that must complete before it runs, already added.
+         * @throws IllegalArgumentException If the task was already added or a dependency was not.
+         */
+        public Builder add(Task task, Task... dependsOn) {
+            return add(task, List.of(dependsOn));
+        }
+
+        /**
+         * Adds a task.
+         * @param task The task; not already in the graph.
+         * @param dependsOn The tasks that must complete before it runs, already added.
+         * @throws IllegalArgumentException If the task was already added or a dependency was not.
+         */
+        public Builder add(Task task, List<Task> dependsOn) {
+            if (tasks.containsKey(task.getId())) {
+                throw new IllegalArgumentException(task + " was already added to graph " + name);
+            }
+            Map<UUID, Task> distinct = new LinkedHashMap<>();
+            for (Task parent : dependsOn) {
+                if (!tasks.containsKey(parent.getId())) {
+                    throw new IllegalArgumentException(task + " depends on " + parent + ", which must be added to graph " + name + " first");
+                }
+                distinct.put(parent.getId(), parent);
+            }
+            tasks.put(task.getId(), task);
+            parents.put(task.getId(), new ArrayList<>(distinct.values()));
+            return this;
+        }
+
+        public TaskGraph build() {
+            if (tasks.isEmpty()) {
+                throw new IllegalArgumentException("Graph " + name + " has no tasks");
+            }
+            return new TaskGraph(this);
+        }
+    }
+}
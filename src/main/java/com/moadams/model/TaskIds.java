@@ -0,0 +1,99 @@
+package com.moadams.model;
+
+import com.moadams.enums.TaskIdMode;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TaskIds hands out the identity of every new {@link Task}: a process-wide sequence number, which orders
+ * tasks of equal priority strictly first-in first-out, and the 128-bit ID, which is a random UUID or, in
+ * {@link TaskIdMode#SEQUENTIAL} mode, derived from the sequence number without touching SecureRandom.
+ *
+ * <p>A sequential ID's high half holds a 16-bit node ID and the low 32 bits of the time the mode was
+ * selected, so IDs stay unique across nodes and restarts; the low half holds the sequence number. The
+ * UUID version and variant bits are set (version 8, custom) so the IDs are valid UUIDs wherever one is
+ * expected, such as the JSON export.</p>
+ *
+ * <p>The mode is process-wide; choose it before producers start.</p>
+ */
+public final class TaskIds {
+    private static final long VERSION_8 = 0x8000L;
+    private static final long VERSION_MASK = 0xF000L;
+    private static final long VARIANT = 0x8000_0000_0000_0000L;
+    private static final long SEQUENCE_MASK = 0x3FFF_FFFF_FFFF_FFFFL;
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    private static volatile Scheme scheme = new Scheme(TaskIdMode.RANDOM_UUID, 0);
+
+    private static final class Scheme {
+        final TaskIdMode mode;
+        final long prefix;
+
+        Scheme(TaskIdMode mode, long prefix) {
+            this.mode = mode;
+            this.prefix = prefix;
+        }
+    }
+
+    private TaskIds() {
+    }
+
+    /**
+     * Switches new tasks to random UUIDs (the default).
+     */
+    public static void useRandomUuids() {
+        scheme = new Scheme(TaskIdMode.RANDOM_UUID, 0);
+    }
+
+    /**
+     * Switches new tasks to sequence-based IDs.
+     * @param nodeId Distinguishes processes that submit into the same store or log; 0 to 65535.
+     */
+    public static void useSequential(int nodeId) {
+        if (nodeId < 0 || nodeId > 0xFFFF) {
+            throw new IllegalArgumentException("Node ID must fit in 16 bits: " + nodeId);
+        }
+        long prefix = ((long) nodeId << 48) | ((System.currentTimeMillis() & 0xFFFF_FFFFL) << 16) | VERSION_8;
+        scheme = new Scheme(TaskIdMode.SEQUENTIAL, prefix);
+    }
+
+    public static TaskIdMode getMode() {
+        return scheme.mode;
+    }
+
+    /**
+     * Takes the next sequence number. Strictly increasing across all threads.
+     */
+    static long nextSequence() {
+        return SEQUENCE.incrementAndGet();
+    }
+
+    /**
+     * Builds the ID for the task holding the given sequence number under the current mode.
+     */
+    static UUID newId(long sequence) {
+        Scheme current = scheme;
+        if (current.mode == TaskIdMode.SEQUENTIAL) {
+            return new UUID(current.prefix, VARIANT | (sequence & SEQUENCE_MASK));
+        }
+        return UUID.randomUUID();
+    }
+
+    /**
+     * Renders the short form used in log lines: the sequence part of a sequential ID, whose leading digits are
+     * shared by every task from the same node, or the leading digits of a random one. Either way it is a
+     * substring of the full UUID.
+     */
+    static String shortId(long mostSigBits, long leastSigBits) {
+        if ((mostSigBits & VERSION_MASK) == VERSION_8) {
+            return hex8(leastSigBits);
+        }
+        return hex8(mostSigBits >>> 32);
+    }
+
+    private static String hex8(long value) {
+        String hex = Long.toHexString(value & 0xFFFF_FFFFL);
+        return "00000000".substring(hex.length()) + hex;
+    }
+}
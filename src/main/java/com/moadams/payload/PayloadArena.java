@@ -0,0 +1,245 @@
+package com.moadams.payload;
+
+import com.moadams.enums.TaskStatus;
+import com.moadams.model.Task;
+import com.moadams.state.StatusTransitionListener;
+import com.moadams.state.TaskSubmissionListener;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+/**
+ * PayloadArena keeps large task payloads in pooled direct memory, so a deep backlog of queued tasks does not
+ * hold its payloads on the heap where every old-generation collection has to trace and copy them.
+ *
+ * <p>Registered on the TaskStateStore, it moves the payload of each newly submitted task whose UTF-8 encoding
+ * is at least the offload threshold into the arena, leaving the task a {@link PayloadRef}, and frees the block
+ * when the task reaches a terminal status or is withdrawn. Memory is reserved in fixed-size direct slabs, each
+ * carved into equal blocks of one power-of-two size class from {@value #MIN_BLOCK_BYTES} bytes up to the slab
+ * size; a payload takes the smallest block it fits, and freed blocks go back to their class's free list.
+ * Slabs are never returned, so the arena's footprint is its high-water mark, capped at its capacity. A payload
+ * larger than a slab, or arriving while the arena is full, stays on the heap.</p>
+ *
+ * <p>With compression on, payloads are deflated at the fastest level and kept compressed only if that saves at
+ * least an eighth; compressed payloads are inflated into a heap copy when read, so only uncompressed ones
+ * give handlers zero-copy access.</p>
+ */
+public class PayloadArena implements TaskSubmissionListener, StatusTransitionListener {
+    /** The smallest block size; smaller payloads still take a whole block. */
+    public static final int MIN_BLOCK_BYTES = 1024;
+
+    private final int slabBytes;
+    private final long capacityBytes;
+    private final int offloadThreshold;
+    private final boolean compress;
+    private final List<ConcurrentLinkedQueue<ByteBuffer>> freeBlocks;
+    private final ConcurrentHashMap<UUID, PayloadRef> live = new ConcurrentHashMap<>();
+    private final Object growthLock = new Object();
+    private final AtomicLong reservedBytes = new AtomicLong();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final LongAdder offloadedCount = new LongAdder();
+    private final LongAdder heapFallbackCount = new LongAdder();
+    private final LongAdder compressionSavedBytes = new LongAdder();
+
+    /**
+     * Constructs a PayloadArena.
+     * @param slabBytes The size of each direct slab, a power of two of at least {@value #MIN_BLOCK_BYTES};
+     * also the largest payload the arena takes.
+     * @param capacityBytes The most direct memory the arena reserves.
+     * @param offloadThreshold The smallest encoded payload, in bytes, moved off the heap.
+     * @param compress Whether payloads are deflated when that saves space.
+     */
+    public PayloadArena(int slabBytes, long capacityBytes, int offloadThreshold, boolean compress) {
+        this.slabBytes = slabBytes;
+        this.capacityBytes = capacityBytes;
+        this.offloadThreshold = offloadThreshold;
+        this.compress = compress;
+        int classes = Integer.numberOfTrailingZeros(slabBytes / MIN_BLOCK_BYTES) + 1;
+        List<ConcurrentLinkedQueue<ByteBuffer>> lists = new ArrayList<>(classes);
+        for (int i = 0; i < classes; i++) {
+            lists.add(new ConcurrentLinkedQueue<>());
+        }
+        this.freeBlocks = List.copyOf(lists);
+    }
+
+    @Override
+    public void onSubmitted(Collection<Task> tasks) {
+        for (Task task : tasks) {
+            offload(task);
+        }
+    }
+
+    @Override
+    public void onTransition(UUID taskId, TaskStatus previous, TaskStatus current) {
+        if ((current == null || current.isTerminal()) && !live.isEmpty()) {
+            PayloadRef ref = live.remove(taskId);
+            if (ref != null) {
+                release(ref);
+            }
+        }
+    }
+
+    /**
+     * Moves a task's payload into the arena if it is large enough and there is room.
+     * @param task A task not yet queued.
+     * @return true if the payload is now in the arena.
+     */
+    public boolean offload(Task task) {
+        if (task.getPayloadRef() != null) {
+            return true;
+        }
+        String payload = task.getPayload();
+        if (payload == null || payload.length() * 3L < offloadThreshold) {
+            return false;
+        }
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < offloadThreshold) {
+            return false;
+        }
+        byte[] stored = bytes;
+        int storedLength = bytes.length;
+        if (compress) {
+            byte[] deflated = new byte[bytes.length - bytes.length / 8];
+            int deflatedLength = deflate(bytes, deflated);
+            if (deflatedLength > 0) {
+                stored = deflated;
+                storedLength = deflatedLength;
+            }
+        }
+        int sizeClass = sizeClassFor(storedLength);
+        ByteBuffer block = sizeClass < 0 ? null : allocate(sizeClass);
+        if (block == null) {
+            heapFallbackCount.increment();
+            return false;
+        }
+        block.put(0, stored, 0, storedLength);
+        PayloadRef ref = new PayloadRef(block, sizeClass, storedLength, bytes.length);
+        live.put(task.getId(), ref);
+        task.movePayload(ref);
+        offloadedCount.increment();
+        compressionSavedBytes.add(bytes.length - storedLength);
+        return true;
+    }
+
+    /**
+     * Deflates into a buffer smaller than the input.
+     * @return The compressed length, or 0 if the output did not fit, i.e. compression would not save enough.
+     */
+    private static int deflate(byte[] input, byte[] output) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            int length = deflater.deflate(output);
+            return deflater.finished() ? length : 0;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private int sizeClassFor(int length) {
+        int blockBytes = Math.max(MIN_BLOCK_BYTES, Integer.highestOneBit(Math.max(1, length - 1)) << 1);
+        if (blockBytes > slabBytes || blockBytes <= 0) {
+            return -1;
+        }
+        return Integer.numberOfTrailingZeros(blockBytes / MIN_BLOCK_BYTES);
+    }
+
+    private ByteBuffer allocate(int sizeClass) {
+        int blockBytes = MIN_BLOCK_BYTES << sizeClass;
+        ByteBuffer block = freeBlocks.get(sizeClass).poll();
+        if (block == null) {
+            block = grow(sizeClass);
+            if (block == null) {
+                return null;
+            }
+        }
+        usedBytes.addAndGet(blockBytes);
+        return block;
+    }
+
+    /**
+     * Reserves a new slab for a size class and carves it into blocks.
+     * @return One of the new blocks, or null if the arena is at capacity.
+     */
+    private ByteBuffer grow(int sizeClass) {
+        synchronized (growthLock) {
+            ByteBuffer block = freeBlocks.get(sizeClass).poll();
+            if (block != null) {
+                return block;
+            }
+            if (reservedBytes.get() + slabBytes > capacityBytes) {
+                return null;
+            }
+            ByteBuffer slab = ByteBuffer.allocateDirect(slabBytes);
+            reservedBytes.addAndGet(slabBytes);
+            int blockBytes = MIN_BLOCK_BYTES << sizeClass;
+            for (int offset = blockBytes; offset < slabBytes; offset += blockBytes) {
+                freeBlocks.get(sizeClass).offer(slab.slice(offset, blockBytes));
+            }
+            return slab.slice(0, blockBytes);
+        }
+    }
+
+    /**
+     * Returns a payload's block to its free list. Releasing twice is harmless.
+     * @param ref The payload to release.
+     */
+    public void release(PayloadRef ref) {
+        if (ref.markReleased()) {
+            freeBlocks.get(ref.getSizeClass()).offer(ref.getBlock());
+            usedBytes.addAndGet(-(MIN_BLOCK_BYTES << ref.getSizeClass()));
+        }
+    }
+
+    /**
+     * @return How many payloads are held in the arena.
+     */
+    public int getLiveCount() {
+        return live.size();
+    }
+
+    /**
+     * @return The direct memory reserved in slabs.
+     */
+    public long getReservedBytes() {
+        return reservedBytes.get();
+    }
+
+    /**
+     * @return The direct memory in blocks holding payloads.
+     */
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * @return How many payloads have been moved into the arena.
+     */
+    public long getOffloadedCount() {
+        return offloadedCount.sum();
+    }
+
+    /**
+     * @return How many payloads over the threshold stayed on the heap because they did not fit.
+     */
+    public long getHeapFallbackCount() {
+        return heapFallbackCount.sum();
+    }
+
+    /**
+     * @return How many payload bytes compression has saved in total.
+     */
+    public long getCompressionSavedBytes() {
+        return compressionSavedBytes.sum();
+    }
+}
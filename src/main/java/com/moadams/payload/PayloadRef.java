@@ -0,0 +1,111 @@
+package com.moadams.payload;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * PayloadRef is the compact handle a Task keeps in place of a payload moved into a {@link PayloadArena}:
+ * the block of direct memory holding the payload's UTF-8 bytes, possibly deflated, and their lengths.
+ * It is valid until the arena releases it, when the task reaches a terminal status.
+ */
+public final class PayloadRef {
+    private final ByteBuffer block;
+    private final int sizeClass;
+    private final int storedLength;
+    private final int length;
+    private volatile boolean released;
+
+    PayloadRef(ByteBuffer block, int sizeClass, int storedLength, int length) {
+        this.block = block;
+        this.sizeClass = sizeClass;
+        this.storedLength = storedLength;
+        this.length = length;
+    }
+
+    /**
+     * Gives read access to the payload bytes. An uncompressed payload is returned as a read-only view of the
+     * arena's memory, without copying; a compressed one is inflated into a new heap buffer. A view must not be
+     * used after the task finishes, since its block is then reused for another payload.
+     * @return A read-only buffer positioned at the first payload byte, with the payload length remaining.
+     * @throws IllegalStateException If the payload has been released.
+     */
+    public ByteBuffer read() {
+        checkLive();
+        ByteBuffer stored = block.asReadOnlyBuffer().limit(storedLength);
+        if (!isCompressed()) {
+            return stored;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored);
+            byte[] bytes = new byte[length];
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                inflated += inflater.inflate(bytes, inflated, length - inflated);
+            }
+            return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compressed payload", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * @return The payload decoded as a new String.
+     * @throws IllegalStateException If the payload has been released.
+     */
+    public String readString() {
+        return StandardCharsets.UTF_8.decode(read()).toString();
+    }
+
+    /**
+     * @return The payload's length in bytes, before compression.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return How many bytes of arena memory the payload occupies, before rounding up to its block size.
+     */
+    public int getStoredLength() {
+        return storedLength;
+    }
+
+    public boolean isCompressed() {
+        return storedLength != length;
+    }
+
+    public boolean isReleased() {
+        return released;
+    }
+
+    private void checkLive() {
+        if (released) {
+            throw new IllegalStateException("Payload was released when its task finished");
+        }
+    }
+
+    /**
+     * Marks the handle released.
+     * @return true if this call released it, false if it already was.
+     */
+    synchronized boolean markReleased() {
+        if (released) {
+            return false;
+        }
+        released = true;
+        return true;
+    }
+
+    ByteBuffer getBlock() {
+        return block;
+    }
+
+    int getSizeClass() {
+        return sizeClass;
+    }
+}
@@ -2,57 +2,127 @@ package com.moadams.producer;
 
 import com.moadams.model.Task;
 import com.moadams.enums.TaskStatus;
+import com.moadams.queue.BackpressureQueue;
+import com.moadams.service.TenantAdmission;
+import com.moadams.state.TaskStateStore;
 import com.moadams.util.TaskLogger;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 /**
  * TaskProducer simulates clients submitting tasks to the ConcurQueue
  * Each producer can generate tasks with varying priorities and payloads
+ * It slows down while a BackpressureQueue is above its high watermark, reading the queue's state before each pause.
+ * Its tasks are tagged with the producer's name as their tenant, and wait for the tenant's rate limit if one is set.
+ * A paced producer follows an arrival schedule instead of a fixed interval, and draws priorities and resources
+ * from a seeded generator so the same seed submits the same tasks at the same offsets.
  */
 public class TaskProducer implements Runnable {
+    private static final int THROTTLE_FACTOR = 4;
+    private static final long MIN_THROTTLE_DELAY_MILLIS = 50;
+    private static final int SHARED_RESOURCE_COUNT = 8;
+
     private final BlockingQueue<Task> taskQueue;
-    private final ConcurrentHashMap<UUID, TaskStatus> taskStates;
+    private final TaskStateStore taskStates;
     private final String producerName;
     private final int tasksToGenerate;
     private final long generationIntervalMillis;
+    private final long submitTimeoutMillis;
+    private final int submitBatchSize;
+    private final TenantAdmission admission;
+    private final LongSupplier arrivalGapsNanos;
+    private final Random random;
+    private long nextArrivalNanos;
+
+    public TaskProducer(BlockingQueue<Task> taskQueue, TaskStateStore taskStates, String producerName, int tasksToGenerate, long generationIntervalMillis) {
+        this(taskQueue, taskStates, producerName, tasksToGenerate, generationIntervalMillis, 0, 1);
+    }
+
+    /**
+     * Constructs a TaskProducer.
+     * @param submitTimeoutMillis How long to wait for queue space before dropping a task.
+     * Zero or less means block until space is available. Ignored for batched submissions, which always block.
+     * @param submitBatchSize How many tasks to generate and submit together; the interval applies between batches.
+     */
+    public TaskProducer(BlockingQueue<Task> taskQueue, TaskStateStore taskStates, String producerName, int tasksToGenerate, long generationIntervalMillis, long submitTimeoutMillis, int submitBatchSize) {
+        this(taskQueue, taskStates, producerName, tasksToGenerate, generationIntervalMillis, submitTimeoutMillis, submitBatchSize, null);
+    }
+
+    /**
+     * Constructs a TaskProducer whose submissions are rate-limited per tenant.
+     * @param submitTimeoutMillis How long to wait for queue space before dropping a task.
+     * Zero or less means block until space is available. Ignored for batched submissions, which always block.
+     * @param submitBatchSize How many tasks to generate and submit together; the interval applies between batches.
+     * @param admission The per-tenant admission limits each task waits for before it is submitted, or null for none.
+     */
+    public TaskProducer(BlockingQueue<Task> taskQueue, TaskStateStore taskStates, String producerName, int tasksToGenerate, long generationIntervalMillis, long submitTimeoutMillis, int submitBatchSize, TenantAdmission admission) {
+        this(taskQueue, taskStates, producerName, tasksToGenerate, generationIntervalMillis, submitTimeoutMillis, submitBatchSize, admission, null, null);
+    }
+
+    /**
+     * Constructs a paced TaskProducer. Each task is due a gap after the previous one was due, measured from when
+     * the producer starts, rather than a fixed interval after the previous one was submitted, so time spent
+     * blocked on a full queue is made up afterwards instead of lowering the offered rate. Paced producers ignore
+     * the high watermark and submit one task at a time.
+     * @param arrivalGapsNanos Supplies the gap before each task after the first, in nanoseconds.
+     * @param random Draws the tasks' priorities and resources.
+     * @param submitTimeoutMillis How long to wait for queue space before dropping a task; zero or less blocks.
+     * @param admission The per-tenant admission limits, or null for none.
+     */
+    public TaskProducer(BlockingQueue<Task> taskQueue, TaskStateStore taskStates, String producerName, int tasksToGenerate, LongSupplier arrivalGapsNanos, Random random, long submitTimeoutMillis, TenantAdmission admission) {
+        this(taskQueue, taskStates, producerName, tasksToGenerate, 0, submitTimeoutMillis, 1, admission, arrivalGapsNanos, random);
+    }
 
-    public TaskProducer(BlockingQueue<Task> taskQueue, ConcurrentHashMap<UUID, TaskStatus> taskStates, String producerName, int tasksToGenerate, long generationIntervalMillis) {
+    private TaskProducer(BlockingQueue<Task> taskQueue, TaskStateStore taskStates, String producerName, int tasksToGenerate, long generationIntervalMillis, long submitTimeoutMillis, int submitBatchSize, TenantAdmission admission, LongSupplier arrivalGapsNanos, Random random) {
         this.taskQueue = taskQueue;
         this.taskStates = taskStates;
         this.producerName = producerName;
         this.tasksToGenerate = tasksToGenerate;
         this.generationIntervalMillis = generationIntervalMillis;
+        this.submitTimeoutMillis = submitTimeoutMillis;
+        this.submitBatchSize = Math.max(1, submitBatchSize);
+        this.admission = admission;
+        this.arrivalGapsNanos = arrivalGapsNanos;
+        this.random = random;
     }
 
     @Override
     public void run() {
         TaskLogger.log("Producer " + producerName + " started");
+        nextArrivalNanos = System.nanoTime();
+        if (submitBatchSize > 1) {
+            runBatched();
+            return;
+        }
         for (int i = 0; i < tasksToGenerate; i++) {
-            int priority;
-            String taskName;
-            if (producerName.contains("HighPriority")) {
-                priority = ThreadLocalRandom.current().nextInt(1, 4);
-                taskName = "UrgentTask-" + producerName + "-" + (i + 1);
-            }else if (producerName.contains("LowPriority")) {
-                priority = ThreadLocalRandom.current().nextInt(5,10);
-                taskName = "RoutineTask-" + producerName + "-" + (i + 1);
-            }else{
-                priority = ThreadLocalRandom.current().nextInt(1, 10);
-                taskName = "MixedTask-" + producerName + "-" + (i + 1);
-            }
-
-            String payload = "Data for " + taskName + " (Priority: " + priority + ")";
-            Task task = new Task(taskName, priority, payload);
+            Task task = createTask(i);
 
             try{
-                taskQueue.put(task);
-                taskStates.put(task.getId(), TaskStatus.SUBMITTED);
-                TaskLogger.log(producerName + " submitted " + task.getName());
-                Thread.sleep(generationIntervalMillis);
+                if (admission != null) {
+                    admission.admit(task);
+                }
+                taskStates.markSubmitted(task);
+                task.markEnqueued();
+                if (submitTimeoutMillis > 0) {
+                    if (!taskQueue.offer(task, submitTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                        taskStates.remove(task.getId());
+                        TaskLogger.logWarning(producerName + " dropped " + task.getName() + ": queue full after " + submitTimeoutMillis + "ms");
+                    } else {
+                        TaskLogger.log(producerName + " submitted " + task.getName());
+                    }
+                } else {
+                    taskQueue.put(task);
+                    TaskLogger.log(producerName + " submitted " + task.getName());
+                }
+                pause();
             }catch(InterruptedException e){
                 TaskLogger.logError(producerName + " interrupted while submitting task " + task.getName());
                 Thread.currentThread().interrupt();
@@ -61,4 +131,101 @@ public class TaskProducer implements Runnable {
         }
         TaskLogger.log(producerName + " finished generating " + tasksToGenerate + " tasks");
     }
+
+    /**
+     * Generates tasks in bursts of submitBatchSize and submits each burst with one putAll,
+     * so the queue lock and consumer wakeups are paid per burst rather than per task.
+     */
+    private void runBatched() {
+        List<Task> batch = new ArrayList<>(submitBatchSize);
+        for (int i = 0; i < tasksToGenerate; ) {
+            int end = Math.min(tasksToGenerate, i + submitBatchSize);
+            for (; i < end; i++) {
+                batch.add(createTask(i));
+            }
+            try {
+                if (admission != null) {
+                    admission.admitAll(batch);
+                }
+                taskStates.markSubmitted(batch);
+                for (Task task : batch) {
+                    task.markEnqueued();
+                }
+                if (taskQueue instanceof BackpressureQueue<Task> queue) {
+                    queue.putAll(batch);
+                } else {
+                    for (Task task : batch) {
+                        taskQueue.put(task);
+                    }
+                }
+                TaskLogger.log(producerName + " submitted a batch of " + batch.size() + " tasks");
+                batch.clear();
+                pause();
+            } catch (InterruptedException e) {
+                TaskLogger.logError(producerName + " interrupted while submitting a batch of " + batch.size() + " tasks");
+                for (Task task : batch) {
+                    if (!taskQueue.contains(task)) {
+                        taskStates.remove(task.getId(), TaskStatus.SUBMITTED);
+                    }
+                }
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        TaskLogger.log(producerName + " finished generating " + tasksToGenerate + " tasks");
+    }
+
+    private Task createTask(int i) {
+        Random random = random();
+        int priority;
+        String taskName;
+        if (producerName.contains("HighPriority")) {
+            priority = random.nextInt(1, 4);
+            taskName = "UrgentTask-" + producerName + "-" + (i + 1);
+        }else if (producerName.contains("LowPriority")) {
+            priority = random.nextInt(5,10);
+            taskName = "RoutineTask-" + producerName + "-" + (i + 1);
+        }else{
+            priority = random.nextInt(1, 10);
+            taskName = "MixedTask-" + producerName + "-" + (i + 1);
+        }
+
+        String payload = "Data for " + taskName + " (Priority: " + priority + ")";
+        Task task = new Task(taskName, priority, payload, pickResourceKeys());
+        task.setTenant(producerName);
+        return task;
+    }
+
+    /**
+     * Simulates each task touching one or two of a small pool of shared resources,
+     * so some tasks contend and most run in parallel.
+     */
+    private Set<String> pickResourceKeys() {
+        Random random = random();
+        String first = "resource-" + random.nextInt(SHARED_RESOURCE_COUNT);
+        if (random.nextBoolean()) {
+            return Set.of(first);
+        }
+        String second = "resource-" + random.nextInt(SHARED_RESOURCE_COUNT);
+        return first.equals(second) ? Set.of(first) : Set.of(first, second);
+    }
+
+    private Random random() {
+        return random != null ? random : ThreadLocalRandom.current();
+    }
+
+    private void pause() throws InterruptedException {
+        if (arrivalGapsNanos != null) {
+            nextArrivalNanos += arrivalGapsNanos.getAsLong();
+            long delay = nextArrivalNanos - System.nanoTime();
+            if (delay > 0) {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            }
+            return;
+        }
+        boolean throttled = taskQueue instanceof BackpressureQueue<Task> queue && queue.isAboveHighWatermark();
+        Thread.sleep(throttled
+                ? Math.max(generationIntervalMillis * THROTTLE_FACTOR, MIN_THROTTLE_DELAY_MILLIS)
+                : generationIntervalMillis);
+    }
 }
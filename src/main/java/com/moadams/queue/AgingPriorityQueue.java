@@ -0,0 +1,111 @@
+package com.moadams.queue;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.function.ToIntFunction;
+
+/**
+ * AgingPriorityQueue orders elements by a priority that improves the longer they wait:
+ * an element's effective priority is {@code priority - waited / agingInterval}, so a low-priority
+ * element is eventually served ahead of fresh high-priority work and its wait is bounded by roughly
+ * {@code (priority - best priority) * agingInterval} plus the backlog ahead of it.
+ *
+ * <p>Because every element ages at the same rate, comparing effective priorities at any instant is the
+ * same as comparing {@code enqueueTime + priority * agingInterval}. That key is fixed at insertion, so the
+ * queue stays an ordinary binary heap with O(log n) insert and poll and never needs re-sorting.
+ * Equal keys are served in insertion order.</p>
+ *
+ * <p>Not thread-safe; {@link BoundedPriorityBlockingQueue} calls it under its own lock.</p>
+ * @param <E> The element type.
+ */
+public class AgingPriorityQueue<E> extends AbstractQueue<E> {
+    private final PriorityQueue<Entry<E>> heap = new PriorityQueue<>();
+    private final ToIntFunction<? super E> priorityOf;
+    private final long agingIntervalNanos;
+    private long insertions;
+
+    private static final class Entry<T> implements Comparable<Entry<T>> {
+        final T element;
+        final long key;
+        final long order;
+
+        Entry(T element, long key, long order) {
+            this.element = element;
+            this.key = key;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Entry<T> other) {
+            int keyCompare = Long.compare(key, other.key);
+            return keyCompare != 0 ? keyCompare : Long.compare(order, other.order);
+        }
+    }
+
+    /**
+     * Constructs an AgingPriorityQueue.
+     * @param priorityOf Extracts the integer priority (lower is more urgent).
+     * @param agingIntervalNanos How long an element waits to gain one priority level.
+     */
+    public AgingPriorityQueue(ToIntFunction<? super E> priorityOf, long agingIntervalNanos) {
+        if (agingIntervalNanos <= 0) {
+            throw new IllegalArgumentException("Aging interval must be positive: " + agingIntervalNanos);
+        }
+        this.priorityOf = Objects.requireNonNull(priorityOf);
+        this.agingIntervalNanos = agingIntervalNanos;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        long key = System.nanoTime() + (long) priorityOf.applyAsInt(e) * agingIntervalNanos;
+        return heap.offer(new Entry<>(Objects.requireNonNull(e), key, insertions++));
+    }
+
+    @Override
+    public E poll() {
+        Entry<E> entry = heap.poll();
+        return entry == null ? null : entry.element;
+    }
+
+    @Override
+    public E peek() {
+        Entry<E> entry = heap.peek();
+        return entry == null ? null : entry.element;
+    }
+
+    @Override
+    public int size() {
+        return heap.size();
+    }
+
+    @Override
+    public void clear() {
+        heap.clear();
+    }
+
+    /**
+     * Iterates in no particular order. Removal through the iterator is supported.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        Iterator<Entry<E>> entries = heap.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return entries.next().element;
+            }
+
+            @Override
+            public void remove() {
+                entries.remove();
+            }
+        };
+    }
+}
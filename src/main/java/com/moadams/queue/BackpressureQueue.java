@@ -0,0 +1,64 @@
+package com.moadams.queue;
+
+import com.moadams.enums.RejectionPolicy;
+
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A capacity-bounded BlockingQueue that applies a RejectionPolicy when full
+ * and reports high/low watermark crossings to listeners.
+ * @param <E> The element type.
+ */
+public interface BackpressureQueue<E> extends BlockingQueue<E> {
+
+    /**
+     * Offers an element, applying the given policy if the queue is full.
+     * @param e The element to add.
+     * @param timeout How long to wait for space under BLOCK.
+     * @param unit The unit of the timeout.
+     * @param policy What to do when the queue is full.
+     * @return true if the element was added, false if it was rejected.
+     * @throws InterruptedException If interrupted while waiting for space.
+     */
+    boolean offer(E e, long timeout, TimeUnit unit, RejectionPolicy policy) throws InterruptedException;
+
+    /**
+     * Inserts every element, blocking while the queue is full. Elements are added in chunks
+     * that fit the remaining capacity, so a large batch costs one lock round trip and one
+     * consumer wakeup per chunk rather than per element.
+     * @param elements The elements to add.
+     * @throws InterruptedException If interrupted while waiting for space; elements already added stay queued.
+     */
+    void putAll(Collection<? extends E> elements) throws InterruptedException;
+
+    /**
+     * Registers a listener for high/low watermark crossings. A listener added while the queue is above its
+     * high watermark is told so at once.
+     * @param listener The listener to notify.
+     */
+    void addWatermarkListener(WatermarkListener listener);
+
+    /**
+     * Removes a previously registered watermark listener.
+     * @param listener The listener to remove.
+     */
+    void removeWatermarkListener(WatermarkListener listener);
+
+    /**
+     * Sets a handler that receives elements evicted under DROP_LOWEST_PRIORITY.
+     * The handler runs on the offering thread, outside any queue lock.
+     * @param evictionHandler The handler, or null to discard evicted elements silently.
+     */
+    void setEvictionHandler(Consumer<? super E> evictionHandler);
+
+    /**
+     * @return Whether the queue has reached its high watermark and not yet drained to its low watermark.
+     * Watermark callbacks from different threads can arrive out of order; this is always current.
+     */
+    boolean isAboveHighWatermark();
+
+    int getCapacity();
+}
@@ -0,0 +1,552 @@
+package com.moadams.queue;
+
+import com.moadams.enums.RejectionPolicy;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * BoundedPriorityBlockingQueue is a priority-ordered blocking queue with a hard capacity.
+ * Unlike PriorityBlockingQueue, whose constructor argument is only the initial heap size,
+ * put blocks and timed offers wait or reject once the queue holds capacity elements.
+ * It also fires high/low watermark callbacks so producers can back off before the queue is full.
+ *
+ * <p>The order in which elements leave is pluggable: by default a binary heap gives strict priority order,
+ * and any non-thread-safe Queue, such as {@link AgingPriorityQueue} or {@link WeightedFairQueue}, can be
+ * supplied instead. It is only ever touched under this queue's lock. Eviction under DROP_LOWEST_PRIORITY
+ * always uses the natural ordering.</p>
+ * @param <E> The element type, ordered by its natural ordering (lowest first).
+ */
+public class BoundedPriorityBlockingQueue<E extends Comparable<? super E>> extends AbstractQueue<E> implements BackpressureQueue<E> {
+    private final Queue<E> schedule;
+    private final int capacity;
+    private final int highWatermark;
+    private final int lowWatermark;
+    private final RejectionPolicy defaultPolicy;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final List<WatermarkListener> watermarkListeners = new CopyOnWriteArrayList<>();
+    private volatile Consumer<? super E> evictionHandler;
+    private volatile boolean aboveHighWatermark;
+
+    /**
+     * Constructs a BoundedPriorityBlockingQueue.
+     * @param capacity The maximum number of elements the queue may hold.
+     * @param defaultPolicy The rejection policy used by offer(e, timeout, unit) when the queue is full.
+     * @param highWatermark The size at which listeners are told the queue is filling up.
+     * @param lowWatermark The size at which listeners are told the queue has drained again.
+     */
+    public BoundedPriorityBlockingQueue(int capacity, RejectionPolicy defaultPolicy, int highWatermark, int lowWatermark) {
+        this(capacity, defaultPolicy, highWatermark, lowWatermark, new PriorityQueue<>(Math.max(1, capacity)));
+    }
+
+    /**
+     * Constructs a BoundedPriorityBlockingQueue that dequeues in the order of the given schedule.
+     * @param capacity The maximum number of elements the queue may hold.
+     * @param defaultPolicy The rejection policy used by offer(e, timeout, unit) when the queue is full.
+     * @param highWatermark The size at which listeners are told the queue is filling up.
+     * @param lowWatermark The size at which listeners are told the queue has drained again.
+     * @param schedule An empty, unbounded, non-thread-safe queue that decides dequeue order.
+     */
+    public BoundedPriorityBlockingQueue(int capacity, RejectionPolicy defaultPolicy, int highWatermark, int lowWatermark,
+                                       Queue<E> schedule) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        if (highWatermark > capacity || lowWatermark < 0 || lowWatermark >= highWatermark) {
+            throw new IllegalArgumentException("Watermarks must satisfy 0 <= low < high <= capacity (low=" +
+                    lowWatermark + ", high=" + highWatermark + ", capacity=" + capacity + ")");
+        }
+        if (!schedule.isEmpty()) {
+            throw new IllegalArgumentException("Schedule must start empty");
+        }
+        this.schedule = Objects.requireNonNull(schedule);
+        this.capacity = capacity;
+        this.defaultPolicy = Objects.requireNonNull(defaultPolicy);
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+    }
+
+    /**
+     * Constructs a BoundedPriorityBlockingQueue with watermarks at 80% and 50% of capacity.
+     * @param capacity The maximum number of elements the queue may hold.
+     * @param defaultPolicy The rejection policy used by offer(e, timeout, unit) when the queue is full.
+     */
+    public BoundedPriorityBlockingQueue(int capacity, RejectionPolicy defaultPolicy) {
+        this(capacity, defaultPolicy, new PriorityQueue<>(Math.max(1, capacity)));
+    }
+
+    /**
+     * Constructs a BoundedPriorityBlockingQueue with watermarks at 80% and 50% of capacity
+     * that dequeues in the order of the given schedule.
+     * @param capacity The maximum number of elements the queue may hold.
+     * @param defaultPolicy The rejection policy used by offer(e, timeout, unit) when the queue is full.
+     * @param schedule An empty, unbounded, non-thread-safe queue that decides dequeue order.
+     */
+    public BoundedPriorityBlockingQueue(int capacity, RejectionPolicy defaultPolicy, Queue<E> schedule) {
+        this(capacity, defaultPolicy, Math.max(1, capacity * 4 / 5), Math.min(capacity / 2, Math.max(1, capacity * 4 / 5) - 1), schedule);
+    }
+
+    @Override
+    public void addWatermarkListener(WatermarkListener listener) {
+        watermarkListeners.add(Objects.requireNonNull(listener));
+        if (aboveHighWatermark) {
+            listener.onHighWatermark(size(), capacity);
+        }
+    }
+
+    @Override
+    public void removeWatermarkListener(WatermarkListener listener) {
+        watermarkListeners.remove(listener);
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public boolean isAboveHighWatermark() {
+        return aboveHighWatermark;
+    }
+
+    public int getHighWatermark() {
+        return highWatermark;
+    }
+
+    public int getLowWatermark() {
+        return lowWatermark;
+    }
+
+    @Override
+    public void setEvictionHandler(Consumer<? super E> evictionHandler) {
+        this.evictionHandler = evictionHandler;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        Objects.requireNonNull(e);
+        int transition;
+        int size;
+        lock.lock();
+        try {
+            if (schedule.size() == capacity) {
+                return false;
+            }
+            enqueue(e);
+            transition = watermarkTransition();
+            size = schedule.size();
+        } finally {
+            lock.unlock();
+        }
+        fireWatermark(transition, size);
+        return true;
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        Objects.requireNonNull(e);
+        int transition;
+        int size;
+        lock.lockInterruptibly();
+        try {
+            while (schedule.size() == capacity) {
+                notFull.await();
+            }
+            enqueue(e);
+            transition = watermarkTransition();
+            size = schedule.size();
+        } finally {
+            lock.unlock();
+        }
+        fireWatermark(transition, size);
+    }
+
+    @Override
+    public void putAll(Collection<? extends E> elements) throws InterruptedException {
+        Iterator<? extends E> it = elements.iterator();
+        while (it.hasNext()) {
+            int transition;
+            int size;
+            lock.lockInterruptibly();
+            try {
+                while (schedule.size() == capacity) {
+                    notFull.await();
+                }
+                int added = 0;
+                while (schedule.size() < capacity && it.hasNext()) {
+                    schedule.offer(Objects.requireNonNull(it.next()));
+                    added++;
+                }
+                if (added == 1) {
+                    notEmpty.signal();
+                } else {
+                    notEmpty.signalAll();
+                }
+                transition = watermarkTransition();
+                size = schedule.size();
+            } finally {
+                lock.unlock();
+            }
+            fireWatermark(transition, size);
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        return offerInterruptibly(e, timeout, unit, defaultPolicy);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit, RejectionPolicy policy) throws InterruptedException {
+        return offerInterruptibly(e, timeout, unit, policy);
+    }
+
+    private boolean offerInterruptibly(E e, long timeout, TimeUnit unit, RejectionPolicy policy) throws InterruptedException {
+        Objects.requireNonNull(e);
+        long nanos = unit.toNanos(timeout);
+        E evicted = null;
+        int transition;
+        int size;
+        lock.lockInterruptibly();
+        try {
+            if (schedule.size() == capacity) {
+                switch (policy) {
+                    case BLOCK:
+                        while (schedule.size() == capacity) {
+                            if (nanos <= 0L) {
+                                return false;
+                            }
+                            nanos = notFull.awaitNanos(nanos);
+                        }
+                        break;
+                    case FAIL_FAST:
+                        return false;
+                    case DROP_LOWEST_PRIORITY:
+                        evicted = evictLowestPriorityFor(e);
+                        if (evicted == null) {
+                            return false;
+                        }
+                        break;
+                }
+            }
+            enqueue(e);
+            transition = watermarkTransition();
+            size = schedule.size();
+        } finally {
+            lock.unlock();
+        }
+        Consumer<? super E> handler = evictionHandler;
+        if (evicted != null && handler != null) {
+            handler.accept(evicted);
+        }
+        fireWatermark(transition, size);
+        return true;
+    }
+
+    /**
+     * Removes the lowest-priority element if the incoming element outranks it.
+     * This is a linear scan of the heap, which is acceptable because it only runs when the queue is full.
+     * @return The evicted element, or null if the incoming element does not outrank anything.
+     */
+    private E evictLowestPriorityFor(E incoming) {
+        E lowest = null;
+        for (E candidate : schedule) {
+            if (lowest == null || candidate.compareTo(lowest) > 0) {
+                lowest = candidate;
+            }
+        }
+        if (lowest == null || incoming.compareTo(lowest) >= 0) {
+            return null;
+        }
+        schedule.remove(lowest);
+        return lowest;
+    }
+
+    private void enqueue(E e) {
+        schedule.offer(e);
+        notEmpty.signal();
+    }
+
+    private E dequeue() {
+        E e = schedule.poll();
+        if (e != null) {
+            notFull.signal();
+        }
+        return e;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E e;
+        int transition;
+        int size;
+        lock.lockInterruptibly();
+        try {
+            while (schedule.isEmpty()) {
+                notEmpty.await();
+            }
+            e = dequeue();
+            transition = watermarkTransition();
+            size = schedule.size();
+        } finally {
+            lock.unlock();
+        }
+        fireWatermark(transition, size);
+        return e;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        E e;
+        int transition;
+        int size;
+        lock.lockInterruptibly();
+        try {
+            while (schedule.isEmpty()) {
+                if (nanos <= 0L) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            e = dequeue();
+            transition = watermarkTransition();
+            size = schedule.size();
+        } finally {
+            lock.unlock();
+        }
+        fireWatermark(transition, size);
+        return e;
+    }
+
+    @Override
+    public E poll() {
+        E e;
+        int transition;
+        int size;
+        lock.lock();
+        try {
+            e = dequeue();
+            transition = watermarkTransition();
+            size = schedule.size();
+        } finally {
+            lock.unlock();
+        }
+        fireWatermark(transition, size);
+        return e;
+    }
+
+    @Override
+    public E peek() {
+        lock.lock();
+        try {
+            return schedule.peek();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return schedule.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return capacity - schedule.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        boolean removed;
+        int transition;
+        int size;
+        lock.lock();
+        try {
+            removed = schedule.remove(o);
+            if (removed) {
+                notFull.signal();
+            }
+            transition = watermarkTransition();
+            size = schedule.size();
+        } finally {
+            lock.unlock();
+        }
+        fireWatermark(transition, size);
+        return removed;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        lock.lock();
+        try {
+            return schedule.contains(o);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        int transition;
+        lock.lock();
+        try {
+            schedule.clear();
+            notFull.signalAll();
+            transition = watermarkTransition();
+        } finally {
+            lock.unlock();
+        }
+        fireWatermark(transition, 0);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        Objects.requireNonNull(c);
+        if (c == this) {
+            throw new IllegalArgumentException("Cannot drain a queue into itself");
+        }
+        if (maxElements <= 0) {
+            return 0;
+        }
+        int drained = 0;
+        int transition;
+        int size;
+        lock.lock();
+        try {
+            while (drained < maxElements && !schedule.isEmpty()) {
+                c.add(schedule.poll());
+                drained++;
+            }
+            if (drained > 0) {
+                notFull.signalAll();
+            }
+            transition = watermarkTransition();
+            size = schedule.size();
+        } finally {
+            lock.unlock();
+        }
+        fireWatermark(transition, size);
+        return drained;
+    }
+
+    @Override
+    public Object[] toArray() {
+        lock.lock();
+        try {
+            return schedule.toArray();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        lock.lock();
+        try {
+            return schedule.toArray(a);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a weakly consistent iterator over a snapshot of the queue, in no particular order.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new SnapshotIterator(toArray());
+    }
+
+    /**
+     * Works out whether the current size crossed a watermark. Must be called with the lock held.
+     * @return 1 for a high watermark crossing, -1 for a low watermark crossing, 0 otherwise.
+     */
+    private int watermarkTransition() {
+        int size = schedule.size();
+        if (!aboveHighWatermark && size >= highWatermark) {
+            aboveHighWatermark = true;
+            return 1;
+        }
+        if (aboveHighWatermark && size <= lowWatermark) {
+            aboveHighWatermark = false;
+            return -1;
+        }
+        return 0;
+    }
+
+    private void fireWatermark(int transition, int size) {
+        if (transition == 0) {
+            return;
+        }
+        for (WatermarkListener listener : watermarkListeners) {
+            if (transition > 0) {
+                listener.onHighWatermark(size, capacity);
+            } else {
+                listener.onLowWatermark(size, capacity);
+            }
+        }
+    }
+
+    private final class SnapshotIterator implements Iterator<E> {
+        private final Object[] snapshot;
+        private int cursor;
+        private int lastReturned = -1;
+
+        SnapshotIterator(Object[] snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < snapshot.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (cursor >= snapshot.length) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = cursor;
+            return (E) snapshot[cursor++];
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            BoundedPriorityBlockingQueue.this.remove(snapshot[lastReturned]);
+            lastReturned = -1;
+        }
+    }
+}
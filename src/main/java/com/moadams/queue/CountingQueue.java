@@ -0,0 +1,135 @@
+package com.moadams.queue;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * CountingQueue wraps the container a bounded queue keeps its elements in and counts the elements per key as
+ * they go in and out, so per-key depths can be read from any thread in O(keys) without scanning the queue or
+ * taking its lock. Several containers, such as the shards of a {@link WorkStealingTaskQueue}, can share one
+ * count map.
+ *
+ * <p>Like the container it wraps, a CountingQueue is not thread-safe: the owning queue must only change it under
+ * its lock. Only the count map is safe to read concurrently; a read may be off by the changes in flight.</p>
+ * @param <E> The element type.
+ * @param <K> The key elements are counted by.
+ */
+public class CountingQueue<E, K> extends AbstractQueue<E> {
+    private final Queue<E> delegate;
+    private final Function<? super E, ? extends K> keyOf;
+    private final ConcurrentMap<K, LongAdder> counts;
+
+    /**
+     * Constructs a CountingQueue.
+     * @param delegate The empty container that holds the elements and decides their order.
+     * @param keyOf Extracts the key an element is counted under.
+     * @param counts The live counts, updated in place; keys are added as they are first seen and never removed.
+     */
+    public CountingQueue(Queue<E> delegate, Function<? super E, ? extends K> keyOf, ConcurrentMap<K, LongAdder> counts) {
+        if (!delegate.isEmpty()) {
+            throw new IllegalArgumentException("The container must start empty");
+        }
+        this.delegate = delegate;
+        this.keyOf = Objects.requireNonNull(keyOf);
+        this.counts = Objects.requireNonNull(counts);
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (!delegate.offer(e)) {
+            return false;
+        }
+        counts.computeIfAbsent(keyOf.apply(e), key -> new LongAdder()).increment();
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        E e = delegate.poll();
+        if (e != null) {
+            removed(e);
+        }
+        return e;
+    }
+
+    @Override
+    public E peek() {
+        return delegate.peek();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        if (!delegate.remove(o)) {
+            return false;
+        }
+        // The container held it, so it is an E.
+        removed((E) o);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        for (E e; (e = delegate.poll()) != null; ) {
+            removed(e);
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return delegate.contains(o);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public Object[] toArray() {
+        return delegate.toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return delegate.toArray(a);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        Iterator<E> it = delegate.iterator();
+        return new Iterator<>() {
+            private E lastReturned;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public E next() {
+                lastReturned = it.next();
+                return lastReturned;
+            }
+
+            @Override
+            public void remove() {
+                it.remove();
+                removed(lastReturned);
+                lastReturned = null;
+            }
+        };
+    }
+
+    private void removed(E e) {
+        LongAdder count = counts.get(keyOf.apply(e));
+        if (count != null) {
+            count.decrement();
+        }
+    }
+}
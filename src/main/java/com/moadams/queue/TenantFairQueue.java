@@ -0,0 +1,192 @@
+package com.moadams.queue;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * TenantFairQueue isolates tenants that share one queue. Priorities are served strictly, lowest number first;
+ * within a priority every tenant with waiting work has its own FIFO flow, and flows take turns by deficit round
+ * robin: each turn a flow is granted its quantum (its tenant's weight) and dequeues that many elements before
+ * the next flow's turn. A tenant that floods the queue therefore lengthens only its own flow, and every other
+ * tenant at the same priority still gets its share of dequeues.
+ *
+ * <p>A flow that empties is dropped together with any unused deficit, so an idle tenant cannot bank credit
+ * and burst ahead when it returns. Offer and poll cost O(log priorities); bands emptied by removal are
+ * discarded lazily when they reach the head.</p>
+ *
+ * <p>Not thread-safe; {@link BoundedPriorityBlockingQueue} calls it under its own lock.</p>
+ * @param <E> The element type.
+ */
+public class TenantFairQueue<E> extends AbstractQueue<E> {
+    private final ToIntFunction<? super E> priorityOf;
+    private final Function<? super E, String> tenantOf;
+    private final ToIntFunction<String> quantumOf;
+    private final TreeMap<Integer, Band> bands = new TreeMap<>();
+    private int size;
+
+    private final class Band {
+        final Map<String, Flow> flows = new HashMap<>();
+        final ArrayDeque<Flow> turns = new ArrayDeque<>();
+    }
+
+    private final class Flow {
+        final String tenant;
+        final int quantum;
+        final ArrayDeque<E> elements = new ArrayDeque<>();
+        int deficit;
+
+        Flow(String tenant, int quantum) {
+            this.tenant = tenant;
+            this.quantum = quantum;
+        }
+    }
+
+    /**
+     * Constructs a TenantFairQueue.
+     * @param priorityOf Maps an element to its priority; lower numbers are served first.
+     * @param tenantOf Maps an element to its tenant.
+     * @param quantumOf Maps a tenant to how many elements it dequeues per turn; values below 1 count as 1.
+     */
+    public TenantFairQueue(ToIntFunction<? super E> priorityOf, Function<? super E, String> tenantOf,
+                           ToIntFunction<String> quantumOf) {
+        this.priorityOf = Objects.requireNonNull(priorityOf);
+        this.tenantOf = Objects.requireNonNull(tenantOf);
+        this.quantumOf = Objects.requireNonNull(quantumOf);
+    }
+
+    @Override
+    public boolean offer(E e) {
+        Band band = bands.computeIfAbsent(priorityOf.applyAsInt(Objects.requireNonNull(e)), p -> new Band());
+        String tenant = tenantOf.apply(e);
+        Flow flow = band.flows.get(tenant);
+        if (flow == null) {
+            flow = new Flow(tenant, Math.max(1, quantumOf.applyAsInt(tenant)));
+            band.flows.put(tenant, flow);
+            band.turns.addLast(flow);
+        }
+        flow.elements.addLast(e);
+        size++;
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        Map.Entry<Integer, Band> first = firstBand();
+        if (first == null) {
+            return null;
+        }
+        Band band = first.getValue();
+        Flow flow = band.turns.peekFirst();
+        if (flow.deficit <= 0) {
+            flow.deficit += flow.quantum;
+        }
+        E e = flow.elements.pollFirst();
+        flow.deficit--;
+        size--;
+        if (flow.elements.isEmpty()) {
+            band.turns.pollFirst();
+            band.flows.remove(flow.tenant);
+        } else if (flow.deficit <= 0) {
+            band.turns.addLast(band.turns.pollFirst());
+        }
+        return e;
+    }
+
+    /**
+     * Returns the element the next poll would return.
+     */
+    @Override
+    public E peek() {
+        Map.Entry<Integer, Band> first = firstBand();
+        return first == null ? null : first.getValue().turns.peekFirst().elements.peekFirst();
+    }
+
+    /**
+     * Finds the highest-priority band with waiting elements, discarding emptied bands ahead of it.
+     */
+    private Map.Entry<Integer, Band> firstBand() {
+        Map.Entry<Integer, Band> first;
+        while ((first = bands.firstEntry()) != null && first.getValue().turns.isEmpty()) {
+            bands.pollFirstEntry();
+        }
+        return first;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        bands.clear();
+        size = 0;
+    }
+
+    /**
+     * Iterates priority by priority and flow by flow. Removal through the iterator is supported.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<>() {
+            private final Iterator<Band> bandIterator = bands.values().iterator();
+            private Iterator<Flow> flowIterator;
+            private Flow flow;
+            private Iterator<E> current;
+            private Iterator<E> lastReturnedFrom;
+            private Flow lastReturnedFlow;
+            private Band band;
+            private Band lastReturnedBand;
+
+            @Override
+            public boolean hasNext() {
+                while (current == null || !current.hasNext()) {
+                    while (flowIterator == null || !flowIterator.hasNext()) {
+                        if (!bandIterator.hasNext()) {
+                            return false;
+                        }
+                        band = bandIterator.next();
+                        // Iterate a copy so dropping an emptied flow does not disturb iteration.
+                        flowIterator = new ArrayDeque<>(band.turns).iterator();
+                    }
+                    flow = flowIterator.next();
+                    current = flow.elements.iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                lastReturnedFrom = current;
+                lastReturnedFlow = flow;
+                lastReturnedBand = band;
+                return current.next();
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturnedFrom == null) {
+                    throw new IllegalStateException();
+                }
+                lastReturnedFrom.remove();
+                lastReturnedFrom = null;
+                size--;
+                if (lastReturnedFlow.elements.isEmpty()) {
+                    lastReturnedBand.turns.remove(lastReturnedFlow);
+                    lastReturnedBand.flows.remove(lastReturnedFlow.tenant);
+                }
+            }
+        };
+    }
+}
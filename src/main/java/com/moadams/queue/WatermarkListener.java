@@ -0,0 +1,25 @@
+package com.moadams.queue;
+
+/**
+ * Callback fired when a bounded queue crosses its high or low watermark.
+ * Callbacks run on the thread that caused the crossing, outside the queue lock,
+ * so implementations should be cheap and thread-safe. Crossings made by different threads in quick
+ * succession can be delivered in the opposite order; a listener that keeps state should read
+ * {@link BackpressureQueue#isAboveHighWatermark()} rather than trust the last callback.
+ */
+public interface WatermarkListener {
+
+    /**
+     * Called once when the queue size rises to the high watermark.
+     * @param size The queue size at the time of the crossing.
+     * @param capacity The queue capacity.
+     */
+    void onHighWatermark(int size, int capacity);
+
+    /**
+     * Called once when the queue size falls back to the low watermark after a high watermark crossing.
+     * @param size The queue size at the time of the crossing.
+     * @param capacity The queue capacity.
+     */
+    void onLowWatermark(int size, int capacity);
+}
@@ -0,0 +1,583 @@
+package com.moadams.queue;
+
+import com.moadams.enums.RejectionPolicy;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * WorkStealingTaskQueue splits the task queue into one local priority shard per worker.
+ * Each consuming thread is bound to a home shard on its first take, producers place each
+ * submission on the shorter of two randomly chosen shards, and a worker whose home shard
+ * is empty (or clearly worse than a peer's) steals the best head from its peers.
+ * Producers and consumers therefore contend on a shard lock rather than on one global lock.
+ *
+ * <p>Ordering bound: within a shard, order is exact (natural ordering of E). Across shards,
+ * every dequeue returns an element whose priority is at most {@code stealThreshold} levels
+ * worse than the best shard head observed by the taker's lock-free scan of all shard heads.
+ * That scan is racy, so an element enqueued while a scan is in progress can additionally be
+ * overtaken by at most one dequeue per concurrently scanning worker. With a threshold of 0
+ * the only out-of-order dequeues come from that race.</p>
+ * @param <E> The element type, ordered by its natural ordering (lowest first).
+ */
+public class WorkStealingTaskQueue<E extends Comparable<? super E>> extends AbstractQueue<E> implements BackpressureQueue<E> {
+    private static final int EMPTY_HEAD = Integer.MAX_VALUE;
+
+    private final List<Shard<E>> shards;
+    private final int stealThreshold;
+    private final int capacity;
+    private final int highWatermark;
+    private final int lowWatermark;
+    private final RejectionPolicy defaultPolicy;
+    private final Semaphore freeSlots;
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicInteger nextHomeShard = new AtomicInteger();
+    private final ThreadLocal<Integer> homeShard = new ThreadLocal<>();
+    private final ReentrantLock idleLock = new ReentrantLock();
+    private final Condition notEmpty = idleLock.newCondition();
+    private final AtomicInteger idleTakers = new AtomicInteger();
+    private final AtomicBoolean aboveHighWatermark = new AtomicBoolean();
+    private final List<WatermarkListener> watermarkListeners = new CopyOnWriteArrayList<>();
+    private volatile Consumer<? super E> evictionHandler;
+
+    /**
+     * Constructs a WorkStealingTaskQueue.
+     * @param shardCount The number of local shards, normally the worker count.
+     * @param capacity The maximum number of elements across all shards.
+     * @param defaultPolicy The rejection policy used by offer(e, timeout, unit) when the queue is full.
+     * @param priorityOf Extracts the integer priority (lower is more urgent) used to compare shard heads.
+     * @param stealThreshold How many priority levels worse the home shard head may be than the best
+     * peer head before the worker steals instead of taking locally.
+     */
+    public WorkStealingTaskQueue(int shardCount, int capacity, RejectionPolicy defaultPolicy,
+                                 ToIntFunction<? super E> priorityOf, int stealThreshold) {
+        this(shardCount, capacity, defaultPolicy, priorityOf, stealThreshold, PriorityQueue::new);
+    }
+
+    /**
+     * Constructs a WorkStealingTaskQueue whose shards keep their elements in containers from the given factory,
+     * such as a {@link CountingQueue} around a PriorityQueue.
+     * @param shardCount The number of local shards, normally the worker count.
+     * @param capacity The maximum number of elements across all shards.
+     * @param defaultPolicy The rejection policy used by offer(e, timeout, unit) when the queue is full.
+     * @param priorityOf Extracts the integer priority (lower is more urgent) used to compare shard heads.
+     * @param stealThreshold How many priority levels worse the home shard head may be than the best
+     * peer head before the worker steals instead of taking locally.
+     * @param heaps Supplies each shard's empty, non-thread-safe container, which must dequeue in natural order.
+     */
+    public WorkStealingTaskQueue(int shardCount, int capacity, RejectionPolicy defaultPolicy,
+                                 ToIntFunction<? super E> priorityOf, int stealThreshold, Supplier<? extends Queue<E>> heaps) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        if (stealThreshold < 0) {
+            throw new IllegalArgumentException("Steal threshold must not be negative: " + stealThreshold);
+        }
+        Objects.requireNonNull(priorityOf);
+        List<Shard<E>> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new Shard<E>(priorityOf, heaps.get()));
+        }
+        this.shards = List.copyOf(shards);
+        this.stealThreshold = stealThreshold;
+        this.capacity = capacity;
+        this.highWatermark = Math.max(1, capacity * 4 / 5);
+        this.lowWatermark = Math.min(capacity / 2, highWatermark - 1);
+        this.defaultPolicy = Objects.requireNonNull(defaultPolicy);
+        this.freeSlots = new Semaphore(capacity);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public int getStealThreshold() {
+        return stealThreshold;
+    }
+
+    /**
+     * Gets the number of elements currently held by one shard.
+     * @param shard The shard index.
+     * @return The shard size.
+     */
+    public int getShardSize(int shard) {
+        return shards.get(shard).size;
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public boolean isAboveHighWatermark() {
+        return aboveHighWatermark.get();
+    }
+
+    @Override
+    public void addWatermarkListener(WatermarkListener listener) {
+        watermarkListeners.add(Objects.requireNonNull(listener));
+        if (aboveHighWatermark.get()) {
+            listener.onHighWatermark(count.get(), capacity);
+        }
+    }
+
+    @Override
+    public void removeWatermarkListener(WatermarkListener listener) {
+        watermarkListeners.remove(listener);
+    }
+
+    @Override
+    public void setEvictionHandler(Consumer<? super E> evictionHandler) {
+        this.evictionHandler = evictionHandler;
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        Objects.requireNonNull(e);
+        freeSlots.acquire();
+        insert(e);
+    }
+
+    @Override
+    public boolean offer(E e) {
+        Objects.requireNonNull(e);
+        if (!freeSlots.tryAcquire()) {
+            return false;
+        }
+        insert(e);
+        return true;
+    }
+
+    @Override
+    public void putAll(Collection<? extends E> elements) throws InterruptedException {
+        List<E> pending = new ArrayList<>(elements);
+        int next = 0;
+        while (next < pending.size()) {
+            freeSlots.acquire();
+            int granted = 1;
+            int wanted = pending.size() - next;
+            while (granted < wanted && freeSlots.tryAcquire()) {
+                granted++;
+            }
+            insertAll(pending.subList(next, next + granted));
+            next += granted;
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        return offer(e, timeout, unit, defaultPolicy);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit, RejectionPolicy policy) throws InterruptedException {
+        Objects.requireNonNull(e);
+        switch (policy) {
+            case BLOCK:
+                if (!freeSlots.tryAcquire(timeout, unit)) {
+                    return false;
+                }
+                insert(e);
+                return true;
+            case FAIL_FAST:
+                return offer(e);
+            case DROP_LOWEST_PRIORITY:
+                if (freeSlots.tryAcquire()) {
+                    insert(e);
+                    return true;
+                }
+                return replaceLowest(e);
+            default:
+                throw new IllegalArgumentException("Unsupported rejection policy: " + policy);
+        }
+    }
+
+    /**
+     * Swaps the incoming element for the lowest-priority element of a random shard, if it outranks it.
+     * The freed slot is reused directly, so the total count does not change.
+     */
+    private boolean replaceLowest(E incoming) {
+        Shard<E> shard = shards.get(ThreadLocalRandom.current().nextInt(shards.size()));
+        E evicted;
+        shard.lock.lock();
+        try {
+            evicted = null;
+            for (E candidate : shard.heap) {
+                if (evicted == null || candidate.compareTo(evicted) > 0) {
+                    evicted = candidate;
+                }
+            }
+            if (evicted == null || incoming.compareTo(evicted) >= 0) {
+                return false;
+            }
+            shard.heap.remove(evicted);
+            shard.heap.offer(incoming);
+            shard.publishHead();
+        } finally {
+            shard.lock.unlock();
+        }
+        Consumer<? super E> handler = evictionHandler;
+        if (handler != null) {
+            handler.accept(evicted);
+        }
+        return true;
+    }
+
+    /**
+     * Places an element on the shorter of two random shards. The caller must already hold a free slot.
+     */
+    private void insert(E e) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Shard<E> first = shards.get(random.nextInt(shards.size()));
+        Shard<E> second = shards.get(random.nextInt(shards.size()));
+        Shard<E> target = second.size < first.size ? second : first;
+
+        target.lock.lock();
+        try {
+            target.heap.offer(e);
+            target.publishHead();
+        } finally {
+            target.lock.unlock();
+        }
+        afterInsert(1);
+    }
+
+    /**
+     * Deals a batch round-robin across the shards, starting at a random one, taking each shard lock once.
+     * The caller must already hold one free slot per element.
+     */
+    private void insertAll(List<E> batch) {
+        int start = ThreadLocalRandom.current().nextInt(shards.size());
+        for (int offset = 0; offset < shards.size() && offset < batch.size(); offset++) {
+            Shard<E> target = shards.get((start + offset) % shards.size());
+            target.lock.lock();
+            try {
+                for (int i = offset; i < batch.size(); i += shards.size()) {
+                    target.heap.offer(Objects.requireNonNull(batch.get(i)));
+                }
+                target.publishHead();
+            } finally {
+                target.lock.unlock();
+            }
+        }
+        afterInsert(batch.size());
+    }
+
+    private void afterInsert(int added) {
+        int size = count.addAndGet(added);
+        if (idleTakers.get() > 0) {
+            idleLock.lock();
+            try {
+                if (added == 1) {
+                    notEmpty.signal();
+                } else {
+                    notEmpty.signalAll();
+                }
+            } finally {
+                idleLock.unlock();
+            }
+        }
+        if (size >= highWatermark && aboveHighWatermark.compareAndSet(false, true)) {
+            for (WatermarkListener listener : watermarkListeners) {
+                listener.onHighWatermark(size, capacity);
+            }
+        }
+    }
+
+    /**
+     * Removes the best available element for the calling thread, stealing from a peer if needed.
+     * @return The element, or null if every shard was empty during the scan.
+     */
+    private E pollBest() {
+        int home = homeShardIndex();
+        for (int attempt = 0; attempt < shards.size(); attempt++) {
+            int best = home;
+            int bestHead = shards.get(home).head;
+            for (int i = 0; i < shards.size(); i++) {
+                int head = shards.get(i).head;
+                if (head < bestHead) {
+                    best = i;
+                    bestHead = head;
+                }
+            }
+            if (bestHead == EMPTY_HEAD) {
+                return null;
+            }
+            int homeHead = shards.get(home).head;
+            int source = homeHead != EMPTY_HEAD && homeHead - bestHead <= stealThreshold ? home : best;
+            E e = shards.get(source).poll();
+            if (e != null) {
+                afterRemove(1);
+                return e;
+            }
+        }
+        return null;
+    }
+
+    private int homeShardIndex() {
+        Integer index = homeShard.get();
+        if (index == null) {
+            index = Math.floorMod(nextHomeShard.getAndIncrement(), shards.size());
+            homeShard.set(index);
+        }
+        return index;
+    }
+
+    private void afterRemove(int removed) {
+        freeSlots.release(removed);
+        int size = count.addAndGet(-removed);
+        if (size <= lowWatermark && aboveHighWatermark.compareAndSet(true, false)) {
+            for (WatermarkListener listener : watermarkListeners) {
+                listener.onLowWatermark(size, capacity);
+            }
+        }
+    }
+
+    @Override
+    public E poll() {
+        return pollBest();
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E e;
+        while ((e = pollBest()) == null) {
+            idleTakers.incrementAndGet();
+            idleLock.lockInterruptibly();
+            try {
+                while (count.get() == 0) {
+                    notEmpty.await();
+                }
+            } finally {
+                idleLock.unlock();
+                idleTakers.decrementAndGet();
+            }
+        }
+        return e;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        E e;
+        while ((e = pollBest()) == null) {
+            if (nanos <= 0L) {
+                return null;
+            }
+            idleTakers.incrementAndGet();
+            idleLock.lockInterruptibly();
+            try {
+                while (count.get() == 0 && nanos > 0L) {
+                    nanos = notEmpty.awaitNanos(nanos);
+                }
+            } finally {
+                idleLock.unlock();
+                idleTakers.decrementAndGet();
+            }
+        }
+        return e;
+    }
+
+    @Override
+    public E peek() {
+        E best = null;
+        for (Shard<E> shard : shards) {
+            shard.lock.lock();
+            try {
+                E head = shard.heap.peek();
+                if (head != null && (best == null || head.compareTo(best) < 0)) {
+                    best = head;
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public int size() {
+        return count.get();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return freeSlots.availablePermits();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        for (Shard<E> shard : shards) {
+            boolean removed;
+            shard.lock.lock();
+            try {
+                removed = shard.heap.remove(o);
+                if (removed) {
+                    shard.publishHead();
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+            if (removed) {
+                afterRemove(1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        for (Shard<E> shard : shards) {
+            shard.lock.lock();
+            try {
+                if (shard.heap.contains(o)) {
+                    return true;
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void clear() {
+        for (Shard<E> shard : shards) {
+            int removed;
+            shard.lock.lock();
+            try {
+                removed = shard.heap.size();
+                shard.heap.clear();
+                shard.publishHead();
+            } finally {
+                shard.lock.unlock();
+            }
+            if (removed > 0) {
+                afterRemove(removed);
+            }
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        Objects.requireNonNull(c);
+        if (c == this) {
+            throw new IllegalArgumentException("Cannot drain a queue into itself");
+        }
+        int drained = 0;
+        E e;
+        while (drained < maxElements && (e = pollBest()) != null) {
+            c.add(e);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Returns a weakly consistent iterator over a per-shard snapshot of the queue, in no particular order.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        List<E> snapshot = new ArrayList<>(count.get());
+        for (Shard<E> shard : shards) {
+            shard.lock.lock();
+            try {
+                snapshot.addAll(shard.heap);
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        Iterator<E> it = snapshot.iterator();
+        return new Iterator<>() {
+            private E lastReturned;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public E next() {
+                if (!it.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = it.next();
+                return lastReturned;
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == null) {
+                    throw new IllegalStateException();
+                }
+                WorkStealingTaskQueue.this.remove(lastReturned);
+                lastReturned = null;
+            }
+        };
+    }
+
+    /**
+     * One worker-local priority heap. The head priority is published through a volatile field
+     * so takers can compare shards without locking them.
+     */
+    private static final class Shard<T extends Comparable<? super T>> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Queue<T> heap;
+        private final ToIntFunction<? super T> priorityOf;
+        private volatile int head = EMPTY_HEAD;
+        private volatile int size;
+
+        private Shard(ToIntFunction<? super T> priorityOf, Queue<T> heap) {
+            this.priorityOf = priorityOf;
+            this.heap = heap;
+        }
+
+        private T poll() {
+            lock.lock();
+            try {
+                T e = heap.poll();
+                if (e != null) {
+                    publishHead();
+                }
+                return e;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** Must be called with the shard lock held after any change to the heap. */
+        private void publishHead() {
+            T first = heap.peek();
+            head = first == null ? EMPTY_HEAD : priorityOf.applyAsInt(first);
+            size = heap.size();
+        }
+    }
+}
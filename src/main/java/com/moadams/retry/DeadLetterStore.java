@@ -0,0 +1,103 @@
+package com.moadams.retry;
+
+import com.moadams.model.Task;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DeadLetterStore keeps tasks that exhausted their retries so they can be inspected or resubmitted.
+ * It holds at most {@code capacity} entries; once full, the oldest entry is dropped for each new one.
+ */
+public class DeadLetterStore {
+    private final int capacity;
+    private final ConcurrentLinkedQueue<Entry> entries = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder totalCount = new LongAdder();
+
+    /**
+     * A dead-lettered task with the reason it was given up on.
+     */
+    public static final class Entry {
+        private final Task task;
+        private final String reason;
+        private final Instant deadLetteredAt;
+
+        Entry(Task task, String reason) {
+            this.task = task;
+            this.reason = reason;
+            this.deadLetteredAt = Instant.now();
+        }
+
+        public Task getTask() {
+            return task;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public Instant getDeadLetteredAt() {
+            return deadLetteredAt;
+        }
+    }
+
+    /**
+     * @param capacity The most entries kept; must be positive.
+     */
+    public DeadLetterStore(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Dead-letter capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds a task that will not be retried again.
+     * @param task The task.
+     * @param reason Why it was given up on.
+     */
+    public void add(Task task, String reason) {
+        entries.offer(new Entry(task, reason));
+        totalCount.increment();
+        if (size.incrementAndGet() > capacity && entries.poll() != null) {
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * Removes and returns every entry currently held, oldest first.
+     * @return The drained entries.
+     */
+    public List<Entry> drain() {
+        List<Entry> drained = new ArrayList<>();
+        Entry entry;
+        while ((entry = entries.poll()) != null) {
+            size.decrementAndGet();
+            drained.add(entry);
+        }
+        return drained;
+    }
+
+    /**
+     * @return A copy of the entries currently held, oldest first.
+     */
+    public List<Entry> snapshot() {
+        return new ArrayList<>(entries);
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return How many tasks have ever been dead-lettered, including entries since dropped or drained.
+     */
+    public long getTotalCount() {
+        return totalCount.sum();
+    }
+}
@@ -0,0 +1,259 @@
+package com.moadams.retry;
+
+import com.moadams.enums.TaskStatus;
+import com.moadams.model.RetryPolicy;
+import com.moadams.model.Task;
+import com.moadams.state.TaskStateStore;
+import com.moadams.util.TaskLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * RetryScheduler holds failed tasks for their backoff delay and then puts them back on the task queue,
+ * so a failing task waits its turn instead of jumping straight back to the head of the queue.
+ *
+ * <p>Pending retries live in a hashed timing wheel: {@code wheelSize} buckets, each covering one tick.
+ * Scheduling is a lock-free enqueue onto a hand-off queue; a single timer thread moves new entries into
+ * their bucket and, on each tick, expires the entries in the current bucket whose remaining rounds have
+ * run out. Scheduling and expiry are O(1) per retry however many are pending; the cost is that a retry
+ * may fire up to one tick late.</p>
+ *
+ * <p>If the task queue is full when a retry is due, the retry is pushed back by one tick rather than
+ * blocking the timer thread. A retry whose task was cancelled while it waited is dropped when it falls due.</p>
+ */
+public class RetryScheduler {
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final BlockingQueue<Task> taskQueue;
+    private final TaskStateStore taskStates;
+    private final RetryPolicy defaultPolicy;
+    private final DeadLetterStore deadLetters;
+    private final long tickNanos;
+    private final int mask;
+    private final Bucket[] wheel;
+    private final ConcurrentLinkedQueue<Entry> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final long startNanos = System.nanoTime();
+    private volatile boolean running;
+    private Thread timerThread;
+    private long tick;
+
+    private static final class Entry {
+        final Task task;
+        final long deadlineNanos;
+        long remainingRounds;
+        boolean deferred;
+        Entry next;
+
+        Entry(Task task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    private static final class Bucket {
+        Entry head;
+        Entry tail;
+
+        void add(Entry entry) {
+            entry.next = null;
+            if (tail == null) {
+                head = entry;
+            } else {
+                tail.next = entry;
+            }
+            tail = entry;
+        }
+    }
+
+    /**
+     * Constructs a RetryScheduler. Call {@link #start()} before scheduling.
+     * @param taskQueue The queue that due retries are put back on.
+     * @param taskStates The store whose status is set back to SUBMITTED when a retry is re-queued.
+     * @param defaultPolicy The policy for tasks that do not carry their own.
+     * @param deadLetters Where tasks go once their retries are exhausted.
+     * @param tickMillis The wheel's resolution; retries fire up to this late.
+     * @param wheelSize The number of buckets, rounded up to a power of two; one revolution spans wheelSize ticks.
+     */
+    public RetryScheduler(BlockingQueue<Task> taskQueue, TaskStateStore taskStates, RetryPolicy defaultPolicy,
+                          DeadLetterStore deadLetters, long tickMillis, int wheelSize) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick and wheel size must be positive");
+        }
+        this.taskQueue = taskQueue;
+        this.taskStates = taskStates;
+        this.defaultPolicy = defaultPolicy;
+        this.deadLetters = deadLetters;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.mask = size - 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+    }
+
+    /**
+     * Starts the timer thread.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        timerThread = new Thread(this::runTimer, "RetryScheduler-Timer");
+        timerThread.setDaemon(true);
+        timerThread.start();
+    }
+
+    /**
+     * Gets the retry policy that applies to a task.
+     * @param task The task.
+     * @return The task's own policy, or the default.
+     */
+    public RetryPolicy policyFor(Task task) {
+        return task.getRetryPolicy() != null ? task.getRetryPolicy() : defaultPolicy;
+    }
+
+    /**
+     * Holds a task for the given delay, then re-queues it. Safe to call from any thread.
+     * @param task The task to retry.
+     * @param delayMillis How long to wait before re-queuing.
+     */
+    public void schedule(Task task, long delayMillis) {
+        incoming.offer(new Entry(task, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis))));
+        pendingCount.incrementAndGet();
+    }
+
+    /**
+     * Records a task whose retries are exhausted in the dead-letter store.
+     * @param task The task.
+     * @param reason Why it was given up on.
+     */
+    public void deadLetter(Task task, String reason) {
+        deadLetters.add(task, reason);
+    }
+
+    /**
+     * @return How many retries are waiting to be re-queued.
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    public DeadLetterStore getDeadLetterStore() {
+        return deadLetters;
+    }
+
+    /**
+     * Stops the timer thread and returns every retry that had not yet been re-queued.
+     * @return The pending tasks, in no particular order.
+     */
+    public List<Task> shutdown() {
+        Thread timer;
+        synchronized (this) {
+            running = false;
+            timer = timerThread;
+        }
+        if (timer != null) {
+            timer.interrupt();
+            try {
+                timer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<Task> pending = new ArrayList<>();
+        for (Bucket bucket : wheel) {
+            for (Entry entry = bucket.head; entry != null; entry = entry.next) {
+                pending.add(entry.task);
+            }
+            bucket.head = null;
+            bucket.tail = null;
+        }
+        Entry entry;
+        while ((entry = incoming.poll()) != null) {
+            pending.add(entry.task);
+        }
+        pendingCount.addAndGet(-pending.size());
+        return pending;
+    }
+
+    private void runTimer() {
+        while (running) {
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            long sleepNanos;
+            while ((sleepNanos = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+                if (!running) {
+                    return;
+                }
+            }
+            transferIncoming();
+            expire(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void transferIncoming() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Entry entry = incoming.poll();
+            if (entry == null) {
+                return;
+            }
+            place(entry);
+        }
+    }
+
+    private void place(Entry entry) {
+        long dueTick = Math.max((entry.deadlineNanos - startNanos) / tickNanos, tick);
+        entry.remainingRounds = (dueTick - tick) / wheel.length;
+        wheel[(int) (dueTick & mask)].add(entry);
+    }
+
+    private void expire(Bucket bucket) {
+        Entry entry = bucket.head;
+        bucket.head = null;
+        bucket.tail = null;
+        while (entry != null) {
+            Entry next = entry.next;
+            if (entry.remainingRounds > 0) {
+                entry.remainingRounds--;
+                bucket.add(entry);
+            } else {
+                requeue(entry);
+            }
+            entry = next;
+        }
+    }
+
+    private void requeue(Entry entry) {
+        Task task = entry.task;
+        if (task.isCancelled()) {
+            taskStates.replace(task.getId(), TaskStatus.RETRY_SCHEDULED, TaskStatus.CANCELLED);
+            pendingCount.decrementAndGet();
+            return;
+        }
+        if (taskQueue.remainingCapacity() > 0) {
+            taskStates.put(task.getId(), TaskStatus.SUBMITTED);
+            task.markEnqueued();
+            if (taskQueue.offer(task)) {
+                pendingCount.decrementAndGet();
+                return;
+            }
+            taskStates.put(task.getId(), TaskStatus.RETRY_SCHEDULED);
+        }
+        if (!entry.deferred) {
+            entry.deferred = true;
+            TaskLogger.logWarning("Retry of " + task + " is due but the queue is full; deferring tick by tick.");
+        }
+        entry.remainingRounds = 0;
+        wheel[(int) ((tick + 1) & mask)].add(entry);
+    }
+}
@@ -0,0 +1,898 @@
+package com.moadams.service;
+
+import com.moadams.enums.ExecutionMode;
+import com.moadams.enums.QueueMode;
+import com.moadams.enums.RejectionPolicy;
+import com.moadams.enums.SchedulingMode;
+import com.moadams.enums.TaskIdMode;
+import com.moadams.model.RateLimit;
+import com.moadams.model.RetryPolicy;
+import com.moadams.payload.PayloadArena;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable tuning parameters for a TaskDispatcher, created through {@link #builder()}.
+ */
+public class DispatcherConfig {
+    private final int workerPoolSize;
+    private final int queueCapacity;
+    private final RejectionPolicy rejectionPolicy;
+    private final long submitTimeoutMillis;
+    private final QueueMode queueMode;
+    private final int stealThreshold;
+    private final SchedulingMode schedulingMode;
+    private final long agingIntervalMillis;
+    private final int[] priorityBandWeights;
+    private final Map<String, Integer> tenantWeights;
+    private final RateLimit tenantRateLimit;
+    private final Map<String, RateLimit> tenantRateLimits;
+    private final ExecutionMode executionMode;
+    private final int maxConcurrentTasks;
+    private final int maxBatchSize;
+    private final long maxLingerMillis;
+    private final int maxAsyncInFlight;
+    private final int lockStripes;
+    private final long lockTimeoutMillis;
+    private final int maxLockTimeouts;
+    private final long terminalStateTtlMillis;
+    private final int maxTerminalStates;
+    private final long idempotencyWindowMillis;
+    private final int maxIdempotencyKeys;
+    private final RetryPolicy retryPolicy;
+    private final long retryTickMillis;
+    private final int retryWheelSize;
+    private final int deadLetterCapacity;
+    private final int autoscaleMinWorkers;
+    private final int autoscaleMaxWorkers;
+    private final long autoscaleIntervalMillis;
+    private final long autoscaleCooldownMillis;
+    private final int autoscaleSustainSamples;
+    private final long targetQueueWaitMillis;
+    private final long watchdogStuckMillis;
+    private final boolean watchdogRecovery;
+    private final int watchdogMaxRecoveries;
+    private final long payloadArenaBytes;
+    private final int payloadSlabBytes;
+    private final int payloadOffloadThreshold;
+    private final boolean payloadCompression;
+    private final String walDirectory;
+    private final int walSegmentBytes;
+    private final long walFlushIntervalMillis;
+    private final String spillFile;
+    private final int asyncLogBufferSize;
+    private final boolean plainLogOutput;
+    private final TaskIdMode taskIdMode;
+    private final int nodeId;
+
+    private DispatcherConfig(Builder builder) {
+        this.workerPoolSize = builder.workerPoolSize;
+        this.queueCapacity = builder.queueCapacity;
+        this.rejectionPolicy = builder.rejectionPolicy;
+        this.submitTimeoutMillis = builder.submitTimeoutMillis;
+        this.queueMode = builder.queueMode;
+        this.stealThreshold = builder.stealThreshold;
+        this.schedulingMode = builder.schedulingMode;
+        this.agingIntervalMillis = builder.agingIntervalMillis;
+        this.priorityBandWeights = builder.priorityBandWeights.clone();
+        this.tenantWeights = Map.copyOf(builder.tenantWeights);
+        this.tenantRateLimit = builder.tenantRateLimit;
+        this.tenantRateLimits = Map.copyOf(builder.tenantRateLimits);
+        this.executionMode = builder.executionMode;
+        this.maxConcurrentTasks = builder.maxConcurrentTasks > 0 ? builder.maxConcurrentTasks : builder.workerPoolSize;
+        this.maxBatchSize = builder.maxBatchSize;
+        this.maxLingerMillis = builder.maxLingerMillis;
+        this.maxAsyncInFlight = builder.maxAsyncInFlight;
+        this.lockStripes = builder.lockStripes;
+        this.lockTimeoutMillis = builder.lockTimeoutMillis;
+        this.maxLockTimeouts = builder.maxLockTimeouts;
+        this.terminalStateTtlMillis = builder.terminalStateTtlMillis;
+        this.maxTerminalStates = builder.maxTerminalStates;
+        this.idempotencyWindowMillis = builder.idempotencyWindowMillis;
+        this.maxIdempotencyKeys = builder.maxIdempotencyKeys;
+        this.retryPolicy = builder.retryPolicy;
+        this.retryTickMillis = builder.retryTickMillis;
+        this.retryWheelSize = builder.retryWheelSize;
+        this.deadLetterCapacity = builder.deadLetterCapacity;
+        this.autoscaleMinWorkers = builder.autoscaleMinWorkers;
+        this.autoscaleMaxWorkers = builder.autoscaleMaxWorkers;
+        this.autoscaleIntervalMillis = builder.autoscaleIntervalMillis;
+        this.autoscaleCooldownMillis = builder.autoscaleCooldownMillis;
+        this.autoscaleSustainSamples = builder.autoscaleSustainSamples;
+        this.targetQueueWaitMillis = builder.targetQueueWaitMillis;
+        this.watchdogStuckMillis = builder.watchdogStuckMillis;
+        this.watchdogRecovery = builder.watchdogRecovery;
+        this.watchdogMaxRecoveries = builder.watchdogMaxRecoveries;
+        this.payloadArenaBytes = builder.payloadArenaBytes;
+        this.payloadSlabBytes = builder.payloadSlabBytes;
+        this.payloadOffloadThreshold = builder.payloadOffloadThreshold;
+        this.payloadCompression = builder.payloadCompression;
+        this.walDirectory = builder.walDirectory;
+        this.walSegmentBytes = builder.walSegmentBytes;
+        this.walFlushIntervalMillis = builder.walFlushIntervalMillis;
+        this.spillFile = builder.spillFile;
+        this.asyncLogBufferSize = builder.asyncLogBufferSize;
+        this.plainLogOutput = builder.plainLogOutput;
+        this.taskIdMode = builder.taskIdMode;
+        this.nodeId = builder.nodeId;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int getWorkerPoolSize() {
+        return workerPoolSize;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public RejectionPolicy getRejectionPolicy() {
+        return rejectionPolicy;
+    }
+
+    public long getSubmitTimeoutMillis() {
+        return submitTimeoutMillis;
+    }
+
+    public QueueMode getQueueMode() {
+        return queueMode;
+    }
+
+    public int getStealThreshold() {
+        return stealThreshold;
+    }
+
+    public SchedulingMode getSchedulingMode() {
+        return schedulingMode;
+    }
+
+    public long getAgingIntervalMillis() {
+        return agingIntervalMillis;
+    }
+
+    /**
+     * @return The WEIGHTED_FAIR share of each priority band; index 0 is priority 1.
+     */
+    public int[] getPriorityBandWeights() {
+        return priorityBandWeights.clone();
+    }
+
+    /**
+     * @return The TENANT_FAIR weights of tenants that do not have the default weight of 1.
+     */
+    public Map<String, Integer> getTenantWeights() {
+        return tenantWeights;
+    }
+
+    /**
+     * @param tenant The tenant.
+     * @return How many tasks the tenant dequeues per turn in TENANT_FAIR mode.
+     */
+    public int getTenantWeight(String tenant) {
+        return tenantWeights.getOrDefault(tenant, 1);
+    }
+
+    /**
+     * @return The admission limit of tenants without one of their own, or null if they are unlimited.
+     */
+    public RateLimit getTenantRateLimit() {
+        return tenantRateLimit;
+    }
+
+    public Map<String, RateLimit> getTenantRateLimits() {
+        return tenantRateLimits;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public int getMaxConcurrentTasks() {
+        return maxConcurrentTasks;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public long getMaxLingerMillis() {
+        return maxLingerMillis;
+    }
+
+    public int getMaxAsyncInFlight() {
+        return maxAsyncInFlight;
+    }
+
+    public int getLockStripes() {
+        return lockStripes;
+    }
+
+    public long getLockTimeoutMillis() {
+        return lockTimeoutMillis;
+    }
+
+    public int getMaxLockTimeouts() {
+        return maxLockTimeouts;
+    }
+
+    public long getTerminalStateTtlMillis() {
+        return terminalStateTtlMillis;
+    }
+
+    public int getMaxTerminalStates() {
+        return maxTerminalStates;
+    }
+
+    public long getIdempotencyWindowMillis() {
+        return idempotencyWindowMillis;
+    }
+
+    public int getMaxIdempotencyKeys() {
+        return maxIdempotencyKeys;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public long getRetryTickMillis() {
+        return retryTickMillis;
+    }
+
+    public int getRetryWheelSize() {
+        return retryWheelSize;
+    }
+
+    public int getDeadLetterCapacity() {
+        return deadLetterCapacity;
+    }
+
+    /**
+     * @return Whether the worker pool is resized by a WorkerAutoscaler.
+     */
+    public boolean isAutoscalingEnabled() {
+        return autoscaleMaxWorkers > 0;
+    }
+
+    public int getAutoscaleMinWorkers() {
+        return autoscaleMinWorkers;
+    }
+
+    public int getAutoscaleMaxWorkers() {
+        return autoscaleMaxWorkers;
+    }
+
+    public long getAutoscaleIntervalMillis() {
+        return autoscaleIntervalMillis;
+    }
+
+    public long getAutoscaleCooldownMillis() {
+        return autoscaleCooldownMillis;
+    }
+
+    public int getAutoscaleSustainSamples() {
+        return autoscaleSustainSamples;
+    }
+
+    public long getTargetQueueWaitMillis() {
+        return targetQueueWaitMillis;
+    }
+
+    /**
+     * @return Whether large payloads are moved into an off-heap PayloadArena.
+     */
+    public boolean isPayloadArenaEnabled() {
+        return payloadArenaBytes > 0;
+    }
+
+    public long getPayloadArenaBytes() {
+        return payloadArenaBytes;
+    }
+
+    public int getPayloadSlabBytes() {
+        return payloadSlabBytes;
+    }
+
+    public int getPayloadOffloadThreshold() {
+        return payloadOffloadThreshold;
+    }
+
+    public boolean isWatchdogEnabled() {
+        return watchdogStuckMillis > 0;
+    }
+
+    public long getWatchdogStuckMillis() {
+        return watchdogStuckMillis;
+    }
+
+    public boolean isWatchdogRecovery() {
+        return watchdogRecovery;
+    }
+
+    public int getWatchdogMaxRecoveries() {
+        return watchdogMaxRecoveries;
+    }
+
+    public boolean isPayloadCompression() {
+        return payloadCompression;
+    }
+
+    public String getWalDirectory() {
+        return walDirectory;
+    }
+
+    public int getWalSegmentBytes() {
+        return walSegmentBytes;
+    }
+
+    public long getWalFlushIntervalMillis() {
+        return walFlushIntervalMillis;
+    }
+
+    public String getSpillFile() {
+        return spillFile;
+    }
+
+    public int getAsyncLogBufferSize() {
+        return asyncLogBufferSize;
+    }
+
+    public boolean isPlainLogOutput() {
+        return plainLogOutput;
+    }
+
+    public TaskIdMode getTaskIdMode() {
+        return taskIdMode;
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    public static class Builder {
+        private int workerPoolSize = 5;
+        private int queueCapacity = 20;
+        private RejectionPolicy rejectionPolicy = RejectionPolicy.BLOCK;
+        private long submitTimeoutMillis = 0;
+        private QueueMode queueMode = QueueMode.SHARED;
+        private int stealThreshold = 0;
+        private SchedulingMode schedulingMode = SchedulingMode.STRICT_PRIORITY;
+        private long agingIntervalMillis = 1000;
+        private int[] priorityBandWeights = {10, 9, 8, 7, 6, 5, 4, 3, 2, 1};
+        private final Map<String, Integer> tenantWeights = new HashMap<>();
+        private RateLimit tenantRateLimit;
+        private final Map<String, RateLimit> tenantRateLimits = new HashMap<>();
+        private ExecutionMode executionMode = ExecutionMode.PLATFORM_POOL;
+        private int maxConcurrentTasks = 0;
+        private int maxBatchSize = 1;
+        private long maxLingerMillis = 0;
+        private int maxAsyncInFlight = 10_000;
+        private int lockStripes = 64;
+        private long lockTimeoutMillis = 5000;
+        private int maxLockTimeouts = 3;
+        private long terminalStateTtlMillis = 0;
+        private int maxTerminalStates = 0;
+        private long idempotencyWindowMillis = 60_000;
+        private int maxIdempotencyKeys = 100_000;
+        private RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+        private long retryTickMillis = 10;
+        private int retryWheelSize = 512;
+        private int deadLetterCapacity = 10_000;
+        private int autoscaleMinWorkers = 1;
+        private int autoscaleMaxWorkers = 0;
+        private long autoscaleIntervalMillis = 1000;
+        private long autoscaleCooldownMillis = 5000;
+        private int autoscaleSustainSamples = 3;
+        private long watchdogStuckMillis = 30_000;
+        private boolean watchdogRecovery = false;
+        private int watchdogMaxRecoveries = 3;
+        private long payloadArenaBytes = 0;
+        private int payloadSlabBytes = 4 * 1024 * 1024;
+        private int payloadOffloadThreshold = 8 * 1024;
+        private boolean payloadCompression = false;
+        private long targetQueueWaitMillis = 2000;
+        private String walDirectory = null;
+        private int walSegmentBytes = 16 * 1024 * 1024;
+        private long walFlushIntervalMillis = 5;
+        private String spillFile = null;
+        private int asyncLogBufferSize = 0;
+        private boolean plainLogOutput = false;
+        private TaskIdMode taskIdMode = TaskIdMode.RANDOM_UUID;
+        private int nodeId = 0;
+
+        private Builder() {
+        }
+
+        /**
+         * @param workerPoolSize The number of worker threads in the pool.
+         */
+        public Builder workerPoolSize(int workerPoolSize) {
+            this.workerPoolSize = workerPoolSize;
+            return this;
+        }
+
+        /**
+         * @param queueCapacity The maximum number of queued tasks.
+         */
+        public Builder queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * @param rejectionPolicy What producers' timed offers and dispatcher submissions do when the queue is full.
+         */
+        public Builder rejectionPolicy(RejectionPolicy rejectionPolicy) {
+            this.rejectionPolicy = rejectionPolicy;
+            return this;
+        }
+
+        /**
+         * @param submitTimeoutMillis How long producers and dispatcher submissions wait for space under BLOCK before
+         * a submission is rejected. Zero or less means they block until space is available.
+         */
+        public Builder submitTimeoutMillis(long submitTimeoutMillis) {
+            this.submitTimeoutMillis = submitTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * @param queueMode Whether workers share one queue or own work-stealing shards.
+         */
+        public Builder queueMode(QueueMode queueMode) {
+            this.queueMode = queueMode;
+            return this;
+        }
+
+        /**
+         * @param stealThreshold In WORK_STEALING mode, how many priority levels worse a worker's own
+         * shard head may be than the best peer head before it steals instead.
+         */
+        public Builder stealThreshold(int stealThreshold) {
+            this.stealThreshold = stealThreshold;
+            return this;
+        }
+
+        /**
+         * @param schedulingMode The order the shared queue hands out tasks in; all modes but STRICT_PRIORITY require the SHARED queue mode.
+         */
+        public Builder schedulingMode(SchedulingMode schedulingMode) {
+            this.schedulingMode = schedulingMode;
+            return this;
+        }
+
+        /**
+         * @param agingIntervalMillis In AGING mode, how long a task waits to gain one priority level.
+         */
+        public Builder agingIntervalMillis(long agingIntervalMillis) {
+            this.agingIntervalMillis = agingIntervalMillis;
+            return this;
+        }
+
+        /**
+         * @param priorityBandWeights In WEIGHTED_FAIR mode, the relative dequeue share of priorities 1, 2, 3...;
+         * priorities past the end share the last band.
+         */
+        public Builder priorityBandWeights(int... priorityBandWeights) {
+            this.priorityBandWeights = priorityBandWeights.clone();
+            return this;
+        }
+
+        /**
+         * @param tenant A tenant; producers started by the dispatcher submit as their own name.
+         * @param weight In TENANT_FAIR mode, how many tasks the tenant dequeues per turn within a priority;
+         * tenants not given a weight have 1.
+         */
+        public Builder tenantWeight(String tenant, int weight) {
+            this.tenantWeights.put(tenant, weight);
+            return this;
+        }
+
+        /**
+         * Rate-limits the submissions of every tenant without a limit of its own. Off by default.
+         * @param permitsPerSecond How many tasks per second each tenant may submit in the long run.
+         * @param burst How many tasks a tenant may submit back to back after a quiet period.
+         */
+        public Builder tenantRateLimit(double permitsPerSecond, int burst) {
+            this.tenantRateLimit = new RateLimit(permitsPerSecond, burst);
+            return this;
+        }
+
+        /**
+         * Rate-limits one tenant's submissions, overriding the default limit.
+         * @param tenant The tenant.
+         * @param permitsPerSecond How many tasks per second the tenant may submit in the long run.
+         * @param burst How many tasks the tenant may submit back to back after a quiet period.
+         */
+        public Builder tenantRateLimit(String tenant, double permitsPerSecond, int burst) {
+            this.tenantRateLimits.put(tenant, new RateLimit(permitsPerSecond, burst));
+            return this;
+        }
+
+        /**
+         * @param executionMode Whether tasks run on a fixed platform pool or on one virtual thread each.
+         */
+        public Builder executionMode(ExecutionMode executionMode) {
+            this.executionMode = executionMode;
+            return this;
+        }
+
+        /**
+         * @param maxConcurrentTasks In VIRTUAL_THREADS mode, the semaphore limit on tasks in flight.
+         * Zero or less means use the worker pool size.
+         */
+        public Builder maxConcurrentTasks(int maxConcurrentTasks) {
+            this.maxConcurrentTasks = maxConcurrentTasks;
+            return this;
+        }
+
+        /**
+         * @param maxBatchSize The most tasks a worker takes per wakeup via drainTo; 1 disables batching.
+         */
+        public Builder maxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * @param maxLingerMillis How long a worker holding a partial batch waits for more tasks.
+         */
+        public Builder maxLingerMillis(long maxLingerMillis) {
+            this.maxLingerMillis = maxLingerMillis;
+            return this;
+        }
+
+        /**
+         * @param maxAsyncInFlight The most tasks async handlers may have outstanding at once; a worker waits for
+         * one to finish before starting another beyond it.
+         */
+        public Builder maxAsyncInFlight(int maxAsyncInFlight) {
+            this.maxAsyncInFlight = maxAsyncInFlight;
+            return this;
+        }
+
+        /**
+         * @param lockStripes The number of striped locks guarding task resource keys.
+         */
+        public Builder lockStripes(int lockStripes) {
+            this.lockStripes = lockStripes;
+            return this;
+        }
+
+        /**
+         * @param lockTimeoutMillis How long a worker waits for a task's resource locks before re-queuing it.
+         */
+        public Builder lockTimeoutMillis(long lockTimeoutMillis) {
+            this.lockTimeoutMillis = lockTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * @param maxLockTimeouts How many times an attempt may time out on its resource locks and be re-queued
+         * before it counts as a failed attempt, retried under the task's retry policy or dead-lettered.
+         */
+        public Builder maxLockTimeouts(int maxLockTimeouts) {
+            this.maxLockTimeouts = maxLockTimeouts;
+            return this;
+        }
+
+        /**
+         * @param terminalStateTtlMillis How long terminal statuses stay in the task-state store, and so in its
+         * exports. Zero or less (the default) keeps them until the size cap, if any, evicts them.
+         */
+        public Builder terminalStateTtlMillis(long terminalStateTtlMillis) {
+            this.terminalStateTtlMillis = terminalStateTtlMillis;
+            return this;
+        }
+
+        /**
+         * @param maxTerminalStates How many terminal statuses the task-state store keeps at most.
+         * Zero or less (the default) means no cap; with no TTL either, statuses are kept forever, so eviction is
+         * opt-in.
+         */
+        public Builder maxTerminalStates(int maxTerminalStates) {
+            this.maxTerminalStates = maxTerminalStates;
+            return this;
+        }
+
+        /**
+         * @param idempotencyWindowMillis How long a completed task's idempotency key keeps suppressing
+         * resubmissions; 0 lets the key be reused as soon as the task completes.
+         */
+        public Builder idempotencyWindowMillis(long idempotencyWindowMillis) {
+            this.idempotencyWindowMillis = idempotencyWindowMillis;
+            return this;
+        }
+
+        /**
+         * @param maxIdempotencyKeys How many completed tasks' idempotency keys are kept at most; the oldest are
+         * released first. Keys of queued and running tasks are always kept.
+         */
+        public Builder maxIdempotencyKeys(int maxIdempotencyKeys) {
+            this.maxIdempotencyKeys = maxIdempotencyKeys;
+            return this;
+        }
+
+        /**
+         * @param retryPolicy The retry limit and backoff for tasks that do not carry their own policy.
+         */
+        public Builder retryPolicy(RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * @param retryTickMillis The retry timing wheel's resolution; retries fire up to this late.
+         */
+        public Builder retryTickMillis(long retryTickMillis) {
+            this.retryTickMillis = retryTickMillis;
+            return this;
+        }
+
+        /**
+         * @param retryWheelSize The number of buckets in the retry timing wheel.
+         */
+        public Builder retryWheelSize(int retryWheelSize) {
+            this.retryWheelSize = retryWheelSize;
+            return this;
+        }
+
+        /**
+         * @param deadLetterCapacity How many tasks that exhausted their retries are kept for inspection.
+         */
+        public Builder deadLetterCapacity(int deadLetterCapacity) {
+            this.deadLetterCapacity = deadLetterCapacity;
+            return this;
+        }
+
+        /**
+         * Enables autoscaling: the pool starts at workerPoolSize, clamped to these bounds, and a WorkerAutoscaler
+         * adds and retires workers between them. Requires the PLATFORM_POOL execution mode and SHARED queue mode.
+         * @param minWorkers The fewest workers kept running.
+         * @param maxWorkers The most workers ever running; 0 (the default) disables autoscaling.
+         */
+        public Builder autoscale(int minWorkers, int maxWorkers) {
+            this.autoscaleMinWorkers = minWorkers;
+            this.autoscaleMaxWorkers = maxWorkers;
+            return this;
+        }
+
+        /**
+         * @param autoscaleIntervalMillis How often the autoscaler samples its signals.
+         */
+        public Builder autoscaleIntervalMillis(long autoscaleIntervalMillis) {
+            this.autoscaleIntervalMillis = autoscaleIntervalMillis;
+            return this;
+        }
+
+        /**
+         * @param autoscaleCooldownMillis The least time between two pool size changes.
+         */
+        public Builder autoscaleCooldownMillis(long autoscaleCooldownMillis) {
+            this.autoscaleCooldownMillis = autoscaleCooldownMillis;
+            return this;
+        }
+
+        /**
+         * @param autoscaleSustainSamples How many consecutive samples must agree before the pool is resized.
+         */
+        public Builder autoscaleSustainSamples(int autoscaleSustainSamples) {
+            this.autoscaleSustainSamples = autoscaleSustainSamples;
+            return this;
+        }
+
+        /**
+         * @param targetQueueWaitMillis The p99 queue wait the autoscaler scales up to stay under; it scales down
+         * once wait and backlog are below half of it.
+         */
+        public Builder targetQueueWaitMillis(long targetQueueWaitMillis) {
+            this.targetQueueWaitMillis = targetQueueWaitMillis;
+            return this;
+        }
+
+        /**
+         * @param payloadArenaBytes The most direct memory the off-heap payload arena may reserve; 0 (the default)
+         * keeps every payload on the heap.
+         */
+        public Builder payloadArenaBytes(long payloadArenaBytes) {
+            this.payloadArenaBytes = payloadArenaBytes;
+            return this;
+        }
+
+        /**
+         * @param payloadSlabBytes The size of each direct slab the arena reserves, a power of two; payloads larger
+         * than a slab stay on the heap.
+         */
+        public Builder payloadSlabBytes(int payloadSlabBytes) {
+            this.payloadSlabBytes = payloadSlabBytes;
+            return this;
+        }
+
+        /**
+         * @param payloadOffloadThreshold The smallest UTF-8 payload, in bytes, moved into the arena.
+         */
+        public Builder payloadOffloadThreshold(int payloadOffloadThreshold) {
+            this.payloadOffloadThreshold = payloadOffloadThreshold;
+            return this;
+        }
+
+        /**
+         * @param payloadCompression Whether payloads moved into the arena are deflated when that saves space.
+         */
+        public Builder payloadCompression(boolean payloadCompression) {
+            this.payloadCompression = payloadCompression;
+            return this;
+        }
+
+        /**
+         * @param watchdogStuckMillis How long a worker may spend on one task before the watchdog reports it as
+         * stuck; 0 disables the watchdog, including its deadlock detection.
+         */
+        public Builder watchdogStuckMillis(long watchdogStuckMillis) {
+            this.watchdogStuckMillis = watchdogStuckMillis;
+            return this;
+        }
+
+        /**
+         * @param watchdogRecovery Whether the watchdog frees a deadlocked worker, or a stuck one blocked on a lock,
+         * by interrupting it, re-queuing its task and starting a replacement.
+         */
+        public Builder watchdogRecovery(boolean watchdogRecovery) {
+            this.watchdogRecovery = watchdogRecovery;
+            return this;
+        }
+
+        /**
+         * @param watchdogMaxRecoveries How many times the watchdog may free a worker from one attempt and re-queue
+         * its task before the attempt counts as failed, retried under the task's retry policy or dead-lettered.
+         */
+        public Builder watchdogMaxRecoveries(int watchdogMaxRecoveries) {
+            this.watchdogMaxRecoveries = watchdogMaxRecoveries;
+            return this;
+        }
+
+        /**
+         * @param walDirectory Where the write-ahead log keeps its segments; null (the default) disables it.
+         * Tasks left unfinished in an existing log are re-queued when the workers start.
+         */
+        public Builder walDirectory(String walDirectory) {
+            this.walDirectory = walDirectory;
+            return this;
+        }
+
+        /**
+         * @param walSegmentBytes The size of each memory-mapped log segment; a record never spans two.
+         */
+        public Builder walSegmentBytes(int walSegmentBytes) {
+            this.walSegmentBytes = walSegmentBytes;
+            return this;
+        }
+
+        /**
+         * @param walFlushIntervalMillis How often status transitions are forced to disk when no submission is waiting.
+         */
+        public Builder walFlushIntervalMillis(long walFlushIntervalMillis) {
+            this.walFlushIntervalMillis = walFlushIntervalMillis;
+            return this;
+        }
+
+        /**
+         * @param spillFile Where tasks left unfinished at shutdown are saved; null (the default) discards them.
+         * A spill file left by the previous run is streamed back into the queue when the workers start.
+         */
+        public Builder spillFile(String spillFile) {
+            this.spillFile = spillFile;
+            return this;
+        }
+
+        /**
+         * @param asyncLogBufferSize The ring buffer size {@link com.moadams.util.TaskLogger} logs through while the
+         * dispatcher runs, flushed at shutdown; 0 (the default) keeps logging synchronous.
+         */
+        public Builder asyncLogBufferSize(int asyncLogBufferSize) {
+            this.asyncLogBufferSize = asyncLogBufferSize;
+            return this;
+        }
+
+        /**
+         * @param plainLogOutput Whether log lines are written without ANSI colours and icons, for files and CI logs.
+         */
+        public Builder plainLogOutput(boolean plainLogOutput) {
+            this.plainLogOutput = plainLogOutput;
+            return this;
+        }
+
+        /**
+         * @param taskIdMode How new tasks get their IDs. SEQUENTIAL switches the process-wide
+         * {@link com.moadams.model.TaskIds} mode when the dispatcher is built; RANDOM_UUID (the default) leaves it as it is.
+         */
+        public Builder taskIdMode(TaskIdMode taskIdMode) {
+            this.taskIdMode = taskIdMode;
+            return this;
+        }
+
+        /**
+         * @param nodeId The node ID embedded in SEQUENTIAL task IDs, 0 to 65535, so processes sharing a store or log
+         * never issue the same ID.
+         */
+        public Builder nodeId(int nodeId) {
+            this.nodeId = nodeId;
+            return this;
+        }
+
+        public DispatcherConfig build() {
+            if (workerPoolSize <= 0) {
+                throw new IllegalArgumentException("Worker pool size must be positive: " + workerPoolSize);
+            }
+            if (maxBatchSize <= 0 || maxLingerMillis < 0) {
+                throw new IllegalArgumentException("Batch size must be positive and linger must not be negative");
+            }
+            if (maxAsyncInFlight <= 0) {
+                throw new IllegalArgumentException("Async in-flight limit must be positive: " + maxAsyncInFlight);
+            }
+            if (maxLockTimeouts < 0) {
+                throw new IllegalArgumentException("Lock timeout limit must not be negative: " + maxLockTimeouts);
+            }
+            if (rejectionPolicy == null || queueMode == null || executionMode == null || retryPolicy == null || schedulingMode == null) {
+                throw new IllegalArgumentException("Rejection policy, queue mode, execution mode, retry policy and scheduling mode are required");
+            }
+            if (schedulingMode != SchedulingMode.STRICT_PRIORITY && queueMode != QueueMode.SHARED) {
+                throw new IllegalArgumentException(schedulingMode + " scheduling requires the SHARED queue mode");
+            }
+            if (agingIntervalMillis <= 0 || priorityBandWeights.length == 0 || Arrays.stream(priorityBandWeights).anyMatch(w -> w <= 0)) {
+                throw new IllegalArgumentException("Aging interval and priority band weights must be positive");
+            }
+            if (tenantWeights.containsKey(null) || tenantWeights.values().stream().anyMatch(w -> w <= 0)
+                    || tenantRateLimits.containsKey(null)) {
+                throw new IllegalArgumentException("Tenant weights must be positive and tenants must be named");
+            }
+            if (idempotencyWindowMillis < 0 || maxIdempotencyKeys <= 0) {
+                throw new IllegalArgumentException("Idempotency window must not be negative and the key cap must be positive");
+            }
+            if (retryTickMillis <= 0 || retryWheelSize <= 0 || deadLetterCapacity <= 0) {
+                throw new IllegalArgumentException("Retry tick, wheel size and dead-letter capacity must be positive");
+            }
+            if (autoscaleMaxWorkers > 0) {
+                if (autoscaleMinWorkers <= 0 || autoscaleMinWorkers > autoscaleMaxWorkers) {
+                    throw new IllegalArgumentException("Autoscaling bounds must satisfy 0 < min <= max (min=" +
+                            autoscaleMinWorkers + ", max=" + autoscaleMaxWorkers + ")");
+                }
+                if (executionMode != ExecutionMode.PLATFORM_POOL || queueMode != QueueMode.SHARED) {
+                    throw new IllegalArgumentException("Autoscaling requires the PLATFORM_POOL execution mode and SHARED queue mode");
+                }
+                if (autoscaleIntervalMillis <= 0 || autoscaleCooldownMillis < 0 || autoscaleSustainSamples <= 0 || targetQueueWaitMillis <= 0) {
+                    throw new IllegalArgumentException("Autoscale interval, sustain samples and target wait must be positive and cooldown not negative");
+                }
+            }
+            if (watchdogMaxRecoveries < 0) {
+                throw new IllegalArgumentException("Watchdog recovery limit must not be negative: " + watchdogMaxRecoveries);
+            }
+            if (watchdogStuckMillis < 0 || (watchdogRecovery && (watchdogStuckMillis == 0 || executionMode != ExecutionMode.PLATFORM_POOL))) {
+                throw new IllegalArgumentException("Watchdog threshold must not be negative, and recovery requires the watchdog and the PLATFORM_POOL execution mode");
+            }
+            if (payloadArenaBytes > 0 && (payloadSlabBytes < PayloadArena.MIN_BLOCK_BYTES || Integer.bitCount(payloadSlabBytes) != 1
+                    || payloadArenaBytes < payloadSlabBytes || payloadOffloadThreshold < 0)) {
+                throw new IllegalArgumentException("Payload slabs must be a power of two of at least " + PayloadArena.MIN_BLOCK_BYTES +
+                        " bytes, no larger than the arena, and the offload threshold must not be negative");
+            }
+            if (walSegmentBytes < 4096 || walFlushIntervalMillis <= 0) {
+                throw new IllegalArgumentException("WAL segments must be at least 4096 bytes and the flush interval positive");
+            }
+            if (taskIdMode == null || nodeId < 0 || nodeId > 0xFFFF) {
+                throw new IllegalArgumentException("A task ID mode is required and the node ID must fit in 16 bits: " + nodeId);
+            }
+            if (asyncLogBufferSize < 0) {
+                throw new IllegalArgumentException("Async log buffer size must not be negative: " + asyncLogBufferSize);
+            }
+            if (spillFile != null && walDirectory != null) {
+                throw new IllegalArgumentException("A spill file cannot be combined with the write-ahead log, which already recovers unfinished tasks");
+            }
+            return new DispatcherConfig(this);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.moadams.service;
+
+import com.moadams.enums.TaskStatus;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * IdempotencyIndex maps idempotency keys to the handle of the task that owns them, so TaskDispatcher can hand a
+ * resubmission the handle of the queued or running task with the same key instead of running the job twice.
+ *
+ * <p>A key is owned from submission until its task is terminal. A COMPLETED task keeps its key for the
+ * suppression window, during which resubmissions get the completed handle; a FAILED, CANCELLED or EXPIRED
+ * task releases its key at once so the job can be submitted again. Live keys are bounded by the tasks
+ * outstanding; completed keys are kept in completion order and evicted once their window passes or the cap
+ * is exceeded, oldest first, the same way TaskStateStore bounds terminal statuses.</p>
+ */
+public class IdempotencyIndex {
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> completedOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger completedCount = new AtomicInteger();
+    private final LongAdder coalesced = new LongAdder();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final long windowNanos;
+    private final int maxCompletedKeys;
+
+    private static final class Entry {
+        final String key;
+        final TaskHandle handle;
+        volatile long completedNanos;
+
+        Entry(String key, TaskHandle handle) {
+            this.key = key;
+            this.handle = handle;
+        }
+
+        boolean isStale(long nowNanos, long windowNanos) {
+            long completed = completedNanos;
+            return completed != 0 && nowNanos - completed >= windowNanos;
+        }
+    }
+
+    /**
+     * Constructs an IdempotencyIndex.
+     * @param windowMillis How long a completed task's key suppresses resubmissions; 0 releases it on completion.
+     * @param maxCompletedKeys The most completed keys kept within their window.
+     */
+    IdempotencyIndex(long windowMillis, int maxCompletedKeys) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxCompletedKeys = maxCompletedKeys;
+    }
+
+    /**
+     * Claims a key for a new submission.
+     * @param key The submission's idempotency key.
+     * @param handle The handle the submission will own the key with.
+     * @return null if the submission now owns the key, otherwise the handle of the task that already does.
+     */
+    TaskHandle claim(String key, TaskHandle handle) {
+        long now = System.nanoTime();
+        Entry fresh = new Entry(key, handle);
+        Entry owner = entries.compute(key, (k, current) ->
+                current == null || current.isStale(now, windowNanos) ? fresh : current);
+        if (owner == fresh) {
+            return null;
+        }
+        coalesced.increment();
+        return owner.handle;
+    }
+
+    /**
+     * Records that the task owning a key reached a terminal status, or was withdrawn.
+     * @param key The task's idempotency key.
+     * @param handle The handle the task owns the key with.
+     * @param status The terminal status, or null if the task was withdrawn.
+     */
+    void settled(String key, TaskHandle handle, TaskStatus status) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.handle != handle) {
+            return;
+        }
+        if (status != TaskStatus.COMPLETED || windowNanos == 0) {
+            entries.remove(key, entry);
+            return;
+        }
+        long now = System.nanoTime();
+        entry.completedNanos = now;
+        completedOrder.offer(entry);
+        completedCount.incrementAndGet();
+        evictExpired(now);
+    }
+
+    private void evictExpired(long nowNanos) {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            Entry oldest;
+            while ((oldest = completedOrder.peek()) != null
+                    && (completedCount.get() > maxCompletedKeys || oldest.isStale(nowNanos, windowNanos))) {
+                completedOrder.poll();
+                completedCount.decrementAndGet();
+                entries.remove(oldest.key, oldest);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * @return How many keys are held, by live tasks and by completed tasks within their window.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return How many submissions were coalesced into an existing task.
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+}
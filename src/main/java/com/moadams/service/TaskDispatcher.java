@@ -1,28 +1,105 @@
 package com.moadams.service;
 
 import com.moadams.consumer.TaskWorker;
+import com.moadams.consumer.WorkerStats;
+import com.moadams.enums.ExecutionMode;
+import com.moadams.enums.LogLevel;
+import com.moadams.enums.QueueMode;
+import com.moadams.enums.RejectionPolicy;
+import com.moadams.enums.TaskIdMode;
 import com.moadams.model.Task;
+import com.moadams.model.TaskGraph;
+import com.moadams.model.TaskIds;
 import com.moadams.enums.TaskStatus;
+import com.moadams.handler.AsyncTaskHandler;
+import com.moadams.handler.TaskHandler;
+import com.moadams.handler.TaskHandlerRegistry;
+import com.moadams.lock.ResourceLockManager;
+import com.moadams.metrics.TaskLatencyTracker;
+import com.moadams.payload.PayloadArena;
 import com.moadams.producer.TaskProducer;
+import com.moadams.queue.AgingPriorityQueue;
+import com.moadams.queue.BackpressureQueue;
+import com.moadams.queue.BoundedPriorityBlockingQueue;
+import com.moadams.queue.CountingQueue;
+import com.moadams.queue.TenantFairQueue;
+import com.moadams.queue.WatermarkListener;
+import com.moadams.queue.WeightedFairQueue;
+import com.moadams.queue.WorkStealingTaskQueue;
+import com.moadams.retry.DeadLetterStore;
+import com.moadams.retry.RetryScheduler;
+import com.moadams.state.TaskStateStore;
 import com.moadams.util.TaskLogger;
+import com.moadams.wal.TaskSpillFile;
+import com.moadams.wal.TaskWriteAheadLog;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
 
-public class TaskDispatcher {
-    private final BlockingQueue<Task> taskQueue;
+public final class TaskDispatcher {
+    private final BackpressureQueue<Task> taskQueue;
     private final ExecutorService workerPool;
-    private final ConcurrentHashMap<UUID, TaskStatus> taskStates;
-    private final AtomicInteger processedTaskCount;
+    private final TaskStateStore taskStates;
     private final ConcurrentHashMap<UUID, Integer> retryCounts;
     private final Object lockA;
     private final Object lockB;
     private final boolean introduceDeadlock;
+    private final long submitTimeoutMillis;
+    private final RejectionPolicy rejectionPolicy;
+    private final int workerPoolSize;
+    private final ExecutionMode executionMode;
+    private final WorkerStats workerStats;
+    private final TaskLatencyTracker latencyTracker;
+    private final RetryScheduler retryScheduler;
+    private final Semaphore concurrencyPermits;
+    private final int maxBatchSize;
+    private final long maxLingerMillis;
+    private final ResourceLockManager resourceLockManager;
+    private final long lockTimeoutMillis;
+    private final int maxLockTimeouts;
+    private final int maxRecoveries;
+    private final boolean ownsAsyncLog;
+    private final TaskWriteAheadLog writeAheadLog;
+    private final PayloadArena payloadArena;
+    private final TaskSpillFile spillFile;
+    private final TaskSpillFile.Reader spillReader;
+    private final ConcurrentLinkedQueue<Task> unfinished = new ConcurrentLinkedQueue<>();
+    private final ArrayDeque<TaskWorker> poolWorkers = new ArrayDeque<>();
+    private final DispatcherConfig autoscalerConfig;
+    private final WorkerWatchdog watchdog;
+    private final ConcurrentHashMap<UUID, TaskHandle> handles = new ConcurrentHashMap<>();
+    private final Set<TaskGraphHandle> activeGraphs = ConcurrentHashMap.newKeySet();
+    private final ExecutorService graphReleaser = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "TaskGraph-Releaser");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final TaskHandlerRegistry handlers = new TaskHandlerRegistry();
+    private final IdempotencyIndex idempotency;
+    private final TenantAdmission admission;
+    private final Semaphore asyncPermits;
+    private final int maxAsyncInFlight;
+    private volatile Thread dispatchLoopThread;
+    private volatile Thread autoscalerThread;
+    private volatile Thread spillLoaderThread;
 
 
     /**
-     * Constructs a TaskDispatcher.
+     * Constructs a TaskDispatcher whose producers block indefinitely while the queue is full.
      * @param workerPoolSize The number of worker threads in the pool.
      * @param queueCapacity The maximum capacity of the task queue (bounded queue).
      * @param lockA A shared lock object for demonstration purposes.
@@ -31,53 +108,784 @@ public class TaskDispatcher {
      * or a fixed, safe order (false).
      */
     public TaskDispatcher(int workerPoolSize, int queueCapacity, Object lockA, Object lockB, boolean introduceDeadlock) {
+        this(DispatcherConfig.builder().workerPoolSize(workerPoolSize).queueCapacity(queueCapacity).build(),
+                lockA, lockB, introduceDeadlock);
+    }
 
-        this.taskQueue = new PriorityBlockingQueue<>(queueCapacity);
-        this.workerPool = Executors.newFixedThreadPool(workerPoolSize);
-        this.taskStates = new ConcurrentHashMap<>();
-        this.processedTaskCount = new AtomicInteger(0);
+    /**
+     * Constructs a TaskDispatcher.
+     * @param config The queue and worker pool configuration.
+     * @param lockA A shared lock object for demonstration purposes.
+     * @param lockB A shared lock object for demonstration purposes.
+     * @param introduceDeadlock A flag to indicate whether workers should use conflicting lock order (true)
+     * or a fixed, safe order (false).
+     */
+    public TaskDispatcher(DispatcherConfig config, Object lockA, Object lockB, boolean introduceDeadlock) {
+        int workerPoolSize = config.getWorkerPoolSize();
+        int queueCapacity = config.getQueueCapacity();
+        if (config.isPlainLogOutput()) {
+            TaskLogger.setAnsiEnabled(false);
+        }
+        // Only a logger this dispatcher switched to async is flushed and stopped by its shutdown.
+        this.ownsAsyncLog = config.getAsyncLogBufferSize() > 0 && !TaskLogger.isAsync();
+        if (ownsAsyncLog) {
+            TaskLogger.startAsync(config.getAsyncLogBufferSize());
+        }
+        if (config.getTaskIdMode() == TaskIdMode.SEQUENTIAL) {
+            TaskIds.useSequential(config.getNodeId());
+        }
+
+        this.admission = new TenantAdmission(config.getTenantRateLimit(), config.getTenantRateLimits());
+        // The queue's containers count tasks per tenant as they go in and out, for the monitor to read.
+        ConcurrentMap<String, LongAdder> queuedByTenant = admission.getQueuedCounts();
+        if (config.getQueueMode() == QueueMode.WORK_STEALING) {
+            this.taskQueue = new WorkStealingTaskQueue<>(workerPoolSize, queueCapacity, config.getRejectionPolicy(),
+                    Task::getPriority, config.getStealThreshold(),
+                    () -> new CountingQueue<>(new PriorityQueue<Task>(), Task::getTenant, queuedByTenant));
+        } else {
+            this.taskQueue = new BoundedPriorityBlockingQueue<>(queueCapacity, config.getRejectionPolicy(),
+                    new CountingQueue<>(newSchedule(config), Task::getTenant, queuedByTenant));
+        }
+        if (config.isAutoscalingEnabled()) {
+            workerPoolSize = Math.max(config.getAutoscaleMinWorkers(), Math.min(config.getAutoscaleMaxWorkers(), workerPoolSize));
+        }
+        this.workerPoolSize = workerPoolSize;
+        this.executionMode = config.getExecutionMode();
+        if (executionMode == ExecutionMode.VIRTUAL_THREADS) {
+            this.workerPool = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("VirtualWorker-", 1).factory());
+            this.concurrencyPermits = new Semaphore(config.getMaxConcurrentTasks());
+            this.workerStats = new WorkerStats(config.getMaxConcurrentTasks());
+        } else {
+            this.workerPool = Executors.newFixedThreadPool(config.isAutoscalingEnabled() ? config.getAutoscaleMaxWorkers() : workerPoolSize);
+            this.concurrencyPermits = null;
+            this.workerStats = new WorkerStats(workerPoolSize);
+        }
+        this.latencyTracker = new TaskLatencyTracker();
+        this.taskStates = new TaskStateStore(config.getTerminalStateTtlMillis(), config.getMaxTerminalStates());
         this.retryCounts = new ConcurrentHashMap<>();
+        this.retryScheduler = new RetryScheduler(taskQueue, taskStates, config.getRetryPolicy(),
+                new DeadLetterStore(config.getDeadLetterCapacity()), config.getRetryTickMillis(), config.getRetryWheelSize());
         this.lockA = lockA;
         this.lockB = lockB;
         this.introduceDeadlock = introduceDeadlock;
-        TaskLogger.log("TaskDispatcher initialized with " + workerPoolSize +
-                " worker threads and queue capacity " + queueCapacity + ".");
+        this.submitTimeoutMillis = config.getSubmitTimeoutMillis();
+        this.rejectionPolicy = config.getRejectionPolicy();
+        this.maxBatchSize = config.getMaxBatchSize();
+        this.maxLingerMillis = config.getMaxLingerMillis();
+        this.resourceLockManager = new ResourceLockManager(config.getLockStripes());
+        this.lockTimeoutMillis = config.getLockTimeoutMillis();
+        this.maxLockTimeouts = config.getMaxLockTimeouts();
+        this.maxRecoveries = config.getWatchdogMaxRecoveries();
+        this.maxAsyncInFlight = config.getMaxAsyncInFlight();
+        this.idempotency = new IdempotencyIndex(config.getIdempotencyWindowMillis(), config.getMaxIdempotencyKeys());
+        this.asyncPermits = new Semaphore(maxAsyncInFlight);
+        this.writeAheadLog = openWriteAheadLog(config);
+        this.payloadArena = openPayloadArena(config);
+        this.spillFile = config.getSpillFile() == null ? null : new TaskSpillFile(Paths.get(config.getSpillFile()));
+        this.spillReader = openSpill();
+        this.autoscalerConfig = config.isAutoscalingEnabled() ? config : null;
+        this.watchdog = config.isWatchdogEnabled()
+                ? new WorkerWatchdog(this, config.getWatchdogStuckMillis(), config.isWatchdogRecovery())
+                : null;
+
+        taskStates.addTransitionListener(this::settleHandle);
+        taskQueue.setEvictionHandler(evicted -> {
+            taskStates.put(evicted.getId(), TaskStatus.FAILED);
+            TaskLogger.logWarning("Queue full: evicted " + evicted + " to make room for a higher-priority task.");
+        });
+        taskQueue.addWatermarkListener(new WatermarkListener() {
+            @Override
+            public void onHighWatermark(int size, int capacity) {
+                TaskLogger.logWarning("Task queue reached high watermark (" + size + "/" + capacity + "). Producers are throttling.");
+            }
+
+            @Override
+            public void onLowWatermark(int size, int capacity) {
+                TaskLogger.log("Task queue drained to low watermark (" + size + "/" + capacity + "). Producers resuming full rate.");
+            }
+        });
+
+        TaskLogger.log("TaskDispatcher initialized in " + executionMode + " mode with " +
+                (executionMode == ExecutionMode.VIRTUAL_THREADS
+                        ? config.getMaxConcurrentTasks() + " concurrent virtual threads"
+                        : workerPoolSize + " worker threads") +
+                " and " + config.getQueueMode() + " queue capacity " + queueCapacity +
+                " (" + config.getRejectionPolicy() + " when full, " + config.getSchedulingMode() + " scheduling).");
+    }
+
+    /**
+     * Builds the container that decides dequeue order in the shared queue.
+     */
+    private static Queue<Task> newSchedule(DispatcherConfig config) {
+        switch (config.getSchedulingMode()) {
+            case AGING:
+                return new AgingPriorityQueue<>(Task::getPriority, TimeUnit.MILLISECONDS.toNanos(config.getAgingIntervalMillis()));
+            case WEIGHTED_FAIR:
+                return new WeightedFairQueue<>(task -> task.getPriority() - 1, config.getPriorityBandWeights());
+            case TENANT_FAIR:
+                return new TenantFairQueue<>(Task::getPriority, Task::getTenant, config::getTenantWeight);
+            default:
+                return new PriorityQueue<>(Math.max(1, config.getQueueCapacity()));
+        }
+    }
+
+    private TaskWriteAheadLog openWriteAheadLog(DispatcherConfig config) {
+        if (config.getWalDirectory() == null) {
+            return null;
+        }
+        TaskWriteAheadLog wal;
+        try {
+            wal = new TaskWriteAheadLog(Paths.get(config.getWalDirectory()), config.getWalSegmentBytes(),
+                    config.getWalFlushIntervalMillis(), retryCounts);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open write-ahead log in " + config.getWalDirectory(), e);
+        }
+        taskStates.addSubmissionListener(wal);
+        taskStates.addTransitionListener(wal);
+        TaskLogger.log("Write-ahead log enabled in " + config.getWalDirectory() + " with " +
+                wal.getRecoveredTasks().size() + " tasks to recover.");
+        return wal;
+    }
+
+    /**
+     * Creates the off-heap payload arena, if configured. It is registered after the write-ahead log, so the
+     * log journals each payload from the heap before the arena moves it.
+     */
+    private PayloadArena openPayloadArena(DispatcherConfig config) {
+        if (!config.isPayloadArenaEnabled()) {
+            return null;
+        }
+        PayloadArena arena = new PayloadArena(config.getPayloadSlabBytes(), config.getPayloadArenaBytes(),
+                config.getPayloadOffloadThreshold(), config.isPayloadCompression());
+        taskStates.addSubmissionListener(arena);
+        taskStates.addTransitionListener(arena);
+        TaskLogger.log("Payload arena enabled: up to " + config.getPayloadArenaBytes() + " bytes of direct memory in " +
+                config.getPayloadSlabBytes() + "-byte slabs for payloads of " + config.getPayloadOffloadThreshold() +
+                " bytes or more" + (config.isPayloadCompression() ? ", compressed." : "."));
+        return arena;
+    }
+
+    /**
+     * Claims the spill file left by the previous run, if any. Its tasks are streamed in once the workers start.
+     */
+    private TaskSpillFile.Reader openSpill() {
+        if (spillFile == null) {
+            return null;
+        }
+        try {
+            TaskSpillFile.Reader reader = spillFile.openForLoading();
+            if (reader != null) {
+                TaskLogger.log("Spill file " + spillFile.getPath() + " found; its tasks are re-queued when the workers start.");
+            }
+            return reader;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open spill file " + spillFile.getPath(), e);
+        }
+    }
+
+    /**
+     * Streams the previous run's spilled tasks into the queue on a separate thread, so startup does not wait
+     * for a large spill and tasks beyond the queue's capacity load as the workers make room. A shutdown
+     * before the load finishes spills the unread remainder again.
+     */
+    private void startSpillLoad() {
+        Thread loader = new Thread(() -> {
+            int requeued = 0;
+            try {
+                Task task;
+                while ((task = spillReader.next()) != null) {
+                    try {
+                        requeueRestored(task);
+                    } catch (InterruptedException e) {
+                        unfinished.add(task);
+                        throw e;
+                    }
+                    requeued++;
+                }
+                spillReader.close();
+                spillFile.finishLoading();
+                TaskLogger.log("Loaded " + requeued + " spilled tasks from " + spillFile.getPath() + ".");
+            } catch (InterruptedException e) {
+                TaskLogger.logWarning("Spill load interrupted after re-queuing " + requeued + " tasks; the rest are spilled again.");
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                TaskLogger.logError("Failed to load spill file " + spillFile.getPath() + " after " + requeued +
+                        " tasks; it is reloaded in full on the next start: " + e);
+            }
+        }, "TaskSpill-Loader");
+        loader.setDaemon(true);
+        spillLoaderThread = loader;
+        loader.start();
+    }
+
+    /**
+     * Re-queues a task restored from the write-ahead log or a spill file, re-registering its idempotency key
+     * and retry count. Blocks while the queue is full.
+     * @throws InterruptedException If interrupted while waiting for queue space; the task is then not queued.
+     */
+    private void requeueRestored(Task task) throws InterruptedException {
+        if (task.getIdempotencyKey() != null) {
+            TaskHandle handle = new TaskHandle(this, task);
+            if (idempotency.claim(task.getIdempotencyKey(), handle) == null) {
+                handles.put(task.getId(), handle);
+            }
+        }
+        if (task.getRetryCount() > 0) {
+            retryCounts.put(task.getId(), task.getRetryCount());
+        }
+        if (payloadArena != null) {
+            payloadArena.offload(task);
+        }
+        taskStates.put(task.getId(), TaskStatus.SUBMITTED);
+        task.markEnqueued();
+        taskQueue.put(task);
+    }
+
+    /**
+     * Re-queues the tasks the write-ahead log recovered, on a separate thread so a recovery backlog larger
+     * than the queue drains as the workers make room instead of blocking startup.
+     */
+    private void startRecovery() {
+        List<Task> recovered = writeAheadLog.getRecoveredTasks();
+        if (recovered.isEmpty()) {
+            return;
+        }
+        Thread recovery = new Thread(() -> {
+            int requeued = 0;
+            try {
+                for (Task task : recovered) {
+                    requeueRestored(task);
+                    requeued++;
+                }
+                TaskLogger.log("Recovered " + requeued + " unfinished tasks from the write-ahead log.");
+            } catch (InterruptedException e) {
+                TaskLogger.logWarning("Recovery interrupted after re-queuing " + requeued + " of " + recovered.size() +
+                        " tasks; the rest stay in the write-ahead log.");
+                Thread.currentThread().interrupt();
+            }
+        }, "TaskWal-Recovery");
+        recovery.setDaemon(true);
+        recovery.start();
     }
 
     /**
      * Starts the specified number of worker threads.
      * Each worker will continuously try to fetch and process tasks from the queue.
+     * In VIRTUAL_THREADS mode a single dispatch loop takes tasks instead and runs each on its own virtual thread.
      */
     public void startWorkers() {
-        TaskLogger.log("Starting worker threads...");
-        for (int i = 0; i < ((ThreadPoolExecutor) workerPool).getCorePoolSize(); i++) {
-
-            workerPool.submit(new TaskWorker(taskQueue, taskStates, processedTaskCount, retryCounts, lockA, lockB, introduceDeadlock));
+        retryScheduler.start();
+        if (writeAheadLog != null) {
+            startRecovery();
+        }
+        if (spillReader != null) {
+            startSpillLoad();
+        }
+        if (executionMode == ExecutionMode.VIRTUAL_THREADS) {
+            TaskWorker worker = newWorker();
+            dispatchLoopThread = new Thread(() -> runVirtualDispatchLoop(worker), "TaskDispatcher-Loop");
+            dispatchLoopThread.start();
+            TaskLogger.log("Virtual-thread dispatch loop started with a limit of " +
+                    workerStats.getConcurrencyLimit() + " concurrent tasks.");
+            return;
         }
+
+        TaskLogger.log("Starting worker threads...");
+        addWorkers(workerPoolSize);
         TaskLogger.log(
-                "Worker pool with " + ((ThreadPoolExecutor) workerPool).getCorePoolSize() + " threads started."
+                "Worker pool with " + workerPoolSize + " threads started."
         );
+        if (autoscalerConfig != null) {
+            // Built here rather than in the constructor so the autoscaler never sees a partly constructed dispatcher.
+            WorkerAutoscaler autoscaler = new WorkerAutoscaler(this, taskQueue, workerStats, taskStates.getCounters(),
+                    latencyTracker, autoscalerConfig);
+            autoscalerThread = new Thread(autoscaler, "WorkerAutoscaler");
+            autoscalerThread.setDaemon(true);
+            autoscalerThread.start();
+        }
+    }
+
+    /**
+     * Starts more long-lived workers on the platform pool.
+     * @param count How many workers to add.
+     */
+    void addWorkers(int count) {
+        synchronized (poolWorkers) {
+            for (int i = 0; i < count; i++) {
+                TaskWorker worker = newWorker();
+                poolWorkers.addLast(worker);
+                workerPool.submit(worker);
+            }
+            workerStats.setConcurrencyLimit(poolWorkers.size());
+        }
+    }
+
+    /**
+     * Retires the most recently started workers. Each finishes the task it holds before its thread returns to the pool.
+     * @param count How many workers to retire; at least one is always kept.
+     */
+    void retireWorkers(int count) {
+        synchronized (poolWorkers) {
+            for (int i = 0; i < count && poolWorkers.size() > 1; i++) {
+                poolWorkers.pollLast().retire();
+            }
+            workerStats.setConcurrencyLimit(poolWorkers.size());
+        }
+    }
+
+    /**
+     * Swaps a deadlocked or stuck worker for a new one. The replacement is started before the victim is
+     * interrupted, and runs as soon as the pool has a free thread, at the latest the one the victim frees.
+     * @param victim The worker to interrupt.
+     * @return false if the worker was already retired or replaced.
+     */
+    boolean replaceWorker(TaskWorker victim) {
+        synchronized (poolWorkers) {
+            if (!poolWorkers.remove(victim)) {
+                return false;
+            }
+            TaskWorker replacement = newWorker();
+            poolWorkers.addLast(replacement);
+            workerPool.submit(replacement);
+        }
+        victim.recover();
+        return true;
+    }
+
+    /**
+     * @return A snapshot of the live platform-pool workers; empty in VIRTUAL_THREADS mode.
+     */
+    List<TaskWorker> getPoolWorkers() {
+        synchronized (poolWorkers) {
+            return new ArrayList<>(poolWorkers);
+        }
+    }
+
+    /**
+     * Gets the number of workers currently taking tasks, excluding retired ones still finishing their last task.
+     * @return The live worker count; in VIRTUAL_THREADS mode, the concurrency limit.
+     */
+    public int getWorkerCount() {
+        if (executionMode == ExecutionMode.VIRTUAL_THREADS) {
+            return workerStats.getConcurrencyLimit();
+        }
+        synchronized (poolWorkers) {
+            return poolWorkers.size();
+        }
+    }
+
+    private TaskWorker newWorker() {
+        return new TaskWorker(taskQueue, taskStates, retryCounts, lockA, lockB, introduceDeadlock, workerStats,
+                latencyTracker, retryScheduler, resourceLockManager, lockTimeoutMillis, maxLockTimeouts, maxRecoveries, maxBatchSize, maxLingerMillis,
+                handlers, asyncPermits, unfinished);
+    }
+
+    /**
+     * Takes tasks from the queue and starts a virtual thread for each.
+     * A permit is acquired before taking, so tasks stay in the priority queue
+     * until there is capacity to run them rather than piling up as parked threads.
+     * With batching enabled, each wakeup also drains as many extra tasks as there are free permits, up to the batch size.
+     * @param worker The shared, stateless worker whose process method runs each task.
+     */
+    private void runVirtualDispatchLoop(TaskWorker worker) {
+        List<Task> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                concurrencyPermits.acquire();
+                try {
+                    batch.add(taskQueue.take());
+                } catch (InterruptedException e) {
+                    concurrencyPermits.release();
+                    throw e;
+                }
+                int extraPermits = 0;
+                while (extraPermits < maxBatchSize - 1 && concurrencyPermits.tryAcquire()) {
+                    extraPermits++;
+                }
+                if (extraPermits > 0) {
+                    int drained = taskQueue.drainTo(batch, extraPermits);
+                    concurrencyPermits.release(extraPermits - drained);
+                }
+
+                for (int i = 0; i < batch.size(); i++) {
+                    Task task = batch.get(i);
+                    try {
+                        workerPool.execute(() -> {
+                            try {
+                                worker.process(task);
+                            } finally {
+                                concurrencyPermits.release();
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        concurrencyPermits.release(batch.size() - i);
+                        batch.subList(i, batch.size()).forEach(taskQueue::offer);
+                        TaskLogger.logWarning("Virtual worker executor rejected " + task + "; dispatch loop stopping.");
+                        return;
+                    }
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            TaskLogger.log("TaskDispatcher dispatch loop interrupted and shutting down.");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Registers a blocking handler for tasks of a type, or for one task name; an exact name wins over a type.
+     * Tasks no registration matches run with the default handler, a simulation unless replaced.
+     * @param typeOrName A task type ({@link Task#getType()}) or an exact task name.
+     * @param handler Runs matching tasks on the worker thread.
+     */
+    public void registerHandler(String typeOrName, TaskHandler handler) {
+        handlers.register(typeOrName, handler);
+    }
+
+    /**
+     * Registers an async handler for tasks of a type, or for one task name. Matching tasks free their worker
+     * as soon as the handler returns its stage; up to {@code maxAsyncInFlight} may be outstanding at once.
+     * @param typeOrName A task type ({@link Task#getType()}) or an exact task name.
+     * @param handler Starts matching tasks and returns a stage that completes with them.
+     */
+    public void registerAsyncHandler(String typeOrName, AsyncTaskHandler handler) {
+        handlers.registerAsync(typeOrName, handler);
+    }
+
+    /**
+     * Gets the handler registry, to replace the default handler or remove registrations.
+     * @return The TaskHandlerRegistry shared by all workers.
+     */
+    public TaskHandlerRegistry getHandlerRegistry() {
+        return handlers;
+    }
+
+    /**
+     * Submits a task and returns a handle that completes with its outcome. When the queue is full the configured
+     * rejection policy applies: BLOCK waits for space, for at most the submit timeout if one is set; FAIL_FAST
+     * rejects at once; DROP_LOWEST_PRIORITY evicts a lower-priority task or rejects. A rejected task is marked
+     * FAILED and its handle completes exceptionally with a RejectedExecutionException.
+     * If a queued or running task has the same idempotency key, or one completed within the suppression window,
+     * nothing is queued and that task's handle is returned instead; cancelling it cancels the shared task.
+     * A task whose tenant is over its rate limit waits for admission first.
+     * @param task The task to submit.
+     * @return The handle, which can also cancel the task.
+     * @throws InterruptedException If interrupted while throttled or waiting for queue space; the task is not queued.
+     */
+    public TaskHandle submit(Task task) throws InterruptedException {
+        TaskHandle handle = new TaskHandle(this, task);
+        String key = task.getIdempotencyKey();
+        if (key != null) {
+            TaskHandle owner = idempotency.claim(key, handle);
+            if (owner != null) {
+                logCoalesced(task, owner);
+                return owner;
+            }
+        }
+        try {
+            admission.admit(task);
+        } catch (InterruptedException e) {
+            if (key != null) {
+                idempotency.settled(key, handle, null);
+            }
+            throw e;
+        }
+        handles.put(task.getId(), handle);
+        taskStates.markSubmitted(task);
+        task.markEnqueued();
+        try {
+            if (!enqueue(task)) {
+                reject(task);
+            }
+        } catch (InterruptedException e) {
+            taskStates.remove(task.getId(), TaskStatus.SUBMITTED);
+            handles.remove(task.getId());
+            throw e;
+        }
+        return handle;
+    }
+
+    /**
+     * Queues a submitted task under the configured rejection policy and submit timeout.
+     * @return false if the full queue rejected it.
+     */
+    private boolean enqueue(Task task) throws InterruptedException {
+        if (rejectionPolicy == RejectionPolicy.BLOCK && submitTimeoutMillis <= 0) {
+            taskQueue.put(task);
+            return true;
+        }
+        return taskQueue.offer(task, submitTimeoutMillis, TimeUnit.MILLISECONDS, rejectionPolicy);
+    }
+
+    /**
+     * Fails a task the full queue rejected, and its handle with a RejectedExecutionException.
+     */
+    private void reject(Task task) {
+        TaskLogger.logWarning("Queue full: rejected " + task + " (" + rejectionPolicy +
+                (rejectionPolicy == RejectionPolicy.BLOCK ? " after " + submitTimeoutMillis + "ms" : "") + ").");
+        TaskHandle handle = handles.remove(task.getId());
+        taskStates.put(task.getId(), TaskStatus.FAILED);
+        if (handle != null) {
+            if (task.getIdempotencyKey() != null) {
+                idempotency.settled(task.getIdempotencyKey(), handle, TaskStatus.FAILED);
+            }
+            handle.completeExceptionally(new RejectedExecutionException("Task " + task.getShortId() +
+                    " was rejected by the full queue (" + rejectionPolicy + ")"));
+        }
+    }
+
+    /**
+     * Submits a task with a deadline. A task still queued when its deadline passes is dropped without running
+     * and its handle completes exceptionally with a TimeoutException; a task that has started is let finish.
+     * @param task The task to submit.
+     * @param timeout How long the task may wait to start, counted from now.
+     * @param unit The unit of the timeout.
+     * @return The handle, which can also cancel the task.
+     * @throws InterruptedException If interrupted while waiting for queue space; the task is not queued.
+     */
+    public TaskHandle submit(Task task, long timeout, TimeUnit unit) throws InterruptedException {
+        task.expireAfter(timeout, unit);
+        return submit(task);
+    }
+
+    /**
+     * Cancels a task. A waiting task (queued or scheduled for retry) is only flagged and moved to CANCELLED;
+     * it stays where it is until a worker or the retry scheduler reaches it and discards it, which avoids an
+     * O(n) removal from the queue. A running task is interrupted if allowed.
+     * @param task The task to cancel.
+     * @param mayInterruptIfRunning Whether to interrupt the worker running the task.
+     * @return true if the task was cancelled before it finished.
+     */
+    boolean cancel(Task task, boolean mayInterruptIfRunning) {
+        UUID taskId = task.getId();
+        if (task.cancelIfNotRunning()) {
+            TaskStatus status;
+            while ((status = taskStates.get(taskId)) == TaskStatus.SUBMITTED || status == TaskStatus.RETRY_SCHEDULED) {
+                if (taskStates.replace(taskId, status, TaskStatus.CANCELLED)) {
+                    retryCounts.remove(taskId);
+                    TaskLogger.log("Cancelled " + task + " while it was " + status + ".");
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (mayInterruptIfRunning && task.cancelAndInterrupt()) {
+            TaskLogger.log("Cancelled " + task + " while it was running; interrupting its worker.");
+            return true;
+        }
+        return false;
+    }
+
+    private void settleHandle(UUID taskId, TaskStatus previous, TaskStatus current) {
+        if (handles.isEmpty() || (current != null && !current.isTerminal())) {
+            return;
+        }
+        TaskHandle handle = handles.remove(taskId);
+        if (handle != null) {
+            // Settle the key first, so a caller that sees a failure and resubmits is not coalesced into the failed task.
+            String key = handle.getTask().getIdempotencyKey();
+            if (key != null) {
+                idempotency.settled(key, handle, current);
+            }
+            handle.settle(current);
+        }
+    }
+
+    private void logCoalesced(Task duplicate, TaskHandle owner) {
+        if (TaskLogger.isEnabled(LogLevel.INFO)) {
+            TaskLogger.log("Coalesced " + duplicate + " into " + owner.getTask() + " (idempotency key '" +
+                    duplicate.getIdempotencyKey() + "').");
+        }
+    }
+
+    /**
+     * Drops the tasks whose idempotency key is already owned and claims the keys of the rest.
+     * @return The tasks to queue; the input itself when none was coalesced.
+     */
+    private Collection<Task> coalesce(Collection<Task> tasks) {
+        List<Task> accepted = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            String key = task.getIdempotencyKey();
+            if (key == null) {
+                accepted.add(task);
+                continue;
+            }
+            TaskHandle handle = new TaskHandle(this, task);
+            TaskHandle owner = idempotency.claim(key, handle);
+            if (owner == null) {
+                handles.put(task.getId(), handle);
+                accepted.add(task);
+            } else {
+                logCoalesced(task, owner);
+            }
+        }
+        return accepted.size() == tasks.size() ? tasks : accepted;
+    }
+
+    /**
+     * Submits a graph of dependent tasks. Its roots are submitted now, each as by {@link #submit(Task)}; every
+     * other task is held outside the queue until all its parents complete, then submitted at once.
+     * @param graph The tasks and their dependencies.
+     * @return A handle that tracks the graph and completes when every task has finished or been skipped.
+     * @throws InterruptedException If interrupted while a root waits for queue space; the graph is then cancelled.
+     */
+    public TaskGraphHandle submitGraph(TaskGraph graph) throws InterruptedException {
+        TaskGraphHandle handle = new TaskGraphHandle(this, graph, graphReleaser);
+        activeGraphs.add(handle);
+        TaskLogger.log("Submitting graph " + graph.getName() + " with " + graph.size() + " tasks.");
+        handle.start();
+        return handle;
+    }
+
+    void graphFinished(TaskGraphHandle handle) {
+        activeGraphs.remove(handle);
+    }
+
+    /**
+     * @return The graphs still running.
+     */
+    public Collection<TaskGraphHandle> getActiveGraphs() {
+        return List.copyOf(activeGraphs);
+    }
+
+    /**
+     * Submits a group of tasks with one state-map update per task and, under a BLOCK policy without a submit
+     * timeout, one queue lock round trip (and consumer wakeup) per chunk that fits, instead of one per task.
+     * Otherwise each task is offered under the rejection policy as in {@link #submit(Task)}, and the rejected
+     * ones are marked FAILED and returned.
+     * Each task keeps its own priority; the queue orders them as if they had been submitted one by one.
+     * Tasks whose idempotency key is already owned are coalesced as in {@link #submit(Task)} and not queued;
+     * the rest are admitted against their tenants' rate limits before any is queued.
+     * @param submitted The tasks to submit.
+     * @return The tasks the full queue rejected; empty if every task was queued or coalesced.
+     * @throws InterruptedException If interrupted while throttled or waiting for queue space. Tasks not yet
+     * queued are removed from the state map.
+     */
+    public List<Task> submitAll(Collection<Task> submitted) throws InterruptedException {
+        Collection<Task> tasks = coalesce(submitted);
+        if (tasks.isEmpty()) {
+            return List.of();
+        }
+        try {
+            admission.admitAll(tasks);
+        } catch (InterruptedException e) {
+            for (Task task : tasks) {
+                TaskHandle handle = handles.remove(task.getId());
+                if (handle != null) {
+                    idempotency.settled(task.getIdempotencyKey(), handle, null);
+                }
+            }
+            throw e;
+        }
+        taskStates.markSubmitted(tasks);
+        for (Task task : tasks) {
+            task.markEnqueued();
+        }
+        List<Task> rejected = new ArrayList<>();
+        try {
+            if (rejectionPolicy == RejectionPolicy.BLOCK && submitTimeoutMillis <= 0) {
+                taskQueue.putAll(tasks);
+            } else {
+                for (Task task : tasks) {
+                    if (!enqueue(task)) {
+                        reject(task);
+                        rejected.add(task);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            for (Task task : tasks) {
+                if (!taskQueue.contains(task)) {
+                    taskStates.remove(task.getId(), TaskStatus.SUBMITTED);
+                }
+            }
+            throw e;
+        }
+        return rejected;
     }
 
     /**
      * Starts a task producer thread.
-     * @param producerName The name of the producer.
+     * @param producerName The name of the producer, which is also the tenant its tasks are submitted as.
      * @param tasksToGenerate The total number of tasks this producer will generate.
      * @param generationIntervalMillis The delay between generating each task.
      */
     public void startProducer(String producerName, int tasksToGenerate, long generationIntervalMillis) {
+        startProducer(producerName, tasksToGenerate, generationIntervalMillis, 1);
+    }
+
+    /**
+     * Starts a task producer thread that submits in bursts.
+     * @param producerName The name of the producer, which is also the tenant its tasks are submitted as.
+     * @param tasksToGenerate The total number of tasks this producer will generate.
+     * @param generationIntervalMillis The delay between bursts.
+     * @param submitBatchSize How many tasks each burst submits with a single putAll.
+     */
+    public void startProducer(String producerName, int tasksToGenerate, long generationIntervalMillis, int submitBatchSize) {
         TaskLogger.log("Starting producer: " + producerName);
-        new Thread(new TaskProducer(taskQueue, taskStates, producerName, tasksToGenerate, generationIntervalMillis), producerName).start();
+        TaskProducer producer = new TaskProducer(taskQueue, taskStates, producerName, tasksToGenerate,
+                generationIntervalMillis, submitTimeoutMillis, submitBatchSize, admission);
+        new Thread(producer, producerName).start();
+    }
+
+    /**
+     * Starts a paced producer thread that follows an arrival schedule, for load tests.
+     * @param producerName The name of the producer, which is also the tenant its tasks are submitted as.
+     * @param tasksToGenerate The total number of tasks this producer will generate.
+     * @param arrivalGapsNanos Supplies the gap before each task after the first, in nanoseconds.
+     * @param random Draws the tasks' priorities and resources; seed it for a repeatable workload.
+     * @return The started producer thread, so the caller can wait for it or interrupt it.
+     */
+    public Thread startProducer(String producerName, int tasksToGenerate, LongSupplier arrivalGapsNanos, Random random) {
+        TaskLogger.log("Starting paced producer: " + producerName);
+        TaskProducer producer = new TaskProducer(taskQueue, taskStates, producerName, tasksToGenerate,
+                arrivalGapsNanos, random, submitTimeoutMillis, admission);
+        Thread thread = new Thread(producer, producerName);
+        thread.start();
+        return thread;
     }
 
     /**
      * Initiates a graceful shutdown of the system.
      * It first shuts down the worker pool, then attempts to drain remaining tasks
      * from the queue, and finally logs the shutdown status.
+     * With a spill file configured, the tasks still queued, waiting for a retry or interrupted mid-processing
+     * are saved to it for the next start instead of being dropped. Dropped tasks are marked CANCELLED unless
+     * the write-ahead log keeps them, and every handle still outstanding completes as cancelled, so no caller
+     * waits on a task that will not run in this process.
      */
     public void shutdown() {
         TaskLogger.log("Initiating graceful shutdown...");
 
+        Thread spillLoader = spillLoaderThread;
+        if (spillLoader != null) {
+            spillLoader.interrupt();
+            try {
+                spillLoader.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        Thread scaler = autoscalerThread;
+        if (scaler != null) {
+            scaler.interrupt();
+            try {
+                scaler.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        Thread loop = dispatchLoopThread;
+        if (loop != null) {
+            loop.interrupt();
+            try {
+                loop.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
 
         workerPool.shutdown();
         try {
@@ -96,17 +904,171 @@ public class TaskDispatcher {
             Thread.currentThread().interrupt();
         }
 
+        awaitAsyncHandlers();
+        stopGraphReleases();
+
+        List<Task> pendingRetries = retryScheduler.shutdown();
+        if (spillFile != null) {
+            spill(pendingRetries);
+        } else if (!pendingRetries.isEmpty()) {
+            TaskLogger.logWarning("Abandoning " + pendingRetries.size() + " tasks still waiting for a retry:");
+            for (Task task : pendingRetries) {
+                TaskLogger.log("Task " + task.getShortId() + " was waiting to retry (attempt " + (task.getRetryCount() + 1) + ")");
+                dropped(task);
+            }
+        }
 
         if (!taskQueue.isEmpty()) {
             TaskLogger.logWarning("Draining " + taskQueue.size() + " remaining tasks from the queue...");
             taskQueue.forEach(task -> {
-                TaskLogger.log("Task " + task.getId().toString().substring(0,8) + " was still in queue (Status: " + taskStates.get(task.getId()) + ")");
-
+                TaskLogger.log("Task " + task.getShortId() + " was still in queue (Status: " + taskStates.get(task.getId()) + ")");
+                dropped(task);
             });
             taskQueue.clear();
         }
+        for (Task task; (task = unfinished.poll()) != null; ) {
+            TaskLogger.log("Task " + task.getShortId() + " was interrupted mid-processing and is dropped.");
+            dropped(task);
+        }
+        abandonHandles();
+
+        if (writeAheadLog != null) {
+            try {
+                writeAheadLog.close();
+                if (writeAheadLog.getLiveTaskCount() > 0) {
+                    TaskLogger.log(writeAheadLog.getLiveTaskCount() + " unfinished tasks remain in the write-ahead log and will be recovered on the next start.");
+                }
+            } catch (IOException e) {
+                TaskLogger.logError("Failed to close the write-ahead log: " + e);
+            }
+        }
 
         TaskLogger.log("ConcurQueue system shut down successfully.");
+        if (ownsAsyncLog) {
+            TaskLogger.stopAsync();
+        }
+    }
+
+    /**
+     * Marks a task the shutdown drops as CANCELLED, which also settles its handle, unless the write-ahead log
+     * keeps it for the next start.
+     */
+    private void dropped(Task task) {
+        if (writeAheadLog != null) {
+            return;
+        }
+        TaskStatus status = taskStates.get(task.getId());
+        if (status != null && !status.isTerminal()) {
+            taskStates.replace(task.getId(), status, TaskStatus.CANCELLED);
+        }
+    }
+
+    /**
+     * Completes every handle whose task has not settled as cancelled: spilled tasks and tasks kept in the
+     * write-ahead log run only after the next start, by which time no caller in this process can observe them.
+     */
+    private void abandonHandles() {
+        String fate = spillFile != null ? "was spilled at shutdown before it finished"
+                : writeAheadLog != null ? "is kept in the write-ahead log for the next start"
+                : "was dropped at shutdown";
+        for (TaskHandle handle : handles.values()) {
+            if (handles.remove(handle.getTaskId(), handle)) {
+                handle.abandon(fate);
+            }
+        }
+    }
+
+    /**
+     * Lets releases already triggered by finished parents reach the queue, so they are drained or spilled
+     * with it, then stops releasing. Tasks still held by unfinished graphs are dropped.
+     */
+    private void stopGraphReleases() {
+        graphReleaser.shutdown();
+        try {
+            if (!graphReleaser.awaitTermination(5, TimeUnit.SECONDS)) {
+                graphReleaser.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            graphReleaser.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        int held = 0;
+        for (TaskGraphHandle graph : activeGraphs) {
+            held += graph.getHeldCount();
+        }
+        if (held > 0) {
+            TaskLogger.logWarning(activeGraphs.size() + " task graphs did not finish; " + held +
+                    " tasks waiting for their dependencies are dropped.");
+        }
+    }
+
+    /**
+     * Writes every task that has not run to the spill file, oldest first: those waiting for a retry, those still
+     * queued, those interrupted mid-processing and any the previous run's spill had not yet loaded. Cancelled
+     * tasks are left out.
+     */
+    private void spill(List<Task> pendingRetries) {
+        List<Task> spilled = new ArrayList<>(pendingRetries);
+        int queued = taskQueue.drainTo(spilled);
+        int interrupted = 0;
+        for (Task task; (task = unfinished.poll()) != null; interrupted++) {
+            spilled.add(task);
+        }
+        int unloaded = 0;
+        if (spillReader != null) {
+            try {
+                for (Task task; (task = spillReader.next()) != null; unloaded++) {
+                    spilled.add(task);
+                }
+                spillReader.close();
+            } catch (IOException e) {
+                TaskLogger.logError("Failed to read the rest of the previous spill; it is kept for the next start: " + e);
+                return;
+            }
+        }
+        spilled.removeIf(Task::isCancelled);
+        // Restored tasks take fresh sequence numbers, so creation time orders tasks across runs.
+        spilled.sort(Comparator.comparing(Task::getCreatedTimestamp).thenComparingLong(Task::getSequence));
+        try {
+            long bytes = spillFile.write(spilled);
+            if (!spilled.isEmpty()) {
+                TaskLogger.log("Spilled " + spilled.size() + " unfinished tasks (" + queued + " queued, " +
+                        pendingRetries.size() + " waiting to retry, " + interrupted + " interrupted, " + unloaded +
+                        " not yet loaded) to " + spillFile.getPath() + " in " + bytes + " bytes.");
+            }
+        } catch (IOException e) {
+            TaskLogger.logError("Failed to write spill file " + spillFile.getPath() + "; " + spilled.size() +
+                    " unfinished tasks are lost: " + e);
+        }
+    }
+
+    /**
+     * Waits for tasks still outstanding in async handlers, so their outcomes are recorded before the
+     * retry scheduler and write-ahead log close.
+     */
+    private void awaitAsyncHandlers() {
+        int awaiting = workerStats.getAwaitingCount();
+        if (awaiting == 0) {
+            return;
+        }
+        TaskLogger.log("Waiting for " + awaiting + " tasks outstanding in async handlers...");
+        try {
+            if (asyncPermits.tryAcquire(maxAsyncInFlight, 30, TimeUnit.SECONDS)) {
+                asyncPermits.release(maxAsyncInFlight);
+            } else {
+                TaskLogger.logWarning(workerStats.getAwaitingCount() + " async tasks did not finish in 30 seconds; abandoning them.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the deadlock and stall watchdog, for the monitor to run each tick.
+     * @return The WorkerWatchdog, or null if it is disabled.
+     */
+    public WorkerWatchdog getWatchdog() {
+        return watchdog;
     }
 
     /**
@@ -126,18 +1088,91 @@ public class TaskDispatcher {
     }
 
     /**
-     * Gets the concurrent map tracking task states.
-     * @return The ConcurrentHashMap of task UUIDs to TaskStatus.
+     * Gets the worker activity counters, valid in every execution mode.
+     * @return The WorkerStats shared by all workers.
+     */
+    public WorkerStats getWorkerStats() {
+        return workerStats;
+    }
+
+    /**
+     * Gets the scheduler holding failed tasks for their backoff delay.
+     * @return The RetryScheduler.
+     */
+    public RetryScheduler getRetryScheduler() {
+        return retryScheduler;
+    }
+
+    /**
+     * Gets the tasks that exhausted their retries.
+     * @return The DeadLetterStore.
+     */
+    public DeadLetterStore getDeadLetterStore() {
+        return retryScheduler.getDeadLetterStore();
+    }
+
+    /**
+     * Gets the queue-wait, service and end-to-end latency histograms recorded by the workers.
+     * @return The shared TaskLatencyTracker.
+     */
+    public TaskLatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
+
+    /**
+     * Gets the store tracking task states. Completed and failed tasks are evicted after the configured TTL or cap;
+     * use {@link TaskStateStore#setEvictionSink} to hand them off elsewhere.
+     * @return The store of task statuses.
      */
-    public ConcurrentHashMap<UUID, TaskStatus> getTaskStates() {
+    public TaskStateStore getTaskStates() {
         return taskStates;
     }
 
     /**
-     * Gets the atomic integer tracking the total processed task count.
-     * @return The AtomicInteger processed task count.
+     * Gets how many submission handles are waiting for their task to finish.
+     * @return The number of outstanding handles.
+     */
+    public int getPendingHandleCount() {
+        return handles.size();
+    }
+
+    /**
+     * Gets the index of idempotency keys held by outstanding and recently completed tasks.
+     * @return The IdempotencyIndex.
+     */
+    public IdempotencyIndex getIdempotencyIndex() {
+        return idempotency;
+    }
+
+    /**
+     * Gets the per-tenant admission limits and counters.
+     * @return The TenantAdmission every submission passes through.
+     */
+    public TenantAdmission getTenantAdmission() {
+        return admission;
+    }
+
+    /**
+     * Gets the off-heap payload arena, if one is configured.
+     * @return The PayloadArena, or null when payloads stay on the heap.
+     */
+    public PayloadArena getPayloadArena() {
+        return payloadArena;
+    }
+
+    /**
+     * Gets the write-ahead log, if one is configured.
+     * @return The TaskWriteAheadLog, or null when durability is disabled.
+     */
+    public TaskWriteAheadLog getWriteAheadLog() {
+        return writeAheadLog;
+    }
+
+    /**
+     * Gets the total number of tasks completed successfully, read from the striped status counters.
+     * @return The processed task count.
      */
-    public AtomicInteger getProcessedTaskCount() {
-        return processedTaskCount;
+    public long getProcessedTaskCount() {
+        return taskStates.getCounters().getProcessedCount();
     }
 }
@@ -0,0 +1,367 @@
+package com.moadams.service;
+
+import com.moadams.enums.TaskStatus;
+import com.moadams.model.Task;
+import com.moadams.model.TaskGraph;
+import com.moadams.util.TaskLogger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TaskGraphHandle is the future returned by {@link TaskDispatcher#submitGraph}, and tracks the graph while it
+ * runs. Roots are submitted at once; every other task is held outside the queue until its last parent
+ * completes, and is then submitted from the dispatcher's release thread, so a worker never blocks on a full
+ * queue while releasing dependents. Each task goes through {@link TaskDispatcher#submit}, so idempotency
+ * keys, tenant admission and the write-ahead log apply as usual.
+ *
+ * <p>A task that ends other than COMPLETED (retries exhausted, expired, cancelled or withdrawn) can never
+ * satisfy its dependents: every task downstream of it is skipped without running and marked CANCELLED in the
+ * state store, while independent branches carry on. The handle completes once every task has finished or
+ * been skipped: with COMPLETED if all completed, FAILED if any failed or expired, and as cancelled
+ * otherwise.</p>
+ *
+ * <p>Each task's release, start and finish times are kept, so when the graph finishes its critical path can
+ * be read back: from the task that finished last, each step goes to the parent whose completion released it.
+ * The path, with each task's queue wait and run time and the release delay on each edge, is logged.</p>
+ */
+public class TaskGraphHandle extends CompletableFuture<TaskStatus> {
+    private final TaskDispatcher dispatcher;
+    private final TaskGraph graph;
+    private final Executor releaser;
+    private final Map<Task, Node> nodes = new HashMap<>();
+    private final AtomicInteger settledCount = new AtomicInteger();
+    private final AtomicInteger completedCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+    private final AtomicInteger skippedCount = new AtomicInteger();
+    private final long submittedNanos = System.nanoTime();
+    private volatile boolean cancelled;
+    private volatile long finishedNanos;
+    private volatile List<Task> criticalPath = List.of();
+
+    /**
+     * The run-time state of one task in the graph.
+     */
+    private static final class Node {
+        final Task task;
+        final AtomicInteger pendingParents;
+        final AtomicBoolean settled = new AtomicBoolean();
+        final List<Node> children = new ArrayList<>();
+        volatile TaskHandle handle;
+        volatile TaskStatus outcome;
+        volatile Node releasedBy;
+        volatile long releasedNanos;
+        volatile long finishedNanos;
+
+        Node(Task task, int parents) {
+            this.task = task;
+            this.pendingParents = new AtomicInteger(parents);
+        }
+    }
+
+    TaskGraphHandle(TaskDispatcher dispatcher, TaskGraph graph, Executor releaser) {
+        this.dispatcher = dispatcher;
+        this.graph = graph;
+        this.releaser = releaser;
+        for (Task task : graph.getTasks()) {
+            nodes.put(task, new Node(task, graph.getParents(task).size()));
+        }
+        for (Task task : graph.getTasks()) {
+            for (Task child : graph.getChildren(task)) {
+                nodes.get(task).children.add(nodes.get(child));
+            }
+        }
+    }
+
+    /**
+     * Submits the graph's roots.
+     * @throws InterruptedException If interrupted while a root waits for queue space; the graph is then cancelled.
+     */
+    void start() throws InterruptedException {
+        for (Task task : graph.getTasks()) {
+            Node node = nodes.get(task);
+            if (node.pendingParents.get() == 0) {
+                try {
+                    release(node, null);
+                } catch (InterruptedException e) {
+                    cancel(false);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void release(Node node, Node releasedBy) throws InterruptedException {
+        if (cancelled) {
+            skip(node, "the graph was cancelled");
+            return;
+        }
+        node.releasedBy = releasedBy;
+        node.releasedNanos = System.nanoTime();
+        TaskHandle handle = dispatcher.submit(node.task);
+        node.handle = handle;
+        handle.whenComplete((status, error) -> settle(node, outcomeOf(status, error)));
+        if (cancelled) {
+            handle.cancel(false);
+        }
+    }
+
+    private static TaskStatus outcomeOf(TaskStatus status, Throwable error) {
+        if (error == null) {
+            return status;
+        }
+        if (error instanceof CancellationException) {
+            return TaskStatus.CANCELLED;
+        }
+        return error instanceof TimeoutException ? TaskStatus.EXPIRED : TaskStatus.FAILED;
+    }
+
+    /**
+     * Records a task's outcome, then releases its children whose last parent it was or skips its descendants.
+     */
+    private void settle(Node node, TaskStatus outcome) {
+        if (!node.settled.compareAndSet(false, true)) {
+            return;
+        }
+        node.finishedNanos = System.nanoTime();
+        node.outcome = outcome;
+        if (outcome == TaskStatus.COMPLETED) {
+            completedCount.incrementAndGet();
+            for (Node child : node.children) {
+                if (child.pendingParents.decrementAndGet() == 0) {
+                    try {
+                        releaser.execute(() -> {
+                            try {
+                                release(child, node);
+                            } catch (InterruptedException e) {
+                                skipSubtree(child, "the dispatcher shut down before it was released");
+                                Thread.currentThread().interrupt();
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        skipSubtree(child, "the dispatcher shut down before it was released");
+                    }
+                }
+            }
+        } else {
+            if (outcome != TaskStatus.CANCELLED) {
+                failedCount.incrementAndGet();
+            }
+            int skipped = skipDescendants(node, node.task.getName() + " ended " + outcome);
+            if (skipped > 0) {
+                TaskLogger.logWarning("Graph " + graph.getName() + ": " + node.task + " ended " + outcome +
+                        "; skipped " + skipped + " dependent tasks.");
+            }
+        }
+        settled();
+    }
+
+    /**
+     * Skips a task that could not be released and everything downstream of it, so the graph still settles.
+     */
+    private void skipSubtree(Node node, String reason) {
+        if (skip(node, reason)) {
+            skipDescendants(node, node.task.getName() + " was skipped");
+        }
+    }
+
+    private int skipDescendants(Node node, String reason) {
+        int skipped = 0;
+        Deque<Node> pending = new ArrayDeque<>(node.children);
+        while (!pending.isEmpty()) {
+            Node descendant = pending.poll();
+            if (skip(descendant, reason)) {
+                skipped++;
+                pending.addAll(descendant.children);
+            }
+        }
+        return skipped;
+    }
+
+    /**
+     * Settles a held task as CANCELLED without running it.
+     * @return false if it had already settled.
+     */
+    private boolean skip(Node node, String reason) {
+        if (node.handle != null || !node.settled.compareAndSet(false, true)) {
+            return false;
+        }
+        node.finishedNanos = System.nanoTime();
+        node.outcome = TaskStatus.CANCELLED;
+        skippedCount.incrementAndGet();
+        dispatcher.getTaskStates().put(node.task.getId(), TaskStatus.CANCELLED);
+        TaskLogger.log("Graph " + graph.getName() + ": skipped " + node.task + " because " + reason + ".");
+        settled();
+        return true;
+    }
+
+    private void settled() {
+        if (settledCount.incrementAndGet() < nodes.size()) {
+            return;
+        }
+        finishedNanos = System.nanoTime();
+        criticalPath = traceCriticalPath();
+        TaskStatus outcome = failedCount.get() > 0 ? TaskStatus.FAILED
+                : completedCount.get() == nodes.size() ? TaskStatus.COMPLETED : TaskStatus.CANCELLED;
+        TaskLogger.log("Graph " + graph.getName() + " " + outcome + ": " + completedCount.get() + "/" + nodes.size() +
+                " tasks completed, " + failedCount.get() + " failed, " + skippedCount.get() + " skipped in " +
+                millis(finishedNanos - submittedNanos) + "ms; critical path " + describeCriticalPath() + ".");
+        dispatcher.graphFinished(this);
+        if (outcome == TaskStatus.CANCELLED) {
+            super.cancel(false);
+        } else {
+            complete(outcome);
+        }
+    }
+
+    /**
+     * Walks back from the task that finished last through the parents that released each task.
+     */
+    private List<Task> traceCriticalPath() {
+        Node last = null;
+        for (Node node : nodes.values()) {
+            if (node.handle != null && (last == null || node.finishedNanos - last.finishedNanos > 0)) {
+                last = node;
+            }
+        }
+        List<Task> path = new ArrayList<>();
+        for (Node node = last; node != null; node = node.releasedBy) {
+            path.add(node.task);
+        }
+        Collections.reverse(path);
+        return List.copyOf(path);
+    }
+
+    /**
+     * @return The critical path as "task [queued Xms, ran Yms] -> +Zms task [...]", where Z is the delay
+     * between a parent finishing and its child being queued.
+     */
+    public String describeCriticalPath() {
+        StringBuilder sb = new StringBuilder();
+        Node previous = null;
+        for (Task task : criticalPath) {
+            Node node = nodes.get(task);
+            if (previous != null) {
+                sb.append(" -> +").append(millis(node.releasedNanos - previous.finishedNanos)).append("ms ");
+            }
+            long taken = node.handle.getTask().getTakenNanos();
+            if (taken - node.releasedNanos > 0) {
+                sb.append(task.getName()).append(" [queued ").append(millis(taken - node.releasedNanos))
+                        .append("ms, ran ").append(millis(node.finishedNanos - taken)).append("ms]");
+            } else {
+                sb.append(task.getName()).append(" [").append(millis(node.finishedNanos - node.releasedNanos)).append("ms]");
+            }
+            previous = node;
+        }
+        return sb.length() == 0 ? "(none)" : sb.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1e6);
+    }
+
+    /**
+     * Cancels the graph: submitted tasks are cancelled and every other task, held or a root never submitted,
+     * is skipped.
+     * @param mayInterruptIfRunning Whether workers running the graph's tasks are interrupted.
+     * @return true if the graph had not finished.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (isDone()) {
+            return false;
+        }
+        cancelled = true;
+        for (Node node : nodes.values()) {
+            TaskHandle handle = node.handle;
+            if (handle != null) {
+                handle.cancel(mayInterruptIfRunning);
+            } else {
+                skip(node, "the graph was cancelled");
+            }
+        }
+        return true;
+    }
+
+    public TaskGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return PROCESSING while tasks are outstanding, then the graph's outcome.
+     */
+    public TaskStatus getStatus() {
+        if (!isDone()) {
+            return TaskStatus.PROCESSING;
+        }
+        return isCancelled() ? TaskStatus.CANCELLED : join();
+    }
+
+    /**
+     * @param task A task in the graph.
+     * @return Its outcome; its current status in the state store while submitted; or null while it is held.
+     */
+    public TaskStatus getTaskStatus(Task task) {
+        Node node = nodes.get(task);
+        if (node == null) {
+            throw new IllegalArgumentException(task + " is not in graph " + graph.getName());
+        }
+        if (node.outcome != null) {
+            return node.outcome;
+        }
+        TaskHandle handle = node.handle;
+        return handle == null ? null : dispatcher.getTaskStates().get(handle.getTaskId());
+    }
+
+    /**
+     * @return How many tasks are held waiting for their parents.
+     */
+    public int getHeldCount() {
+        int held = 0;
+        for (Node node : nodes.values()) {
+            if (node.handle == null && node.outcome == null) {
+                held++;
+            }
+        }
+        return held;
+    }
+
+    public int getCompletedCount() {
+        return completedCount.get();
+    }
+
+    public int getFailedCount() {
+        return failedCount.get();
+    }
+
+    public int getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    /**
+     * @return The time from submission until the last task finished, or until now while the graph runs.
+     */
+    public long getElapsedNanos() {
+        return (isDone() ? finishedNanos : System.nanoTime()) - submittedNanos;
+    }
+
+    /**
+     * @return The chain of tasks that determined when the graph finished; empty until it does.
+     */
+    public List<Task> getCriticalPath() {
+        return criticalPath;
+    }
+}
@@ -0,0 +1,78 @@
+package com.moadams.service;
+
+import com.moadams.enums.TaskStatus;
+import com.moadams.model.Task;
+
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * TaskHandle is the future returned by {@link TaskDispatcher#submit}. It completes when the task reaches a
+ * terminal status: with COMPLETED or FAILED (retries exhausted or evicted from a full queue), as cancelled
+ * when the task is cancelled or the dispatcher shuts down before it finishes, and exceptionally with a
+ * TimeoutException when the task's deadline passed before a worker could start it, or with a
+ * RejectedExecutionException when the full queue rejected it under a FAIL_FAST, DROP_LOWEST_PRIORITY or timed
+ * BLOCK policy.
+ *
+ * <p>Cancelling the handle cancels the task. A queued task is only flagged, so cancelling costs O(1) however
+ * long the queue is; the worker that later takes it discards it, and it keeps its queue slot until then.</p>
+ */
+public class TaskHandle extends CompletableFuture<TaskStatus> {
+    private final TaskDispatcher dispatcher;
+    private final Task task;
+
+    TaskHandle(TaskDispatcher dispatcher, Task task) {
+        this.dispatcher = dispatcher;
+        this.task = task;
+    }
+
+    public Task getTask() {
+        return task;
+    }
+
+    public UUID getTaskId() {
+        return task.getId();
+    }
+
+    /**
+     * Cancels the task.
+     * @param mayInterruptIfRunning Whether a worker already running the task is interrupted; if false,
+     * a running task is left to finish.
+     * @return true if the cancellation reached the task before it finished.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return dispatcher.cancel(task, mayInterruptIfRunning);
+    }
+
+    /**
+     * Completes the handle as cancelled because the dispatcher shut down before the task finished.
+     * @param fate What became of the task, e.g. "was dropped at shutdown".
+     */
+    void abandon(String fate) {
+        completeExceptionally(new CancellationException("Task " + task.getShortId() + " " + fate));
+    }
+
+    /**
+     * Completes the handle from the task's terminal status, or exceptionally if the task stopped being tracked.
+     * @param status The terminal status, or null if the task was removed from the state store.
+     */
+    void settle(TaskStatus status) {
+        if (status == null) {
+            completeExceptionally(new IllegalStateException("Task " + task.getShortId() + " was withdrawn before it finished"));
+            return;
+        }
+        switch (status) {
+            case CANCELLED:
+                super.cancel(false);
+                break;
+            case EXPIRED:
+                completeExceptionally(new TimeoutException("Task " + task.getShortId() + " expired before it could start"));
+                break;
+            default:
+                complete(status);
+        }
+    }
+}
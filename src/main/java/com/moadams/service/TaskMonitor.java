@@ -1,40 +1,93 @@
 package com.moadams.service;
 
+import com.moadams.consumer.WorkerStats;
+import com.moadams.enums.LatencySpan;
+import com.moadams.metrics.HistogramSnapshot;
+import com.moadams.metrics.TaskLatencyTracker;
 import com.moadams.model.Task;
 import com.moadams.enums.TaskStatus;
+import com.moadams.queue.WorkStealingTaskQueue;
+import com.moadams.state.TaskStateStore;
 import com.moadams.util.JsonExporter;
+import com.moadams.util.StatusJournal;
 import com.moadams.util.TaskLogger;
 
+import java.io.IOException;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * TaskMonitor periodically logs system metrics like queue size, worker pool status,
  * and processed task count. It can also detect stalled tasks and export task status to JSON.
+ * Exports are incremental: each tick appends the transitions since the previous tick to a journal,
+ * and every 15 seconds the journal is compacted into a full snapshot at the export path.
+ * Given the dispatcher's TenantAdmission, it also logs each tenant's queued, admitted and throttled tasks.
+ * Given the dispatcher's WorkerWatchdog, it runs its deadlock and stuck-worker check every tick.
  */
 public class TaskMonitor implements Runnable {
     private final BlockingQueue<Task> taskQueue;
-    private final ExecutorService workerPool;
-    private final ConcurrentHashMap<UUID, TaskStatus> taskStates;
-    private final AtomicInteger processedTaskCount;
+    private final WorkerStats workerStats;
+    private final TaskLatencyTracker latencyTracker;
+    private final TaskStateStore taskStates;
     private final long monitorIntervalMillis;
     private final String exportFilePath;
+    private final StatusJournal statusJournal;
+    private final TenantAdmission tenantAdmission;
+    private final WorkerWatchdog watchdog;
 
-    public TaskMonitor(BlockingQueue<Task> taskQueue, ExecutorService workerPool, ConcurrentHashMap<UUID, TaskStatus> taskStates, AtomicInteger processedTaskCount, long monitorIntervalMillis, String exportFilePath) {
+    /**
+     * Constructs a TaskMonitor.
+     * @param latencyTracker The latency histograms to report and reset each tick, or null to skip latency reporting.
+     * @param exportFilePath The snapshot file to export to, or null to disable exporting. Transitions between
+     * snapshots are journaled next to it (see {@link StatusJournal#journalPathFor}).
+     */
+    public TaskMonitor(BlockingQueue<Task> taskQueue, WorkerStats workerStats, TaskLatencyTracker latencyTracker, TaskStateStore taskStates, long monitorIntervalMillis, String exportFilePath) {
+        this(taskQueue, workerStats, latencyTracker, taskStates, monitorIntervalMillis, exportFilePath, null);
+    }
+
+    /**
+     * Constructs a TaskMonitor that also reports per-tenant counts.
+     * @param latencyTracker The latency histograms to report and reset each tick, or null to skip latency reporting.
+     * @param exportFilePath The snapshot file to export to, or null to disable exporting.
+     * @param tenantAdmission The admission counters to report per tenant, or null to skip tenant reporting.
+     */
+    public TaskMonitor(BlockingQueue<Task> taskQueue, WorkerStats workerStats, TaskLatencyTracker latencyTracker, TaskStateStore taskStates, long monitorIntervalMillis, String exportFilePath, TenantAdmission tenantAdmission) {
+        this(taskQueue, workerStats, latencyTracker, taskStates, monitorIntervalMillis, exportFilePath, tenantAdmission, null);
+    }
+
+    /**
+     * Constructs a TaskMonitor that also reports per-tenant counts and runs the worker watchdog.
+     * @param latencyTracker The latency histograms to report and reset each tick, or null to skip latency reporting.
+     * @param exportFilePath The snapshot file to export to, or null to disable exporting.
+     * @param tenantAdmission The admission counters to report per tenant, or null to skip tenant reporting.
+     * @param watchdog The watchdog to run each tick, or null to rely on the queue-based stall check alone.
+     */
+    public TaskMonitor(BlockingQueue<Task> taskQueue, WorkerStats workerStats, TaskLatencyTracker latencyTracker, TaskStateStore taskStates, long monitorIntervalMillis, String exportFilePath, TenantAdmission tenantAdmission, WorkerWatchdog watchdog) {
+        this.tenantAdmission = tenantAdmission;
+        this.watchdog = watchdog;
         this.taskQueue = taskQueue;
-        this.workerPool = workerPool;
+        this.workerStats = workerStats;
+        this.latencyTracker = latencyTracker;
         this.taskStates = taskStates;
-        this.processedTaskCount = processedTaskCount;
         this.monitorIntervalMillis = monitorIntervalMillis;
         this.exportFilePath = exportFilePath;
+        this.statusJournal = exportFilePath == null ? null : openJournal(exportFilePath);
+        if (statusJournal != null) {
+            taskStates.addTransitionListener(statusJournal);
+        }
     }
 
-
+    private static StatusJournal openJournal(String exportFilePath) {
+        try {
+            return new StatusJournal(exportFilePath);
+        } catch (IOException e) {
+            TaskLogger.logError("Could not open status journal for " + exportFilePath + ", falling back to full exports: " + e.getMessage());
+            return null;
+        }
+    }
 
     @Override
     public void run() {
@@ -45,30 +98,39 @@ public class TaskMonitor implements Runnable {
         try{
             while(!Thread.currentThread().isInterrupted()){
                 Thread.sleep(monitorIntervalMillis);
+                taskStates.evictExpired();
                 int queueSize = taskQueue.size();
-                int activeWorkers = 0;
-                int completedWorkers = 0;
-                int totalWorkers = 0;
-
-                if(workerPool instanceof ThreadPoolExecutor){
-                    ThreadPoolExecutor tpe = (ThreadPoolExecutor) workerPool;
-                    activeWorkers = tpe.getActiveCount();
-                    completedWorkers = (int) tpe.getCompletedTaskCount();
-                    totalWorkers = tpe.getPoolSize();
-                }
+                int activeWorkers = workerStats.getActiveCount();
+                int inFlightTasks = workerStats.getInFlightCount();
+                long completedAttempts = workerStats.getCompletedCount();
+                int totalWorkers = workerStats.getConcurrencyLimit();
 
                 TaskLogger.log("MONITOR - Queue Size: " + queueSize +
                         " | Active Workers: " + activeWorkers + "/" + totalWorkers +
-                        " | Processed Tasks (Total): " + processedTaskCount.get() +
-                        " | Task Statuses: " + getStatusSummary());
+                        " | In-Flight: " + inFlightTasks + getAwaitingSummary() +
+                        " | Attempts Finished: " + completedAttempts +
+                        " | Processed Tasks (Total): " + taskStates.getCounters().getProcessedCount() +
+                        " | Task Statuses: " + getStatusSummary() +
+                        " | Evicted: " + taskStates.getEvictedCount() +
+                        getShardSummary());
 
+                logLatencies();
+                logTenants();
                 detectStalledTasks();
+                if (watchdog != null) {
+                    watchdog.check();
+                }
 
                 if(exportFilePath != null && !taskStates.isEmpty()) {
                     long currentTime = System.currentTimeMillis();
+                    boolean snapshotDue = currentTime - lastExportTime >= 15000 || exportCount == 0;
 
-                    if(currentTime - lastExportTime >= 15000 || (exportCount == 0 && taskStates.size() > 0)){
-                        JsonExporter.exportTaskStatuses(taskStates, exportFilePath);
+                    if (statusJournal != null) {
+                        exportIncrementally(snapshotDue);
+                    } else if (snapshotDue) {
+                        JsonExporter.exportTaskStatuses(taskStates.view(), exportFilePath);
+                    }
+                    if (snapshotDue) {
                         lastExportTime = currentTime;
                         exportCount++;
                         TaskLogger.log("MONITOR - Exported task statuses to " + exportFilePath + " (Export #" + exportCount + ")");
@@ -78,32 +140,131 @@ public class TaskMonitor implements Runnable {
         } catch (InterruptedException e) {
             TaskLogger.log("TaskMonitor interrupted and shutting down");
             Thread.currentThread().interrupt();
+        } finally {
+            closeJournal();
         }
         TaskLogger.log("TaskMonitor stopped");
     }
 
-    private String getStatusSummary(){
-        Map<TaskStatus, Long> statusCounts = new ConcurrentHashMap<>();
-        for (TaskStatus status : taskStates.values()) {
-            statusCounts.put(status, 0L);
+    private void exportIncrementally(boolean snapshotDue) {
+        try {
+            if (snapshotDue) {
+                statusJournal.writeSnapshot(taskStates.view());
+            } else {
+                statusJournal.flush();
+            }
+        } catch (IOException e) {
+            TaskLogger.logError("MONITOR - Failed to write status journal: " + e.getMessage());
         }
-        taskStates.values().forEach(status -> statusCounts.merge(status, 1L, Long::sum));
+    }
 
-        StringBuilder sb = new StringBuilder();
-        statusCounts.forEach((status, count) -> {
-            if(count > 0){
-                sb.append(status.name()).append(":").append(count).append(" ");
+    private void closeJournal() {
+        if (statusJournal == null) {
+            return;
+        }
+        taskStates.removeTransitionListener(statusJournal);
+        // FileChannel closes itself if used by an interrupted thread, so clear the flag for the final flush.
+        boolean interrupted = Thread.interrupted();
+        try {
+            statusJournal.close();
+        } catch (IOException e) {
+            TaskLogger.logError("MONITOR - Failed to close status journal: " + e);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Builds the per-status task count line printed on each monitor tick from the store's
+     * transition counters, in constant time regardless of how many tasks are tracked.
+     * @return A summary such as "SUBMITTED:3 PROCESSING:2 COMPLETED:10".
+     */
+    public String getStatusSummary(){
+        return taskStates.getCounters().summary();
+    }
+
+    /**
+     * Logs p50/p99/p999/max for each latency span over the interval since the previous tick,
+     * across all tasks and per priority, then starts a new interval.
+     */
+    private void logLatencies(){
+        if (latencyTracker == null) {
+            return;
+        }
+        Map<LatencySpan, Map<Integer, Map<TaskStatus, HistogramSnapshot>>> snapshots = latencyTracker.intervalSnapshot();
+        snapshots.forEach((span, byPriority) -> {
+            HistogramSnapshot all = HistogramSnapshot.empty();
+            long failed = 0;
+            StringBuilder perPriority = new StringBuilder();
+            for (Map.Entry<Integer, Map<TaskStatus, HistogramSnapshot>> entry : byPriority.entrySet()) {
+                HistogramSnapshot completedSnapshot = entry.getValue().get(TaskStatus.COMPLETED);
+                HistogramSnapshot failedSnapshot = entry.getValue().get(TaskStatus.FAILED);
+                HistogramSnapshot priority = completedSnapshot.merge(failedSnapshot);
+                if (priority.getTotalCount() == 0) {
+                    continue;
+                }
+                all = all.merge(priority);
+                failed += failedSnapshot.getTotalCount();
+                perPriority.append(" | P").append(entry.getKey()).append(' ').append(priority.format());
+            }
+            if (all.getTotalCount() > 0) {
+                TaskLogger.log("MONITOR - Latency " + span + " (p50/p99/p999/max): all " + all.format() +
+                        " failed=" + failed + perPriority);
             }
         });
-        return sb.toString().trim();
+    }
+
+    /**
+     * Logs each tenant's queued tasks and its admitted and throttled submissions. Queue depths are the counters
+     * the queue keeps per tenant, so this is O(tenants) and never touches the queue lock.
+     */
+    private void logTenants(){
+        if (tenantAdmission == null) {
+            return;
+        }
+        Set<String> tenants = new TreeSet<>(tenantAdmission.getTenants());
+        tenants.addAll(tenantAdmission.getQueuedTenants());
+        if (tenants.isEmpty()) {
+            return;
+        }
+        Map<String, String> lines = new TreeMap<>();
+        for (String tenant : tenants) {
+            lines.put(tenant, tenant + ": queued " + tenantAdmission.getQueuedCount(tenant) +
+                    ", admitted " + tenantAdmission.getAdmittedCount(tenant) +
+                    ", throttled " + tenantAdmission.getThrottledCount(tenant));
+        }
+        TaskLogger.log("MONITOR - Tenants - " + String.join(" | ", lines.values()));
+    }
+
+    private String getShardSummary(){
+        if (!(taskQueue instanceof WorkStealingTaskQueue)) {
+            return "";
+        }
+        WorkStealingTaskQueue<?> shardedQueue = (WorkStealingTaskQueue<?>) taskQueue;
+        StringBuilder sb = new StringBuilder(" | Shards: [");
+        for (int i = 0; i < shardedQueue.getShardCount(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(shardedQueue.getShardSize(i));
+        }
+        return sb.append("]").toString();
+    }
+
+    private String getAwaitingSummary() {
+        int awaiting = workerStats.getAwaitingCount();
+        return awaiting > 0 ? " | Awaiting Async: " + awaiting : "";
     }
 
     private void detectStalledTasks(){
-        long processingTasks = taskStates.values().stream().filter(status -> status == TaskStatus.PROCESSING).count();
-        if (processingTasks > 0 && taskQueue.isEmpty() && ((ThreadPoolExecutor)workerPool).getActiveCount() == 0) {
+        long processingTasks = taskStates.getCounters().getCount(TaskStatus.PROCESSING);
+        if (processingTasks > 0 && taskQueue.isEmpty() && workerStats.getActiveCount() == 0
+                && workerStats.getAwaitingCount() == 0) {
 
             TaskLogger.logWarning("MONITOR - Potential system stall detected! " + processingTasks +
-                    " tasks in PROCESSING state, but queue is empty and no active workers.");
+                    " tasks in PROCESSING state (" + workerStats.getInFlightCount() + " in flight), but queue is empty and no active workers.");
         }
     }
 }
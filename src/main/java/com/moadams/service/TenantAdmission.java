@@ -0,0 +1,179 @@
+package com.moadams.service;
+
+import com.moadams.model.RateLimit;
+import com.moadams.model.Task;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TenantAdmission rate-limits submissions per tenant with a token bucket each, so a tenant that submits faster
+ * than its limit waits at the door instead of filling the queue ahead of everyone else.
+ *
+ * <p>Admission blocks rather than rejects, the same way a full queue blocks producers: a submitter over its
+ * limit reserves the next token and sleeps until it is due. Reservations are taken in arrival order, so
+ * concurrent submitters of one tenant share its rate instead of racing for refills. A tenant without a limit
+ * of its own uses the default limit, and is admitted at once when there is none. Every tenant seen is tracked
+ * until the dispatcher is discarded; tenants are expected to be a small, fixed set such as producer names.</p>
+ *
+ * <p>It also holds each tenant's count of queued tasks, which the dispatcher's queue keeps up to date as tasks
+ * go in and out (see {@link com.moadams.queue.CountingQueue}), so the monitor reads depths without scanning
+ * the queue.</p>
+ */
+public class TenantAdmission {
+    private final RateLimit defaultLimit;
+    private final Map<String, RateLimit> limits;
+    private final ConcurrentHashMap<String, Tenant> tenants = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> queued = new ConcurrentHashMap<>();
+
+    private static final class Tenant {
+        final TokenBucket bucket;
+        final LongAdder admitted = new LongAdder();
+        final LongAdder throttled = new LongAdder();
+
+        Tenant(RateLimit limit) {
+            this.bucket = limit == null ? null : new TokenBucket(limit);
+        }
+    }
+
+    /**
+     * A token bucket that hands out reservations: tokens may go negative, and the deficit tells the caller
+     * how long to wait for its token.
+     */
+    private static final class TokenBucket {
+        private final double permitsPerNano;
+        private final double burst;
+        private double tokens;
+        private long refilledAtNanos;
+
+        TokenBucket(RateLimit limit) {
+            this.permitsPerNano = limit.getPermitsPerSecond() / TimeUnit.SECONDS.toNanos(1);
+            this.burst = limit.getBurst();
+            this.tokens = burst;
+            this.refilledAtNanos = System.nanoTime();
+        }
+
+        /**
+         * Takes one token, borrowing it from the future if the bucket is empty.
+         * @return How long to wait before the token is due, in nanoseconds; 0 if it is available now.
+         */
+        synchronized long reserve() {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - refilledAtNanos) * permitsPerNano);
+            refilledAtNanos = now;
+            tokens--;
+            return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / permitsPerNano);
+        }
+
+        /**
+         * Returns a reserved token that will not be used.
+         */
+        synchronized void refund() {
+            tokens = Math.min(burst, tokens + 1);
+        }
+    }
+
+    /**
+     * Constructs a TenantAdmission.
+     * @param defaultLimit The limit of tenants without one of their own, or null to leave them unlimited.
+     * @param limits Per-tenant limits.
+     */
+    TenantAdmission(RateLimit defaultLimit, Map<String, RateLimit> limits) {
+        this.defaultLimit = defaultLimit;
+        this.limits = Map.copyOf(limits);
+    }
+
+    /**
+     * Waits until the task's tenant may submit another task.
+     * @param task The task about to be submitted.
+     * @throws InterruptedException If interrupted while throttled; the task is not admitted and its token
+     * is returned.
+     */
+    public void admit(Task task) throws InterruptedException {
+        Tenant tenant = tenants.computeIfAbsent(task.getTenant(), name -> new Tenant(limits.getOrDefault(name, defaultLimit)));
+        if (tenant.bucket != null) {
+            long waitNanos = tenant.bucket.reserve();
+            if (waitNanos > 0) {
+                tenant.throttled.increment();
+                try {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                } catch (InterruptedException e) {
+                    tenant.bucket.refund();
+                    throw e;
+                }
+            }
+        }
+        tenant.admitted.increment();
+    }
+
+    /**
+     * Admits a group of tasks one after another, waiting wherever a tenant is over its limit.
+     * @param tasks The tasks about to be submitted.
+     * @throws InterruptedException If interrupted while throttled; the remaining tasks are not admitted.
+     */
+    public void admitAll(Collection<Task> tasks) throws InterruptedException {
+        for (Task task : tasks) {
+            admit(task);
+        }
+    }
+
+    /**
+     * @return Whether any tenant is rate-limited.
+     */
+    public boolean isLimiting() {
+        return defaultLimit != null || !limits.isEmpty();
+    }
+
+    /**
+     * @return The tenants that have submitted so far.
+     */
+    public Set<String> getTenants() {
+        return tenants.keySet();
+    }
+
+    /**
+     * @return The live per-tenant queued counts, for the queue to update as tasks go in and out.
+     */
+    ConcurrentMap<String, LongAdder> getQueuedCounts() {
+        return queued;
+    }
+
+    /**
+     * @return The tenants with tasks queued now or earlier, including tasks recovered without admission.
+     */
+    public Set<String> getQueuedTenants() {
+        return queued.keySet();
+    }
+
+    /**
+     * @param tenant The tenant.
+     * @return How many of the tenant's tasks are waiting in the queue; tasks waiting for a retry are not counted.
+     */
+    public long getQueuedCount(String tenant) {
+        LongAdder count = queued.get(tenant);
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * @param tenant The tenant.
+     * @return How many of the tenant's tasks have been admitted.
+     */
+    public long getAdmittedCount(String tenant) {
+        Tenant state = tenants.get(tenant);
+        return state == null ? 0 : state.admitted.sum();
+    }
+
+    /**
+     * @param tenant The tenant.
+     * @return How many of the tenant's submissions had to wait for their rate limit.
+     */
+    public long getThrottledCount(String tenant) {
+        Tenant state = tenants.get(tenant);
+        return state == null ? 0 : state.throttled.sum();
+    }
+}
@@ -0,0 +1,168 @@
+package com.moadams.service;
+
+import com.moadams.consumer.WorkerStats;
+import com.moadams.enums.TaskStatus;
+import com.moadams.metrics.HistogramSnapshot;
+import com.moadams.metrics.LatencyHistogram;
+import com.moadams.metrics.TaskLatencyTracker;
+import com.moadams.model.Task;
+import com.moadams.state.StatusCounters;
+import com.moadams.util.TaskLogger;
+
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * WorkerAutoscaler grows and shrinks the platform worker pool between configured bounds.
+ * Every sample interval it reads the queue depth, the arrival rate (entries into SUBMITTED), the completion
+ * rate and the p99 queue wait of the tasks dequeued since the last sample, and estimates how long the current
+ * backlog takes to drain at the current completion rate.
+ *
+ * <p>The pool is overloaded when the p99 wait or the drain estimate exceeds the target wait, and underloaded
+ * when both are under half of it and at least one worker is idle; the gap between the two is the hysteresis
+ * band. A condition must hold for several consecutive samples, and no change is made within the cooldown
+ * after the previous one. Scaling up adds enough workers to absorb the arrival rate and drain the backlog
+ * within the target, at most doubling the pool per step; scaling down retires half of the idle workers (at
+ * least one), and a retired worker finishes the task in hand before leaving.</p>
+ */
+public class WorkerAutoscaler implements Runnable {
+    private static final double UNDERLOAD_FRACTION = 0.5;
+
+    private final TaskDispatcher dispatcher;
+    private final BlockingQueue<Task> taskQueue;
+    private final WorkerStats workerStats;
+    private final StatusCounters counters;
+    private final TaskLatencyTracker latencyTracker;
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final int minWorkers;
+    private final int maxWorkers;
+    private final long intervalMillis;
+    private final long cooldownMillis;
+    private final long targetQueueWaitMillis;
+    private final int sustainSamples;
+
+    private long lastSampleNanos;
+    private long lastSubmitted;
+    private long lastCompleted;
+    private long lastChangeNanos;
+    private int overloadedSamples;
+    private int underloadedSamples;
+
+    /**
+     * Constructs a WorkerAutoscaler.
+     * @param dispatcher The dispatcher whose workers are added and retired.
+     * @param taskQueue The queue whose depth is sampled.
+     * @param workerStats The counters completions and idle workers are read from.
+     * @param counters The status counters arrivals are read from.
+     * @param latencyTracker The tracker that feeds the autoscaler's own queue-wait histogram.
+     * @param config The autoscaling bounds, target and timing.
+     */
+    public WorkerAutoscaler(TaskDispatcher dispatcher, BlockingQueue<Task> taskQueue, WorkerStats workerStats,
+                            StatusCounters counters, TaskLatencyTracker latencyTracker, DispatcherConfig config) {
+        this.dispatcher = dispatcher;
+        this.taskQueue = taskQueue;
+        this.workerStats = workerStats;
+        this.counters = counters;
+        this.latencyTracker = latencyTracker;
+        this.minWorkers = config.getAutoscaleMinWorkers();
+        this.maxWorkers = config.getAutoscaleMaxWorkers();
+        this.intervalMillis = config.getAutoscaleIntervalMillis();
+        this.cooldownMillis = config.getAutoscaleCooldownMillis();
+        this.targetQueueWaitMillis = config.getTargetQueueWaitMillis();
+        this.sustainSamples = config.getAutoscaleSustainSamples();
+    }
+
+    @Override
+    public void run() {
+        TaskLogger.log("WorkerAutoscaler started: " + minWorkers + "-" + maxWorkers + " workers, target p99 queue wait " +
+                targetQueueWaitMillis + "ms, sampled every " + intervalMillis + "ms.");
+        latencyTracker.addQueueWaitObserver(queueWait);
+        lastSampleNanos = System.nanoTime();
+        lastSubmitted = counters.getEnteredCount(TaskStatus.SUBMITTED);
+        lastCompleted = workerStats.getCompletedCount();
+        lastChangeNanos = lastSampleNanos;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.sleep(intervalMillis);
+                sample();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            latencyTracker.removeQueueWaitObserver(queueWait);
+        }
+        TaskLogger.log("WorkerAutoscaler stopped at " + dispatcher.getWorkerCount() + " workers.");
+    }
+
+    private void sample() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-3, (now - lastSampleNanos) / 1e9);
+        long submitted = counters.getEnteredCount(TaskStatus.SUBMITTED);
+        long completed = workerStats.getCompletedCount();
+        double arrivalRate = (submitted - lastSubmitted) / seconds;
+        double completionRate = (completed - lastCompleted) / seconds;
+        lastSampleNanos = now;
+        lastSubmitted = submitted;
+        lastCompleted = completed;
+
+        int depth = taskQueue.size();
+        HistogramSnapshot waits = queueWait.intervalSnapshot();
+        long p99WaitMillis = waits.getValueAtPercentile(99) / 1000;
+        int workers = dispatcher.getWorkerCount();
+        long drainMillis = completionRate > 0 ? (long) (depth / completionRate * 1000)
+                : (depth > 0 ? Long.MAX_VALUE : 0);
+        int idleWorkers = Math.max(0, workers - workerStats.getInFlightCount());
+
+        boolean overloaded = p99WaitMillis > targetQueueWaitMillis || drainMillis > targetQueueWaitMillis;
+        boolean underloaded = idleWorkers > 0
+                && p99WaitMillis <= targetQueueWaitMillis * UNDERLOAD_FRACTION
+                && drainMillis <= targetQueueWaitMillis * UNDERLOAD_FRACTION;
+        overloadedSamples = overloaded ? overloadedSamples + 1 : 0;
+        underloadedSamples = underloaded ? underloadedSamples + 1 : 0;
+
+        String signals = String.format(Locale.ROOT,
+                "p99 queue wait %dms (target %dms), depth %d, drain estimate %s, arrivals %.1f/s, completions %.1f/s",
+                p99WaitMillis, targetQueueWaitMillis, depth,
+                drainMillis == Long.MAX_VALUE ? "unbounded" : drainMillis + "ms", arrivalRate, completionRate);
+        boolean coolingDown = now - lastChangeNanos < cooldownMillis * 1_000_000L;
+
+        if (overloadedSamples >= sustainSamples && workers < maxWorkers) {
+            if (coolingDown) {
+                return;
+            }
+            int target = Math.min(maxWorkers, workers + scaleUpStep(workers, depth, arrivalRate, completionRate));
+            dispatcher.addWorkers(target - workers);
+            decided("Scaling up " + workers + " -> " + target + " workers: " + signals, now);
+        } else if (underloadedSamples >= sustainSamples && workers > minWorkers) {
+            if (coolingDown) {
+                return;
+            }
+            int target = Math.max(minWorkers, workers - Math.max(1, idleWorkers / 2));
+            dispatcher.retireWorkers(workers - target);
+            decided("Scaling down " + workers + " -> " + target + " workers: " + signals, now);
+        } else if (overloadedSamples == sustainSamples && workers == maxWorkers) {
+            TaskLogger.logWarning("AUTOSCALE - Overloaded at the maximum of " + maxWorkers + " workers: " + signals);
+        }
+    }
+
+    /**
+     * Works out how many workers to add: enough that the observed per-worker rate covers the arrival rate
+     * plus draining the backlog within the target wait, at least one and at most the current pool size.
+     */
+    private int scaleUpStep(int workers, int depth, double arrivalRate, double completionRate) {
+        if (workers == 0 || completionRate <= 0) {
+            return 1;
+        }
+        double perWorkerRate = completionRate / workers;
+        double requiredRate = arrivalRate + depth / (targetQueueWaitMillis / 1000.0);
+        int needed = (int) Math.ceil(requiredRate / perWorkerRate);
+        return Math.max(1, Math.min(workers, needed - workers));
+    }
+
+    private void decided(String decision, long now) {
+        TaskLogger.log("AUTOSCALE - " + decision);
+        lastChangeNanos = now;
+        overloadedSamples = 0;
+        underloadedSamples = 0;
+    }
+}
@@ -0,0 +1,225 @@
+package com.moadams.service;
+
+import com.moadams.consumer.TaskWorker;
+import com.moadams.model.Task;
+import com.moadams.util.TaskLogger;
+
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WorkerWatchdog finds platform workers that have stopped making progress. Each check asks the
+ * {@link ThreadMXBean} for threads deadlocked on monitors or {@link java.util.concurrent.locks.Lock}s and
+ * reports every thread in the cycle with the lock it waits for, that lock's owner, and the locks it holds;
+ * it also reports any worker that has spent longer than the threshold on a single task. Each deadlock and
+ * each stuck task is reported once.
+ *
+ * <p>With recovery on, the watchdog breaks a deadlock by picking one worker in the cycle as the victim - the
+ * lock owner whose task started last, so the least work is repeated - and frees each stuck worker that is blocked
+ * or waiting on a lock the same way: the worker is interrupted, re-queues the task it holds and leaves, and a
+ * replacement is started. A stuck worker that is running or sleeping rather than waiting on a lock is only
+ * reported, so a long but healthy handler is never interrupted and re-run. A thread
+ * blocked entering a {@code synchronized} block ignores interrupts, so a monitor deadlock is reported but
+ * cannot be broken; the watchdog logs when a victim does not respond. The replacement runs on the pool
+ * thread the victim frees.</p>
+ *
+ * <p>Only long-lived platform-pool workers are tracked; in VIRTUAL_THREADS mode only deadlocks among
+ * platform threads are found.</p>
+ */
+public class WorkerWatchdog {
+    private final TaskDispatcher dispatcher;
+    private final long stuckNanos;
+    private final boolean recovery;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final Map<TaskWorker, Task> reportedStuck = new HashMap<>();
+    private final Map<TaskWorker, Long> recovering = new HashMap<>();
+    private final Set<Long> interruptedThreads = new HashSet<>();
+    private long[] reportedDeadlock = new long[0];
+    private long recoveredCount;
+
+    /**
+     * Constructs a WorkerWatchdog.
+     * @param dispatcher The dispatcher whose workers are watched and replaced.
+     * @param stuckMillis How long a worker may spend on one task before it is reported as stuck.
+     * @param recovery Whether deadlocked and stuck workers are interrupted and replaced.
+     */
+    WorkerWatchdog(TaskDispatcher dispatcher, long stuckMillis, boolean recovery) {
+        this.dispatcher = dispatcher;
+        this.stuckNanos = TimeUnit.MILLISECONDS.toNanos(stuckMillis);
+        this.recovery = recovery;
+    }
+
+    /**
+     * Runs one check. Called from the monitor's thread each tick; not thread-safe.
+     */
+    public void check() {
+        long now = System.nanoTime();
+        Map<Long, TaskWorker> byThread = new HashMap<>();
+        for (TaskWorker worker : dispatcher.getPoolWorkers()) {
+            Thread thread = worker.getThread();
+            if (thread != null) {
+                byThread.put(thread.threadId(), worker);
+            }
+        }
+        followUpRecoveries(now);
+        checkDeadlocks(byThread);
+        checkStuck(byThread, now);
+    }
+
+    private void checkDeadlocks(Map<Long, TaskWorker> byThread) {
+        long[] deadlocked = threads.isSynchronizerUsageSupported()
+                ? threads.findDeadlockedThreads() : threads.findMonitorDeadlockedThreads();
+        if (deadlocked == null) {
+            reportedDeadlock = new long[0];
+            return;
+        }
+        Arrays.sort(deadlocked);
+        boolean newDeadlock = !Arrays.equals(deadlocked, reportedDeadlock);
+        ThreadInfo[] infos = threads.getThreadInfo(deadlocked, threads.isObjectMonitorUsageSupported(),
+                threads.isSynchronizerUsageSupported());
+        if (newDeadlock) {
+            reportedDeadlock = deadlocked;
+            StringBuilder report = new StringBuilder("MONITOR - Deadlock detected among " + deadlocked.length + " threads:");
+            for (ThreadInfo info : infos) {
+                if (info != null) {
+                    TaskWorker worker = byThread.get(info.getThreadId());
+                    Task task = worker == null ? null : worker.getCurrentTask();
+                    report.append("\n  ").append(describe(info)).append(task == null ? "" : " processing " + task);
+                }
+            }
+            TaskLogger.logError(report.toString());
+        }
+        if (!recovery || Arrays.stream(deadlocked).anyMatch(interruptedThreads::contains)) {
+            // One victim per cycle: wait for it to let go, or give up if it ignored the interrupt.
+            return;
+        }
+        // Threads merely waiting on the cycle are reported too; only interrupting a lock owner in it breaks it.
+        Set<Long> owners = new HashSet<>();
+        for (ThreadInfo info : infos) {
+            if (info != null && info.getLockOwnerId() >= 0) {
+                owners.add(info.getLockOwnerId());
+            }
+        }
+        TaskWorker victim = null;
+        for (long threadId : owners) {
+            TaskWorker worker = byThread.get(threadId);
+            if (worker != null && (victim == null || worker.getCurrentSinceNanos() - victim.getCurrentSinceNanos() > 0)) {
+                victim = worker;
+            }
+        }
+        if (victim != null) {
+            recover(victim, "to break the deadlock");
+        } else if (newDeadlock) {
+            TaskLogger.logError("MONITOR - Watchdog cannot break the deadlock: none of its threads is a pool worker.");
+        }
+    }
+
+    private void checkStuck(Map<Long, TaskWorker> byThread, long now) {
+        reportedStuck.keySet().retainAll(byThread.values());
+        for (TaskWorker worker : byThread.values()) {
+            Task task = worker.getCurrentTask();
+            if (task == null || now - worker.getCurrentSinceNanos() < stuckNanos || recovering.containsKey(worker)) {
+                continue;
+            }
+            boolean firstReport = reportedStuck.put(worker, task) != task;
+            if (!firstReport && !recovery) {
+                continue;
+            }
+            ThreadInfo info = threads.getThreadInfo(new long[] {worker.getThread().threadId()},
+                    threads.isObjectMonitorUsageSupported(), threads.isSynchronizerUsageSupported())[0];
+            if (firstReport) {
+                TaskLogger.logWarning("MONITOR - Worker stuck on " + task + " for " +
+                        TimeUnit.NANOSECONDS.toSeconds(now - worker.getCurrentSinceNanos()) + "s: " +
+                        (info == null ? worker.getThread().getName() : describe(info)));
+            }
+            if (recovery && isWaitingOnLock(info) && Arrays.binarySearch(reportedDeadlock, worker.getThread().threadId()) < 0) {
+                recover(worker, "stuck on " + info.getLockName() + " for over " + TimeUnit.NANOSECONDS.toMillis(stuckNanos) + "ms");
+            }
+        }
+    }
+
+    /**
+     * @return Whether the thread is parked or blocked on a monitor or synchronizer, rather than running or sleeping.
+     */
+    private static boolean isWaitingOnLock(ThreadInfo info) {
+        if (info == null || info.getLockName() == null) {
+            return false;
+        }
+        Thread.State state = info.getThreadState();
+        return state == Thread.State.BLOCKED || state == Thread.State.WAITING || state == Thread.State.TIMED_WAITING;
+    }
+
+    private void recover(TaskWorker victim, String reason) {
+        Thread thread = victim.getThread();
+        if (!dispatcher.replaceWorker(victim)) {
+            return;
+        }
+        recovering.put(victim, System.nanoTime());
+        interruptedThreads.add(thread.threadId());
+        recoveredCount++;
+        TaskLogger.logWarning("MONITOR - Watchdog interrupting worker " + thread.getName() + " " + reason +
+                " and starting a replacement.");
+    }
+
+    /**
+     * Reports whether the workers interrupted earlier let go of their tasks.
+     */
+    private void followUpRecoveries(long now) {
+        recovering.entrySet().removeIf(entry -> {
+            TaskWorker worker = entry.getKey();
+            if (worker.getCurrentTask() == null) {
+                interruptedThreads.remove(worker.getThread().threadId());
+                TaskLogger.log("MONITOR - Worker " + worker.getThread().getName() + " released its task after the watchdog's interrupt.");
+                return true;
+            }
+            if (now - entry.getValue() >= stuckNanos) {
+                TaskLogger.logError("MONITOR - Worker " + worker.getThread().getName() + " did not respond to the watchdog's interrupt (" +
+                        worker.getThread().getState() + "); it is likely blocked entering a synchronized block and its task cannot be recovered.");
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Describes a thread: its state, the lock it waits for and that lock's owner, and the locks it holds.
+     */
+    private static String describe(ThreadInfo info) {
+        StringBuilder sb = new StringBuilder(info.getThreadName()).append(" (").append(info.getThreadState()).append(')');
+        if (info.getLockName() != null) {
+            sb.append(" waiting for ").append(info.getLockName());
+            if (info.getLockOwnerName() != null) {
+                sb.append(" owned by ").append(info.getLockOwnerName());
+            }
+        }
+        List<String> held = new ArrayList<>();
+        for (MonitorInfo monitor : info.getLockedMonitors()) {
+            held.add(monitor.toString());
+        }
+        for (LockInfo lock : info.getLockedSynchronizers()) {
+            held.add(lock.toString());
+        }
+        if (!held.isEmpty()) {
+            sb.append(", holding ").append(held);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return How many workers the watchdog has interrupted and replaced.
+     */
+    public long getRecoveredCount() {
+        return recoveredCount;
+    }
+}
@@ -0,0 +1,90 @@
+package com.moadams.state;
+
+import com.moadams.enums.TaskStatus;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * StatusCounters keeps per-status task counts up to date on every transition, so reading a summary
+ * costs O(statuses) instead of a scan over every task. Counts use striped LongAdders, so concurrent
+ * producers and workers do not contend on a single counter.
+ *
+ * <p>Two views are kept: how many tasks are currently in each status, and how many transitions into
+ * each status have ever happened (COMPLETED's entry count is the processed-task total). Both are exact
+ * once transitions quiesce; a summary read during transitions may be off by the transitions in flight.
+ * Eviction of terminal entries from the TaskStateStore is not a transition and does not change the counts.</p>
+ */
+public final class StatusCounters {
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+
+    private final LongAdder[] current = newAdders();
+    private final LongAdder[] entered = newAdders();
+
+    StatusCounters() {
+    }
+
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[STATUSES.length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    void record(TaskStatus previous, TaskStatus next) {
+        if (previous == next) {
+            return;
+        }
+        if (next != null) {
+            current[next.ordinal()].increment();
+            entered[next.ordinal()].increment();
+        }
+        if (previous != null) {
+            current[previous.ordinal()].decrement();
+        }
+    }
+
+    /**
+     * Gets how many tasks currently have the given status.
+     * @param status The status.
+     * @return The current count.
+     */
+    public long getCount(TaskStatus status) {
+        return current[status.ordinal()].sum();
+    }
+
+    /**
+     * Gets how many times tasks have entered the given status, including retried tasks re-entering it.
+     * @param status The status.
+     * @return The cumulative transition count.
+     */
+    public long getEnteredCount(TaskStatus status) {
+        return entered[status.ordinal()].sum();
+    }
+
+    /**
+     * Gets the total number of tasks completed successfully.
+     * @return The cumulative COMPLETED count.
+     */
+    public long getProcessedCount() {
+        return getEnteredCount(TaskStatus.COMPLETED);
+    }
+
+    /**
+     * Builds the per-status task count line printed on each monitor tick, in enum order.
+     * @return A summary such as "SUBMITTED:3 PROCESSING:2 COMPLETED:10".
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (TaskStatus status : STATUSES) {
+            long count = getCount(status);
+            if (count > 0) {
+                if (sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(status.name()).append(':').append(count);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,20 @@
+package com.moadams.state;
+
+import com.moadams.enums.TaskStatus;
+
+import java.util.UUID;
+
+/**
+ * Callback fired by TaskStateStore after every status change.
+ * Listeners run synchronously on the thread that made the change, after the store
+ * has been updated, so implementations should be cheap and thread-safe.
+ */
+public interface StatusTransitionListener {
+
+    /**
+     * @param taskId The task whose status changed.
+     * @param previous The status before the change, or null if the task was new.
+     * @param current The status after the change, or null if the task was removed.
+     */
+    void onTransition(UUID taskId, TaskStatus previous, TaskStatus current);
+}
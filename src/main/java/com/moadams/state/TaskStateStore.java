@@ -0,0 +1,377 @@
+package com.moadams.state;
+
+import com.moadams.enums.TaskStatus;
+import com.moadams.model.Task;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * TaskStateStore is the single place task statuses are changed.
+ * It wraps a ConcurrentHashMap and notifies registered listeners of every transition,
+ * so journals, counters and other observers see changes as they happen instead of
+ * rescanning the whole map.
+ *
+ * <p>Listeners see each task's transitions in the order they were made. A change is queued for its task in the
+ * same atomic step as the map update, and whichever thread finds the task's queue empty announces it and every
+ * transition queued behind it, outside any map lock, so listeners may update other tasks. A thread whose change
+ * queues behind another's returns before listeners hear of it.</p>
+ *
+ * <p>Live tasks (SUBMITTED/PROCESSING) are always kept. Terminal entries (COMPLETED, FAILED, CANCELLED and
+ * EXPIRED) can be bounded by a TTL and a size cap: each terminal transition is appended to a FIFO, and the oldest entries are evicted once they
+ * expire or the cap is exceeded, so memory follows in-flight work rather than historical volume. Eviction is
+ * not a status transition and does not notify listeners; evicted entries go to the optional eviction sink.
+ * A task that leaves a terminal state (a retry after FAILED) is never evicted by its stale FIFO entry.</p>
+ */
+public class TaskStateStore {
+    private final ConcurrentHashMap<UUID, TaskStatus> states = new ConcurrentHashMap<>();
+    private final List<StatusTransitionListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<TaskSubmissionListener> submissionListeners = new CopyOnWriteArrayList<>();
+    private final StatusCounters counters = new StatusCounters();
+    private final long terminalTtlNanos;
+    private final int maxTerminalEntries;
+    private final boolean boundsTerminals;
+    private final ConcurrentHashMap<UUID, TerminalEntry> terminalIndex = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<TerminalEntry> terminalOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger terminalCount = new AtomicInteger();
+    private final LongAdder evictedCount = new LongAdder();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private volatile BiConsumer<UUID, TaskStatus> evictionSink;
+    private final ConcurrentHashMap<UUID, Transition> unannounced = new ConcurrentHashMap<>();
+
+    /**
+     * A transition waiting to be announced. Each task's waiting transitions form a chain, and
+     * {@code unannounced} maps the task to the newest.
+     */
+    private static final class Transition {
+        final TaskStatus previous;
+        final TaskStatus current;
+        volatile Transition next;
+        boolean announcer;
+
+        Transition(TaskStatus previous, TaskStatus current) {
+            this.previous = previous;
+            this.current = current;
+        }
+    }
+
+    private static final class TerminalEntry {
+        final UUID taskId;
+        final TaskStatus status;
+        final long terminalAtNanos;
+
+        TerminalEntry(UUID taskId, TaskStatus status, long terminalAtNanos) {
+            this.taskId = taskId;
+            this.status = status;
+            this.terminalAtNanos = terminalAtNanos;
+        }
+    }
+
+    /**
+     * Constructs a store that keeps every status for the life of the process.
+     */
+    public TaskStateStore() {
+        this(0, 0);
+    }
+
+    /**
+     * Constructs a store that evicts COMPLETED and FAILED entries.
+     * @param terminalTtlMillis How long a terminal entry is kept; zero or less means no TTL.
+     * @param maxTerminalEntries How many terminal entries are kept at most; zero or less means no cap.
+     */
+    public TaskStateStore(long terminalTtlMillis, int maxTerminalEntries) {
+        this.terminalTtlNanos = terminalTtlMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(terminalTtlMillis) : Long.MAX_VALUE;
+        this.maxTerminalEntries = maxTerminalEntries > 0 ? maxTerminalEntries : Integer.MAX_VALUE;
+        this.boundsTerminals = terminalTtlMillis > 0 || maxTerminalEntries > 0;
+    }
+
+    /**
+     * Registers a listener for status transitions.
+     * @param listener The listener to notify.
+     */
+    public void addTransitionListener(StatusTransitionListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeTransitionListener(StatusTransitionListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Registers a listener for newly submitted tasks.
+     * @param listener The listener to notify.
+     */
+    public void addSubmissionListener(TaskSubmissionListener listener) {
+        submissionListeners.add(listener);
+    }
+
+    public void removeSubmissionListener(TaskSubmissionListener listener) {
+        submissionListeners.remove(listener);
+    }
+
+    /**
+     * Sets where evicted terminal entries are handed off, e.g. an archive file. Called on the evicting thread.
+     * @param evictionSink The sink, or null to discard evicted entries.
+     */
+    public void setEvictionSink(BiConsumer<UUID, TaskStatus> evictionSink) {
+        this.evictionSink = evictionSink;
+    }
+
+    /**
+     * Records a new task submission: notifies submission listeners with the task, then marks it SUBMITTED.
+     * Use {@link #put} with SUBMITTED for tasks that are re-queued rather than newly submitted.
+     * @param task The task about to be queued.
+     */
+    public void markSubmitted(Task task) {
+        markSubmitted(List.of(task));
+    }
+
+    /**
+     * Records a batch of new submissions with one submission-listener call.
+     * @param tasks The tasks about to be queued.
+     */
+    public void markSubmitted(Collection<Task> tasks) {
+        for (TaskSubmissionListener listener : submissionListeners) {
+            listener.onSubmitted(tasks);
+        }
+        for (Task task : tasks) {
+            put(task.getId(), TaskStatus.SUBMITTED);
+        }
+    }
+
+    /**
+     * Sets a task's status.
+     * @param taskId The task ID.
+     * @param status The new status.
+     * @return The previous status, or null if the task was not tracked.
+     */
+    public TaskStatus put(UUID taskId, TaskStatus status) {
+        Transition[] made = new Transition[1];
+        states.compute(taskId, (id, previous) -> {
+            made[0] = enqueue(id, previous, status);
+            return status;
+        });
+        TaskStatus previous = made[0].previous;
+        if (boundsTerminals) {
+            trackTerminal(taskId, previous, status);
+        }
+        announce(taskId, made[0]);
+        return previous;
+    }
+
+    /**
+     * Stops tracking a task.
+     * @param taskId The task ID.
+     * @return The status it had, or null if it was not tracked.
+     */
+    public TaskStatus remove(UUID taskId) {
+        Transition[] made = new Transition[1];
+        states.computeIfPresent(taskId, (id, previous) -> {
+            made[0] = enqueue(id, previous, null);
+            return null;
+        });
+        if (made[0] == null) {
+            return null;
+        }
+        forgetTerminal(taskId, made[0].previous);
+        announce(taskId, made[0]);
+        return made[0].previous;
+    }
+
+    /**
+     * Stops tracking a task only if it still has the expected status.
+     * @param taskId The task ID.
+     * @param expected The status the task must have.
+     * @return true if the task was removed.
+     */
+    public boolean remove(UUID taskId, TaskStatus expected) {
+        Transition[] made = new Transition[1];
+        states.computeIfPresent(taskId, (id, previous) -> {
+            if (previous != expected) {
+                return previous;
+            }
+            made[0] = enqueue(id, previous, null);
+            return null;
+        });
+        if (made[0] == null) {
+            return false;
+        }
+        forgetTerminal(taskId, expected);
+        announce(taskId, made[0]);
+        return true;
+    }
+
+    /**
+     * Sets a task's status only if it still has the expected status.
+     * @param taskId The task ID.
+     * @param expected The status the task must have.
+     * @param status The new status.
+     * @return true if the status was replaced.
+     */
+    public boolean replace(UUID taskId, TaskStatus expected, TaskStatus status) {
+        Transition[] made = new Transition[1];
+        states.computeIfPresent(taskId, (id, previous) -> {
+            if (previous != expected) {
+                return previous;
+            }
+            made[0] = enqueue(id, previous, status);
+            return status;
+        });
+        if (made[0] == null) {
+            return false;
+        }
+        if (boundsTerminals) {
+            trackTerminal(taskId, expected, status);
+        }
+        announce(taskId, made[0]);
+        return true;
+    }
+
+    public TaskStatus get(UUID taskId) {
+        return states.get(taskId);
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    public boolean isEmpty() {
+        return states.isEmpty();
+    }
+
+    /**
+     * Gets the per-status counters maintained on every transition; reading them is O(1) in the number of tasks.
+     * @return The store's status counters.
+     */
+    public StatusCounters getCounters() {
+        return counters;
+    }
+
+    /**
+     * Gets how many COMPLETED/FAILED entries are awaiting eviction (including entries for tasks since retried).
+     * @return The tracked terminal entry count, or 0 if terminal entries are never evicted.
+     */
+    public int getTerminalCount() {
+        return terminalCount.get();
+    }
+
+    /**
+     * Gets how many terminal entries have been evicted since the store was created.
+     * @return The evicted entry count.
+     */
+    public long getEvictedCount() {
+        return evictedCount.sum();
+    }
+
+    /**
+     * Evicts terminal entries older than the TTL or beyond the size cap.
+     * Puts already do this as they go; call it periodically so an idle store also shrinks.
+     * @return The number of entries evicted.
+     */
+    public int evictExpired() {
+        if (!boundsTerminals || !evictionLock.tryLock()) {
+            return 0;
+        }
+        int evicted = 0;
+        try {
+            long now = System.nanoTime();
+            TerminalEntry oldest;
+            while ((oldest = terminalOrder.peek()) != null
+                    && (terminalCount.get() > maxTerminalEntries || now - oldest.terminalAtNanos >= terminalTtlNanos)) {
+                terminalOrder.poll();
+                terminalCount.decrementAndGet();
+                if (terminalIndex.remove(oldest.taskId, oldest) && states.remove(oldest.taskId, oldest.status)) {
+                    evictedCount.increment();
+                    evicted++;
+                    BiConsumer<UUID, TaskStatus> sink = evictionSink;
+                    if (sink != null) {
+                        sink.accept(oldest.taskId, oldest.status);
+                    }
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+        return evicted;
+    }
+
+    /**
+     * Gets a live, read-only view of all tracked statuses.
+     * Iterating it is O(n); prefer a transition listener for anything that runs often.
+     * @return An unmodifiable view of the underlying map.
+     */
+    public Map<UUID, TaskStatus> view() {
+        return Collections.unmodifiableMap(states);
+    }
+
+    private void trackTerminal(UUID taskId, TaskStatus previous, TaskStatus status) {
+        if (isTerminal(status)) {
+            TerminalEntry entry = new TerminalEntry(taskId, status, System.nanoTime());
+            terminalIndex.put(taskId, entry);
+            terminalOrder.offer(entry);
+            terminalCount.incrementAndGet();
+            evictExpired();
+        } else if (isTerminal(previous)) {
+            terminalIndex.remove(taskId);
+        }
+    }
+
+    private void forgetTerminal(UUID taskId, TaskStatus previous) {
+        if (boundsTerminals && isTerminal(previous)) {
+            terminalIndex.remove(taskId);
+        }
+    }
+
+    private static boolean isTerminal(TaskStatus status) {
+        return status != null && status.isTerminal();
+    }
+
+    /**
+     * Queues a transition behind the task's unannounced ones. Called inside the map update that makes it.
+     */
+    private Transition enqueue(UUID taskId, TaskStatus previous, TaskStatus current) {
+        Transition transition = new Transition(previous, current);
+        unannounced.compute(taskId, (id, newest) -> {
+            if (newest == null) {
+                transition.announcer = true;
+            } else {
+                newest.next = transition;
+            }
+            return transition;
+        });
+        return transition;
+    }
+
+    /**
+     * Announces a transition and every one queued behind it, if this thread queued the first; otherwise the
+     * thread announcing the task's earlier transitions reaches it in turn.
+     */
+    private void announce(UUID taskId, Transition transition) {
+        if (!transition.announcer) {
+            return;
+        }
+        for (Transition next = transition; next != null; ) {
+            fire(taskId, next.previous, next.current);
+            Transition announced = next;
+            next = unannounced.remove(taskId, announced) ? null : announced.next;
+        }
+    }
+
+    private void fire(UUID taskId, TaskStatus previous, TaskStatus current) {
+        counters.record(previous, current);
+        for (StatusTransitionListener listener : listeners) {
+            listener.onTransition(taskId, previous, current);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.moadams.state;
+
+import com.moadams.model.Task;
+
+import java.util.Collection;
+
+/**
+ * Callback fired by TaskStateStore when new tasks are submitted, with the full tasks rather than just their IDs.
+ * Listeners run on the submitting thread before the tasks are marked SUBMITTED and before they are queued,
+ * so a listener that blocks (e.g. until the submission is durable) holds the submission back.
+ */
+public interface TaskSubmissionListener {
+
+    /**
+     * @param tasks The tasks being submitted, in submission order.
+     */
+    void onSubmitted(Collection<Task> tasks);
+}
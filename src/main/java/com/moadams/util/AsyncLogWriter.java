@@ -0,0 +1,165 @@
+package com.moadams.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * AsyncLogWriter decouples TaskLogger callers from console I/O.
+ * Callers claim a slot in a preallocated ring buffer (a bounded multi-producer queue with
+ * per-slot sequence numbers) and copy in the raw message, level and thread name; nothing is
+ * formatted on the calling thread. A single background thread drains the ring in batches,
+ * formats each record, and writes each batch with one println per stream.
+ * When the ring is full the record is dropped and counted rather than blocking the caller.
+ */
+class AsyncLogWriter {
+    private static final int WRITE_BATCH = 256;
+    private static final long IDLE_PARK_NANOS = 2_000_000L;
+
+    /**
+     * Formats and prints drained records on the writer thread.
+     */
+    interface Sink {
+        void append(StringBuilder out, StringBuilder err, TaskLogger.Style style, String threadName, long timestampMillis, String message);
+    }
+
+    private final TaskLogger.Style[] styles;
+    private final String[] threadNames;
+    private final long[] timestamps;
+    private final String[] messages;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final Sink sink;
+    private final Thread writer;
+    private long head;
+    private long reportedDropped;
+    private volatile boolean running = true;
+
+    /**
+     * @param capacity The ring size, rounded up to a power of two.
+     * @param sink Formats records into the output buffers.
+     */
+    AsyncLogWriter(int capacity, Sink sink) {
+        int size = Integer.highestOneBit(Math.max(2, capacity));
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.styles = new TaskLogger.Style[size];
+        this.threadNames = new String[size];
+        this.timestamps = new long[size];
+        this.messages = new String[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.sink = sink;
+        this.writer = new Thread(this::drainLoop, "TaskLogger-Writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Enqueues a record without blocking.
+     * @return false if the ring was full and the record was dropped.
+     */
+    boolean offer(TaskLogger.Style style, String threadName, long timestampMillis, String message) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    styles[index] = style;
+                    threadNames[index] = threadName;
+                    timestamps[index] = timestampMillis;
+                    messages[index] = message;
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                dropped.increment();
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Stops the writer loop once it has drained whatever is still buffered, and waits for it to finish.
+     */
+    void shutdown() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainLoop() {
+        StringBuilder out = new StringBuilder(8192);
+        StringBuilder err = new StringBuilder(1024);
+        while (true) {
+            int written = drainBatch(out, err);
+            if (written == 0) {
+                if (!running) {
+                    drainBatch(out, err);
+                    flush(out, err);
+                    return;
+                }
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private int drainBatch(StringBuilder out, StringBuilder err) {
+        int count = 0;
+        while (count < WRITE_BATCH) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            sink.append(out, err, styles[index], threadNames[index], timestamps[index], messages[index]);
+            styles[index] = null;
+            threadNames[index] = null;
+            messages[index] = null;
+            sequences.set(index, head + mask + 1);
+            head++;
+            count++;
+        }
+        long droppedNow = dropped.sum();
+        if (droppedNow != reportedDropped) {
+            err.append("[TaskLogger] ").append(droppedNow - reportedDropped)
+                    .append(" log records dropped (ring buffer full), ").append(droppedNow).append(" in total\n");
+            reportedDropped = droppedNow;
+        }
+        if (count > 0 || err.length() > 0) {
+            flush(out, err);
+        }
+        return count;
+    }
+
+    private void flush(StringBuilder out, StringBuilder err) {
+        if (out.length() > 0) {
+            TaskLogger.stdout().print(out);
+            TaskLogger.stdout().flush();
+            out.setLength(0);
+        }
+        if (err.length() > 0) {
+            TaskLogger.stderr().print(err);
+            TaskLogger.stderr().flush();
+            err.setLength(0);
+        }
+    }
+}
@@ -2,45 +2,84 @@ package com.moadams.util;
 
 import com.moadams.enums.TaskStatus;
 
-import java.io.FileWriter;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 public class JsonExporter {
-    public static void exportTaskStatuses(ConcurrentHashMap<UUID, TaskStatus> taskStates, String filePath){
+    public static void exportTaskStatuses(Map<UUID, TaskStatus> taskStates, String filePath){
         if(taskStates.isEmpty()){
             TaskLogger.log("No task statuses to export - taskStates is empty");
             return;
         }
 
-        StringBuilder jsonBuilder = new StringBuilder();
-        jsonBuilder.append("{\n");
-        jsonBuilder.append("  \"export_timestamp\": \"").append(Instant.now().toString()).append("\",\n");
-        jsonBuilder.append("  \"total_tasks\": ").append(taskStates.size()).append(",\n");
-        jsonBuilder.append("  \"task_statuses\": {\n");
-
-        int count = 0;
-        for(Map.Entry<UUID, TaskStatus> entry : taskStates.entrySet()){
-            jsonBuilder.append("    \"").append(entry.getKey().toString()).append("\": \"").append(entry.getValue().name()).append("\"");
-            if(count < taskStates.size() - 1){
-                jsonBuilder.append(",");
-            }
-            jsonBuilder.append("\n");
-            count++;
-        }
-        jsonBuilder.append("  }\n");
-        jsonBuilder.append("}\n");
-
-        try(FileWriter file = new FileWriter(filePath)){
-            file.write(jsonBuilder.toString());
-            file.flush();
-            TaskLogger.log("Task statuses exported to " + filePath + " (" + taskStates.size() + " tasks)");
+        try{
+            int exported = writeSnapshot(taskStates, Paths.get(filePath), -1);
+            TaskLogger.log("Task statuses exported to " + filePath + " (" + exported + " tasks)");
         } catch (IOException e) {
             TaskLogger.logError("Failed to export task statuses to JSON: " + e.getMessage());
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Streams the statuses to a temporary file next to the target, forces it to disk and renames it over the target,
+     * so a reader only ever sees the previous complete file or the new complete file.
+     * @param taskStates The statuses to write; may be changing concurrently.
+     * @param target The file to replace.
+     * @param journalSeq The last StatusJournal sequence already reflected in the map, or -1 to omit it.
+     * @return The number of entries written.
+     * @throws IOException If the file cannot be written or moved.
+     */
+    static int writeSnapshot(Map<UUID, TaskStatus> taskStates, Path target, long journalSeq) throws IOException {
+        Path absolute = target.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        int count = 0;
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 Writer out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8), 64 * 1024)) {
+                out.write("{\n");
+                out.write("  \"export_timestamp\": \"" + Instant.now() + "\",\n");
+                if (journalSeq >= 0) {
+                    out.write("  \"journal_seq\": " + journalSeq + ",\n");
+                }
+                out.write("  \"task_statuses\": {");
+                for (Map.Entry<UUID, TaskStatus> entry : taskStates.entrySet()) {
+                    out.write(count == 0 ? "\n" : ",\n");
+                    out.write("    \"");
+                    out.write(entry.getKey().toString());
+                    out.write("\": \"");
+                    out.write(entry.getValue().name());
+                    out.write('"');
+                    count++;
+                }
+                out.write("\n  },\n");
+                out.write("  \"total_tasks\": " + count + "\n");
+                out.write("}\n");
+                out.flush();
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,184 @@
+package com.moadams.util;
+
+import com.moadams.enums.TaskStatus;
+import com.moadams.state.StatusTransitionListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * StatusJournal persists task statuses incrementally instead of rewriting the whole map on every export.
+ * Every transition is queued in memory and {@link #flush()} appends the ones seen since the last flush to a
+ * JSON-lines journal with a single FileChannel write per batch. {@link #writeSnapshot(Map)} periodically
+ * compacts the journal into a full snapshot (written to a temp file and atomically renamed) and truncates it.
+ *
+ * <p>Each journal line carries a sequence number and the snapshot records the last sequence it already
+ * contains, so {@link StatusJournalReader} can rebuild state from snapshot plus journal even if the process
+ * died between renaming the snapshot and truncating the journal.</p>
+ *
+ * <p>{@link #onTransition} may be called from any thread; flush, writeSnapshot and close are expected to be
+ * called from a single exporter thread and are synchronized for safety.</p>
+ */
+public class StatusJournal implements StatusTransitionListener, Closeable {
+    private static final int FLUSH_BUFFER_BYTES = 256 * 1024;
+
+    private final Path snapshotPath;
+    private final Path journalPath;
+    private final FileChannel journalChannel;
+    private final ConcurrentLinkedQueue<Entry> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ByteBuffer buffer = ByteBuffer.allocate(FLUSH_BUFFER_BYTES);
+    private long lastFlushedSeq;
+
+    private static final class Entry {
+        final long seq;
+        final UUID taskId;
+        final TaskStatus status;
+
+        Entry(long seq, UUID taskId, TaskStatus status) {
+            this.seq = seq;
+            this.taskId = taskId;
+            this.status = status;
+        }
+    }
+
+    /**
+     * Opens (or creates) the journal that sits next to the given snapshot file.
+     * @param snapshotPath The snapshot file, e.g. "task_statuses.json". The journal is "task_statuses.journal.jsonl".
+     * @throws IOException If the journal cannot be opened for appending.
+     */
+    public StatusJournal(String snapshotPath) throws IOException {
+        this.snapshotPath = Paths.get(snapshotPath);
+        this.journalPath = journalPathFor(this.snapshotPath);
+        this.journalChannel = FileChannel.open(journalPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.lastFlushedSeq = StatusJournalReader.lastSequence(this.snapshotPath, journalPath);
+        this.sequence.set(lastFlushedSeq);
+    }
+
+    /**
+     * Derives the journal path for a snapshot path by replacing a ".json" extension with ".journal.jsonl".
+     * @param snapshotPath The snapshot file.
+     * @return The journal file next to it.
+     */
+    public static Path journalPathFor(Path snapshotPath) {
+        String name = snapshotPath.getFileName().toString();
+        String base = name.endsWith(".json") ? name.substring(0, name.length() - ".json".length()) : name;
+        return snapshotPath.resolveSibling(base + ".journal.jsonl");
+    }
+
+    /**
+     * Queues a transition for the next flush. Called by the TaskStateStore after the change is visible,
+     * which keeps each task's transitions in causal order in the journal.
+     */
+    @Override
+    public void onTransition(UUID taskId, TaskStatus previous, TaskStatus current) {
+        pending.offer(new Entry(sequence.incrementAndGet(), taskId, current));
+    }
+
+    /**
+     * Appends every transition queued since the last flush to the journal.
+     * @return The number of transitions written.
+     * @throws IOException If the journal cannot be written.
+     */
+    public synchronized int flush() throws IOException {
+        int written = 0;
+        Entry entry;
+        while ((entry = pending.poll()) != null) {
+            byte[] line = toJsonLine(entry);
+            if (buffer.remaining() < line.length) {
+                writeBuffer();
+            }
+            if (line.length > buffer.capacity()) {
+                writeFully(ByteBuffer.wrap(line));
+            } else {
+                buffer.put(line);
+            }
+            lastFlushedSeq = Math.max(lastFlushedSeq, entry.seq);
+            written++;
+        }
+        writeBuffer();
+        return written;
+    }
+
+    /**
+     * Writes a compacted snapshot of the given statuses and truncates the journal it supersedes.
+     * Pending transitions are flushed first; any that arrive while the snapshot is being written stay queued
+     * and land in the fresh journal, where replaying them over the snapshot is harmless.
+     * @param taskStates The live statuses to snapshot.
+     * @return The number of entries in the snapshot.
+     * @throws IOException If the snapshot or journal cannot be written.
+     */
+    public synchronized int writeSnapshot(Map<UUID, TaskStatus> taskStates) throws IOException {
+        flush();
+        int count = JsonExporter.writeSnapshot(taskStates, snapshotPath, lastFlushedSeq);
+        journalChannel.truncate(0);
+        journalChannel.force(true);
+        return count;
+    }
+
+    public Path getSnapshotPath() {
+        return snapshotPath;
+    }
+
+    public Path getJournalPath() {
+        return journalPath;
+    }
+
+    /**
+     * Gets how many transitions are waiting for the next flush.
+     * @return The pending transition count.
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Flushes remaining transitions and closes the journal.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+            journalChannel.force(true);
+        } finally {
+            journalChannel.close();
+        }
+    }
+
+    private static byte[] toJsonLine(Entry entry) {
+        StringBuilder sb = new StringBuilder(80);
+        sb.append("{\"seq\":").append(entry.seq)
+                .append(",\"id\":\"").append(entry.taskId)
+                .append("\",\"status\":");
+        if (entry.status == null) {
+            sb.append("null");
+        } else {
+            sb.append('"').append(entry.status.name()).append('"');
+        }
+        sb.append("}\n");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            journalChannel.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.moadams.util;
+
+import com.moadams.enums.TaskStatus;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rebuilds task statuses from the files written by {@link StatusJournal}: the latest snapshot,
+ * then every journal line whose sequence is newer than the snapshot.
+ * Lines that do not parse, such as a final line torn by a crash, are skipped.
+ */
+public final class StatusJournalReader {
+    private static final Pattern SNAPSHOT_SEQ = Pattern.compile("^\\s*\"journal_seq\":\\s*(\\d+)");
+    private static final Pattern SNAPSHOT_ENTRY = Pattern.compile("^\\s*\"([0-9a-fA-F-]{36})\":\\s*\"([A-Z_]+)\"");
+    private static final Pattern JOURNAL_LINE =
+            Pattern.compile("^\\{\"seq\":(\\d+),\"id\":\"([0-9a-fA-F-]{36})\",\"status\":(?:\"([A-Z_]+)\"|null)}$");
+
+    private StatusJournalReader() {
+    }
+
+    /**
+     * Rebuilds the statuses for a snapshot written by StatusJournal (or JsonExporter) and its journal.
+     * @param snapshotPath The snapshot file; the journal path is derived from it.
+     * @return The reconstructed statuses; empty if neither file exists.
+     * @throws IOException If a file exists but cannot be read.
+     */
+    public static Map<UUID, TaskStatus> rebuild(String snapshotPath) throws IOException {
+        Path snapshot = Paths.get(snapshotPath);
+        return rebuild(snapshot, StatusJournal.journalPathFor(snapshot));
+    }
+
+    /**
+     * Rebuilds statuses from an explicit snapshot and journal pair.
+     * @param snapshotPath The snapshot file; may be missing.
+     * @param journalPath The journal file; may be missing.
+     * @return The reconstructed statuses.
+     * @throws IOException If a file exists but cannot be read.
+     */
+    public static Map<UUID, TaskStatus> rebuild(Path snapshotPath, Path journalPath) throws IOException {
+        Map<UUID, TaskStatus> states = new HashMap<>();
+        long snapshotSeq = readSnapshot(snapshotPath, states);
+        readJournal(journalPath, snapshotSeq, states);
+        return states;
+    }
+
+    /**
+     * Finds the highest sequence number already on disk so a reopened journal keeps counting from there.
+     */
+    static long lastSequence(Path snapshotPath, Path journalPath) throws IOException {
+        long snapshotSeq = readSnapshot(snapshotPath, null);
+        return Math.max(snapshotSeq, readJournal(journalPath, snapshotSeq, null));
+    }
+
+    private static long readSnapshot(Path snapshotPath, Map<UUID, TaskStatus> states) throws IOException {
+        long snapshotSeq = 0;
+        try (BufferedReader reader = Files.newBufferedReader(snapshotPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher entry = SNAPSHOT_ENTRY.matcher(line);
+                if (entry.find()) {
+                    TaskStatus status = parseStatus(entry.group(2));
+                    if (states != null && status != null) {
+                        states.put(UUID.fromString(entry.group(1)), status);
+                    }
+                    continue;
+                }
+                Matcher seq = SNAPSHOT_SEQ.matcher(line);
+                if (seq.find()) {
+                    snapshotSeq = Long.parseLong(seq.group(1));
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+        return snapshotSeq;
+    }
+
+    private static long readJournal(Path journalPath, long afterSeq, Map<UUID, TaskStatus> states) throws IOException {
+        long lastSeq = afterSeq;
+        try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher matcher = JOURNAL_LINE.matcher(line);
+                if (!matcher.matches()) {
+                    continue;
+                }
+                long seq = Long.parseLong(matcher.group(1));
+                if (seq <= afterSeq) {
+                    continue;
+                }
+                lastSeq = Math.max(lastSeq, seq);
+                if (states == null) {
+                    continue;
+                }
+                UUID taskId = UUID.fromString(matcher.group(2));
+                String statusName = matcher.group(3);
+                TaskStatus status = statusName == null ? null : parseStatus(statusName);
+                if (statusName != null && status == null) {
+                    continue;
+                }
+                if (status == null) {
+                    states.remove(taskId);
+                } else {
+                    states.put(taskId, status);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return lastSeq;
+        }
+        return lastSeq;
+    }
+
+    private static TaskStatus parseStatus(String name) {
+        try {
+            return TaskStatus.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
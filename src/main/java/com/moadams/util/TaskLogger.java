@@ -1,9 +1,19 @@
 package com.moadams.util;
 
+import com.moadams.enums.LogLevel;
+
+import java.io.PrintStream;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 
+/**
+ * TaskLogger writes timestamped, styled log lines for every component.
+ * By default each call formats and prints synchronously. {@link #startAsync(int)} switches to a
+ * background writer fed by a preallocated ring buffer, {@link #setLevel(LogLevel)} filters records
+ * before any formatting happens, and {@link #setAnsiEnabled(boolean)} turns off colours and icons
+ * for output that goes to files.
+ */
 public class TaskLogger {
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
 
@@ -33,29 +43,179 @@ public class TaskLogger {
     private static final String TASK_ICON = "📝";
     private static final String SHUTDOWN_ICON = "🔄";
 
+    private static final Style INFO = new Style("INFO", INFO_ICON, GREEN, LogLevel.INFO, false);
+    private static final Style WARN = new Style("WARN", WARNING_ICON, YELLOW, LogLevel.WARN, false);
+    private static final Style ERROR = new Style("ERROR", ERROR_ICON, RED + BOLD, LogLevel.ERROR, true);
+    private static final Style LOCK = new Style("LOCK_DEBUG", LOCK_ICON, PURPLE, LogLevel.DEBUG, false);
+    private static final Style SUCCESS = new Style("SUCCESS", SUCCESS_ICON, GREEN + BOLD, LogLevel.INFO, false);
+
+    private static volatile LogLevel minLevel = LogLevel.DEBUG;
+    private static volatile boolean ansiEnabled = true;
+    private static volatile PrintStream output;
+    private static volatile AsyncLogWriter asyncWriter;
+    private static boolean flushHookInstalled;
+
     public static void log(String message) {
-        String styledMessage = styleMessage(message);
-        System.out.println(getFormattedMessage("INFO", INFO_ICON, GREEN, styledMessage));
+        write(INFO, message);
     }
 
     public static void logWarning(String message) {
-        String styledMessage = styleMessage(message);
-        System.out.println(getFormattedMessage("WARN", WARNING_ICON, YELLOW, styledMessage));
+        write(WARN, message);
     }
 
     public static void logError(String message) {
-        String styledMessage = styleMessage(message);
-        System.err.println(getFormattedMessage("ERROR", ERROR_ICON, RED + BOLD, styledMessage));
+        write(ERROR, message);
     }
 
     public static void logLock(String message) {
-        String styledMessage = styleMessage(message);
-        System.out.println(getFormattedMessage("LOCK_DEBUG", LOCK_ICON, PURPLE, styledMessage));
+        write(LOCK, message);
     }
 
     public static void logSuccess(String message) {
-        String styledMessage = styleMessage(message);
-        System.out.println(getFormattedMessage("SUCCESS", SUCCESS_ICON, GREEN + BOLD, styledMessage));
+        write(SUCCESS, message);
+    }
+
+    /**
+     * Checks whether records at the given level would be written.
+     * Callers building expensive messages should guard them with this.
+     * @param level The level to check.
+     * @return true if the level passes the current filter.
+     */
+    public static boolean isEnabled(LogLevel level) {
+        return level.compareTo(minLevel) >= 0 && minLevel != LogLevel.OFF;
+    }
+
+    /**
+     * Sets the minimum level written; lower-level calls return before any formatting.
+     * @param level The minimum level, or OFF to silence all log calls.
+     */
+    public static void setLevel(LogLevel level) {
+        minLevel = level;
+    }
+
+    public static LogLevel getLevel() {
+        return minLevel;
+    }
+
+    /**
+     * Enables or disables ANSI colours and icons. Plain mode also skips the keyword styling pass.
+     * @param enabled false for plain output suitable for log files.
+     */
+    public static void setAnsiEnabled(boolean enabled) {
+        ansiEnabled = enabled;
+    }
+
+    /**
+     * Sends every log record (including errors) to one stream, e.g. a file; null restores stdout/stderr.
+     * @param stream The destination stream.
+     */
+    public static void setOutput(PrintStream stream) {
+        output = stream;
+    }
+
+    /**
+     * Switches to asynchronous logging: calls enqueue into a ring buffer of the given size and
+     * return immediately, and a background thread formats and writes records in batches.
+     * Records that arrive while the ring is full are dropped and counted. If the JVM exits before
+     * {@link #stopAsync()} is called, a shutdown hook flushes the buffered records.
+     * @param bufferSize The ring buffer size, rounded up to a power of two.
+     */
+    public static synchronized void startAsync(int bufferSize) {
+        if (asyncWriter == null) {
+            asyncWriter = new AsyncLogWriter(bufferSize, TaskLogger::appendFormatted);
+            if (!flushHookInstalled) {
+                Runtime.getRuntime().addShutdownHook(new Thread(TaskLogger::stopAsync, "TaskLogger-Flush"));
+                flushHookInstalled = true;
+            }
+        }
+    }
+
+    /**
+     * Flushes any buffered records and returns to synchronous logging.
+     */
+    public static synchronized void stopAsync() {
+        AsyncLogWriter writer = asyncWriter;
+        if (writer != null) {
+            asyncWriter = null;
+            writer.shutdown();
+        }
+    }
+
+    public static boolean isAsync() {
+        return asyncWriter != null;
+    }
+
+    /**
+     * Gets the number of records dropped because the async ring buffer was full.
+     * @return The dropped record count since async logging started, or 0 in synchronous mode.
+     */
+    public static long getDroppedCount() {
+        AsyncLogWriter writer = asyncWriter;
+        return writer == null ? 0 : writer.getDroppedCount();
+    }
+
+    private static void write(Style style, String message) {
+        if (!isEnabled(style.level)) {
+            return;
+        }
+        String threadName = Thread.currentThread().getName();
+        long now = System.currentTimeMillis();
+        AsyncLogWriter writer = asyncWriter;
+        if (writer != null) {
+            writer.offer(style, threadName, now, message);
+            return;
+        }
+        StringBuilder line = new StringBuilder(message.length() + 64);
+        appendLine(line, style, threadName, now, message);
+        (style.error ? stderr() : stdout()).print(line);
+    }
+
+    private static void appendFormatted(StringBuilder out, StringBuilder err, Style style, String threadName,
+                                        long timestampMillis, String message) {
+        appendLine(style.error ? err : out, style, threadName, timestampMillis, message);
+    }
+
+    private static void appendLine(StringBuilder sb, Style style, String threadName, long timestampMillis, String message) {
+        String timestamp = FORMATTER.format(Instant.ofEpochMilli(timestampMillis));
+        if (!ansiEnabled) {
+            sb.append('[').append(timestamp).append("] ").append(style.label);
+            for (int i = style.label.length(); i < 8; i++) {
+                sb.append(' ');
+            }
+            sb.append(' ').append(threadName).append(" | ").append(message).append(System.lineSeparator());
+            return;
+        }
+        sb.append(getFormattedMessage(style.label, style.icon, style.color, threadName, timestamp, styleMessage(message)))
+                .append(System.lineSeparator());
+    }
+
+    static PrintStream stdout() {
+        PrintStream stream = output;
+        return stream != null ? stream : System.out;
+    }
+
+    static PrintStream stderr() {
+        PrintStream stream = output;
+        return stream != null ? stream : System.err;
+    }
+
+    /**
+     * How one log method renders its records.
+     */
+    static final class Style {
+        private final String label;
+        private final String icon;
+        private final String color;
+        private final LogLevel level;
+        private final boolean error;
+
+        private Style(String label, String icon, String color, LogLevel level, boolean error) {
+            this.label = label;
+            this.icon = icon;
+            this.color = color;
+            this.level = level;
+            this.error = error;
+        }
     }
 
     public static void printLine(String color) {
@@ -134,15 +294,17 @@ public class TaskLogger {
 
         styled = styled.replace("SUBMITTED:", CYAN + "SUBMITTED:" + RESET);
         styled = styled.replace("PROCESSING:", YELLOW + "PROCESSING:" + RESET);
+        styled = styled.replace("RETRY_SCHEDULED:", PURPLE + "RETRY_SCHEDULED:" + RESET);
         styled = styled.replace("COMPLETED:", GREEN + "COMPLETED:" + RESET);
         styled = styled.replace("FAILED:", RED + "FAILED:" + RESET);
+        styled = styled.replace("CANCELLED:", BLUE + "CANCELLED:" + RESET);
+        styled = styled.replace("EXPIRED:", RED + "EXPIRED:" + RESET);
 
         return styled;
     }
 
-    private static String getFormattedMessage(String level, String icon, String levelColor, String message) {
-        String timestamp = FORMATTER.format(Instant.now());
-        String threadName = Thread.currentThread().getName();
+    private static String getFormattedMessage(String level, String icon, String levelColor, String threadName,
+                                              String timestamp, String message) {
 
 
         String styledThreadName = styleThreadName(threadName);
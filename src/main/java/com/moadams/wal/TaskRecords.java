@@ -0,0 +1,112 @@
+package com.moadams.wal;
+
+import com.moadams.model.RetryPolicy;
+import com.moadams.model.Task;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The binary encoding of a task shared by the write-ahead log and the spill file: its ID, priority, creation
+ * time, retry count, name, payload, resource keys, retry policy, idempotency key and tenant. Deadlines are
+ * monotonic-clock instants that mean nothing to another process, so they are not encoded.
+ */
+final class TaskRecords {
+    private TaskRecords() {
+    }
+
+    /**
+     * Writes a task. The payload is read once, so a payload held in the arena is decoded only here.
+     * @param out The stream to write to.
+     * @param task The task.
+     * @throws IOException If the stream cannot be written.
+     */
+    static void write(DataOutputStream out, Task task) throws IOException {
+        out.writeLong(task.getId().getMostSignificantBits());
+        out.writeLong(task.getId().getLeastSignificantBits());
+        out.writeInt(task.getPriority());
+        out.writeLong(task.getCreatedTimestamp().getEpochSecond());
+        out.writeInt(task.getCreatedTimestamp().getNano());
+        out.writeInt(task.getRetryCount());
+        writeString(out, task.getName());
+        writeString(out, task.getPayload());
+        out.writeInt(task.getResourceKeys().size());
+        for (String key : task.getResourceKeys()) {
+            writeString(out, key);
+        }
+        RetryPolicy policy = task.getRetryPolicy();
+        out.writeBoolean(policy != null);
+        if (policy != null) {
+            out.writeInt(policy.getMaxRetries());
+            out.writeLong(policy.getBaseDelayMillis());
+            out.writeLong(policy.getMaxDelayMillis());
+            out.writeDouble(policy.getMultiplier());
+            out.writeDouble(policy.getJitter());
+        }
+        out.writeBoolean(task.getIdempotencyKey() != null);
+        if (task.getIdempotencyKey() != null) {
+            writeString(out, task.getIdempotencyKey());
+        }
+        writeString(out, task.getTenant());
+    }
+
+    /**
+     * Reads the task ID at the start of a record.
+     */
+    static UUID readId(ByteBuffer record) {
+        return new UUID(record.getLong(), record.getLong());
+    }
+
+    /**
+     * Reads the rest of a task written by {@link #write} after its ID. The task takes a fresh sequence number.
+     * @param taskId The ID already read with {@link #readId}.
+     * @param record The record, positioned after the ID.
+     * @return The restored task.
+     * @throws IllegalArgumentException If a string length is corrupt.
+     * @throws java.nio.BufferUnderflowException If the record is cut short.
+     */
+    static Task read(UUID taskId, ByteBuffer record) {
+        int priority = record.getInt();
+        Instant created = Instant.ofEpochSecond(record.getLong(), record.getInt());
+        int retryCount = record.getInt();
+        String name = readString(record);
+        String payload = readString(record);
+        int keyCount = record.getInt();
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < keyCount; i++) {
+            keys.add(readString(record));
+        }
+        RetryPolicy policy = null;
+        if (record.get() != 0) {
+            policy = new RetryPolicy(record.getInt(), record.getLong(), record.getLong(), record.getDouble(), record.getDouble());
+        }
+        // Records written before idempotency keys and tenants were logged simply end here.
+        String idempotencyKey = record.hasRemaining() && record.get() != 0 ? readString(record) : null;
+        String tenant = record.hasRemaining() ? readString(record) : null;
+        Task task = Task.restore(taskId, name, priority, created, payload, keys, policy, retryCount, idempotencyKey);
+        task.setTenant(tenant);
+        return task;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0 || length > record.remaining()) {
+            throw new IllegalArgumentException("Corrupt string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
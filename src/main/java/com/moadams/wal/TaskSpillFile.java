@@ -0,0 +1,198 @@
+package com.moadams.wal;
+
+import com.moadams.model.Task;
+import com.moadams.util.TaskLogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * TaskSpillFile carries the backlog of a dispatcher without a write-ahead log across a restart. At shutdown
+ * the tasks left queued, waiting for a retry or interrupted mid-processing are written to it in creation
+ * order, each as a CRC-protected record in the write-ahead log's task encoding, so priority, retry count,
+ * idempotency key and tenant survive; the next dispatcher streams them back in that order.
+ *
+ * <p>The file is replaced atomically: records go to a temporary file that is forced to disk and then renamed
+ * over the spill file. Before loading, the spill file is renamed to {@code <name>.loading}, and that file is
+ * deleted only once every task in it is back in a queue or in the next spill, so a crash mid-load reloads the
+ * whole file (at-least-once) rather than losing what was not yet read.</p>
+ */
+public class TaskSpillFile {
+    private static final int MAGIC = 0x43515350; // "CQSP"
+    private static final int VERSION = 1;
+
+    private final Path path;
+    private final Path loadingPath;
+    private final Path temporaryPath;
+
+    /**
+     * Constructs a TaskSpillFile.
+     * @param path Where the spill file is kept; its directory must exist.
+     */
+    public TaskSpillFile(Path path) {
+        this.path = path;
+        this.loadingPath = path.resolveSibling(path.getFileName() + ".loading");
+        this.temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+    }
+
+    /**
+     * Claims the spill left by the previous run and opens it for streaming. If a previous load was cut short,
+     * its file is reloaded from the start.
+     * @return A reader positioned at the first task, or null if there is nothing to load.
+     * @throws IOException If the file cannot be renamed or opened, or is not a spill file.
+     */
+    public Reader openForLoading() throws IOException {
+        if (Files.exists(path)) {
+            // A newer spill supersedes an interrupted load: it already holds every task that load had not finished.
+            Files.move(path, loadingPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } else if (!Files.exists(loadingPath)) {
+            return null;
+        } else {
+            TaskLogger.logWarning("Reloading spill file " + loadingPath + " left by a load that did not finish.");
+        }
+        return new Reader(loadingPath);
+    }
+
+    /**
+     * Deletes the file being loaded, once every task in it has been queued.
+     * @throws IOException If the file cannot be deleted.
+     */
+    public void finishLoading() throws IOException {
+        Files.deleteIfExists(loadingPath);
+    }
+
+    /**
+     * Replaces the spill file with the given tasks, then deletes the file being loaded, whose unread tasks
+     * the caller is expected to have included.
+     * @param tasks The tasks, in the order they should be reloaded.
+     * @return How many bytes were written.
+     * @throws IOException If the file cannot be written; the previous files are then left as they were.
+     */
+    public long write(Collection<Task> tasks) throws IOException {
+        long written = 0;
+        if (!tasks.isEmpty()) {
+            try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+                DataOutputStream bodyOut = new DataOutputStream(body);
+                CRC32C crc = new CRC32C();
+                for (Task task : tasks) {
+                    body.reset();
+                    TaskRecords.write(bodyOut, task);
+                    crc.reset();
+                    crc.update(body.toByteArray());
+                    out.writeInt(body.size());
+                    out.writeInt((int) crc.getValue());
+                    body.writeTo(out);
+                }
+                out.flush();
+                written = out.size();
+                channel.force(true);
+            }
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.deleteIfExists(loadingPath);
+        return written;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Streams tasks out of a spill file one record at a time, so loading a large spill needs no more memory
+     * than the tasks already handed out.
+     */
+    public static final class Reader implements Closeable {
+        private final Path path;
+        private final DataInputStream in;
+        private int readCount;
+        private boolean finished;
+
+        private Reader(Path path) throws IOException {
+            this.path = path;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException(path + " is not a task spill file");
+                }
+            } catch (IOException e) {
+                in.close();
+                throw e instanceof EOFException ? new IOException(path + " is not a task spill file", e) : e;
+            }
+        }
+
+        /**
+         * Reads the next task. A record that is cut short or fails its CRC ends the file.
+         * @return The task, with a fresh sequence number, or null when there are no more.
+         * @throws IOException If the file cannot be read.
+         */
+        public Task next() throws IOException {
+            while (!finished) {
+                int length;
+                int expectedCrc;
+                byte[] body;
+                try {
+                    length = in.readInt();
+                    expectedCrc = in.readInt();
+                    if (length <= 0) {
+                        throw new EOFException();
+                    }
+                    body = in.readNBytes(length);
+                } catch (EOFException e) {
+                    finished = true;
+                    break;
+                }
+                CRC32C crc = new CRC32C();
+                crc.update(body);
+                if (body.length < length || (int) crc.getValue() != expectedCrc) {
+                    TaskLogger.logWarning("Spill file " + path.getFileName() + " ends with a torn record after " + readCount + " tasks.");
+                    finished = true;
+                    break;
+                }
+                try {
+                    ByteBuffer record = ByteBuffer.wrap(body);
+                    UUID taskId = TaskRecords.readId(record);
+                    Task task = TaskRecords.read(taskId, record);
+                    readCount++;
+                    return task;
+                } catch (BufferUnderflowException | IllegalArgumentException e) {
+                    TaskLogger.logWarning("Skipping unreadable record in spill file " + path.getFileName() + ".");
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return How many tasks have been read so far.
+         */
+        public int getReadCount() {
+            return readCount;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
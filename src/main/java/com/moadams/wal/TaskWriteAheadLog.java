@@ -0,0 +1,528 @@
+package com.moadams.wal;
+
+import com.moadams.enums.TaskStatus;
+import com.moadams.model.Task;
+import com.moadams.state.StatusTransitionListener;
+import com.moadams.state.TaskSubmissionListener;
+import com.moadams.util.TaskLogger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * TaskWriteAheadLog makes submitted tasks survive a crash. Every submission and status transition is appended
+ * to a segmented, memory-mapped log; on startup the log is replayed and every task that had not reached a
+ * terminal status (COMPLETED, FAILED, CANCELLED or EXPIRED) is handed back for re-queuing, with its retry count
+ * (at-least-once delivery). Deadlines are not logged, so a recovered task runs without one.
+ *
+ * <p>Appends are a CRC-protected memcpy into the active segment under a short lock. A single flusher thread
+ * forces dirty pages to disk (group commit): a submitter waits only until the flush that covers its record
+ * completes, and every record appended while one flush is in progress is made durable by the next, so many
+ * concurrent submissions share each fsync. Status transitions are not waited on; a lost transition only
+ * means the task is run again after a crash.</p>
+ *
+ * <p>A segment can be deleted once every task submitted into it is terminal. Segments are deleted oldest
+ * first only, so the status records of any surviving task are never removed. The flusher does this in the
+ * background.</p>
+ */
+public class TaskWriteAheadLog implements TaskSubmissionListener, StatusTransitionListener, Closeable {
+    private static final byte SUBMIT = 1;
+    private static final byte STATUS = 2;
+    private static final byte REMOVED = -1;
+    private static final int HEADER_BYTES = 8;
+    private static final long TRUNCATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long flushIntervalNanos;
+    private final Map<UUID, Integer> retryCounts;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final List<Segment> sealedUnforced = new ArrayList<>();
+    private Segment active;
+    private volatile long appendedLsn;
+
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition flushRequested = syncLock.newCondition();
+    private final Condition flushed = syncLock.newCondition();
+    private volatile long durableLsn;
+
+    private final ConcurrentHashMap<UUID, Segment> liveTaskSegments = new ConcurrentHashMap<>();
+    private final LongAdder groupCommits = new LongAdder();
+    private final List<Task> recoveredTasks;
+    private final Thread flusher;
+    private volatile boolean running = true;
+    private volatile IOException failure;
+
+    private static final class Segment {
+        final long id;
+        final Path path;
+        final MappedByteBuffer buffer;
+        final AtomicInteger liveTasks = new AtomicInteger();
+        int position;
+        int forcedPosition;
+
+        Segment(long id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    private static final class RecoveredTask {
+        final Task task;
+        final Segment segment;
+        TaskStatus status = TaskStatus.SUBMITTED;
+        int retryCount;
+
+        RecoveredTask(Task task, Segment segment) {
+            this.task = task;
+            this.segment = segment;
+            this.retryCount = task.getRetryCount();
+        }
+    }
+
+    /**
+     * Opens the log in the given directory, replaying any existing segments, and starts the flusher thread.
+     * @param directory The directory holding the segments; created if missing.
+     * @param segmentBytes The size of each memory-mapped segment.
+     * @param flushIntervalMillis How often transitions that nobody waits on are forced to disk.
+     * @param retryCounts The dispatcher's retry counts, read when a transition is logged.
+     * @throws IOException If the directory or a segment cannot be read or created.
+     */
+    public TaskWriteAheadLog(Path directory, int segmentBytes, long flushIntervalMillis,
+                             Map<UUID, Integer> retryCounts) throws IOException {
+        if (segmentBytes < 4096) {
+            throw new IllegalArgumentException("WAL segments must be at least 4096 bytes: " + segmentBytes);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMillis));
+        this.retryCounts = retryCounts;
+        Files.createDirectories(directory);
+
+        this.recoveredTasks = Collections.unmodifiableList(replay());
+        long nextId = segments.isEmpty() ? 1 : segments.peekLast().id + 1;
+        this.active = createSegment(nextId);
+        segments.addLast(active);
+
+        this.flusher = new Thread(this::runFlusher, "TaskWal-Flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Gets the tasks that were live when the log was last written, in submission order,
+     * with their retry counts restored. Their status should be set back to SUBMITTED before re-queuing.
+     * @return The recovered tasks.
+     */
+    public List<Task> getRecoveredTasks() {
+        return recoveredTasks;
+    }
+
+    /**
+     * Logs the submissions and blocks until they are durable.
+     */
+    @Override
+    public void onSubmitted(Collection<Task> tasks) {
+        long lsn = 0;
+        for (Task task : tasks) {
+            lsn = append(encodeSubmit(task), task.getId());
+        }
+        if (lsn > 0) {
+            awaitDurable(lsn);
+        }
+    }
+
+    /**
+     * Logs a status transition without waiting for it to reach the disk. A transition after {@link #close()},
+     * such as a late completion during shutdown, is logged and dropped; the task is then recovered as it was.
+     */
+    @Override
+    public void onTransition(UUID taskId, TaskStatus previous, TaskStatus current) {
+        if (append(encodeStatus(taskId, current, retryCounts.getOrDefault(taskId, 0)), null) < 0) {
+            TaskLogger.logWarning("Write-ahead log is closed; dropped the " + previous + " -> " + current +
+                    " transition of task " + taskId + ".");
+            return;
+        }
+        if (current == null || current.isTerminal()) {
+            Segment segment = liveTaskSegments.remove(taskId);
+            if (segment != null) {
+                segment.liveTasks.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return How many fsyncs have been issued; compare with submissions to see how well commits are grouped.
+     */
+    public long getGroupCommitCount() {
+        return groupCommits.sum();
+    }
+
+    /**
+     * @return How many segments are on disk, including the active one.
+     */
+    public int getSegmentCount() {
+        appendLock.lock();
+        try {
+            return segments.size();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * @return How many logged tasks have not yet reached a terminal state.
+     */
+    public int getLiveTaskCount() {
+        return liveTaskSegments.size();
+    }
+
+    /**
+     * Flushes everything appended so far and stops the flusher thread.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        syncLock.lock();
+        try {
+            flushRequested.signalAll();
+        } finally {
+            syncLock.unlock();
+        }
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return The record's sequence number, or -1 if the log is closed and the record is a transition.
+     * @throws IllegalStateException If the log is closed and the record is a submission, which cannot be made durable.
+     */
+    private long append(byte[] body, UUID submittedTaskId) {
+        int recordBytes = HEADER_BYTES + body.length;
+        if (recordBytes > segmentBytes) {
+            throw new IllegalArgumentException("WAL record of " + recordBytes + " bytes does not fit a " + segmentBytes + "-byte segment");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        appendLock.lock();
+        try {
+            if (!running) {
+                if (submittedTaskId == null) {
+                    return -1;
+                }
+                throw new IllegalStateException("Write-ahead log is closed");
+            }
+            if (active.position + recordBytes > segmentBytes) {
+                roll();
+            }
+            int position = active.position;
+            active.buffer.putInt(position + 4, (int) crc.getValue());
+            active.buffer.put(position + HEADER_BYTES, body);
+            active.buffer.putInt(position, body.length);
+            active.position += recordBytes;
+            if (submittedTaskId != null && liveTaskSegments.putIfAbsent(submittedTaskId, active) == null) {
+                active.liveTasks.incrementAndGet();
+            }
+            return ++appendedLsn;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void roll() {
+        sealedUnforced.add(active);
+        try {
+            active = createSegment(active.id + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create WAL segment", e);
+        }
+        segments.addLast(active);
+    }
+
+    private void awaitDurable(long lsn) {
+        if (durableLsn >= lsn) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            flushRequested.signal();
+            while (durableLsn < lsn) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Write-ahead log flush failed", failure);
+                }
+                if (!flusher.isAlive()) {
+                    throw new IllegalStateException("Write-ahead log is closed");
+                }
+                flushed.awaitUninterruptibly();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void runFlusher() {
+        long lastTruncate = System.nanoTime();
+        try {
+            while (running || durableLsn < appendedLsn) {
+                syncLock.lock();
+                try {
+                    if (running && durableLsn >= appendedLsn) {
+                        flushRequested.awaitNanos(flushIntervalNanos);
+                    }
+                } finally {
+                    syncLock.unlock();
+                }
+                flushOnce();
+                if (System.nanoTime() - lastTruncate >= TRUNCATE_INTERVAL_NANOS) {
+                    truncateCompletedSegments();
+                    lastTruncate = System.nanoTime();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            failure = new IOException("WAL flush failed: " + e.getMessage(), e);
+            TaskLogger.logError("Write-ahead log flusher stopped: " + e.getMessage());
+        } finally {
+            syncLock.lock();
+            try {
+                flushed.signalAll();
+            } finally {
+                syncLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Forces every record appended so far, then wakes the submitters it covered.
+     */
+    private void flushOnce() {
+        List<Segment> sealed;
+        Segment current;
+        int forceTo;
+        long target;
+        appendLock.lock();
+        try {
+            target = appendedLsn;
+            if (target == durableLsn) {
+                return;
+            }
+            sealed = new ArrayList<>(sealedUnforced);
+            sealedUnforced.clear();
+            current = active;
+            forceTo = current.position;
+        } finally {
+            appendLock.unlock();
+        }
+
+        for (Segment segment : sealed) {
+            force(segment, segment.position);
+        }
+        force(current, forceTo);
+        groupCommits.increment();
+
+        syncLock.lock();
+        try {
+            durableLsn = target;
+            flushed.signalAll();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private static void force(Segment segment, int upTo) {
+        if (upTo > segment.forcedPosition) {
+            segment.buffer.force(segment.forcedPosition, upTo - segment.forcedPosition);
+            segment.forcedPosition = upTo;
+        }
+    }
+
+    private void truncateCompletedSegments() {
+        List<Segment> removed = new ArrayList<>();
+        appendLock.lock();
+        try {
+            while (segments.size() > 1) {
+                Segment oldest = segments.peekFirst();
+                if (oldest == active || oldest.liveTasks.get() > 0 || sealedUnforced.contains(oldest)) {
+                    break;
+                }
+                removed.add(segments.pollFirst());
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        for (Segment segment : removed) {
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                TaskLogger.logWarning("Could not delete completed WAL segment " + segment.path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private Segment createSegment(long id) throws IOException {
+        Path path = directory.resolve(segmentFileName(id));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+        }
+    }
+
+    private static String segmentFileName(long id) {
+        return String.format("wal-%020d.log", id);
+    }
+
+    /**
+     * Reads every existing segment in order and rebuilds the set of live tasks and their segment bookkeeping.
+     * A record that is cut short or fails its CRC ends that segment; anything after it was never acknowledged.
+     */
+    private List<Task> replay() throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "wal-*.log")) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(name.substring(4, name.length() - 4)), path);
+                } catch (NumberFormatException e) {
+                    TaskLogger.logWarning("Ignoring unexpected file in WAL directory: " + path);
+                }
+            }
+        }
+
+        LinkedHashMap<UUID, RecoveredTask> tasks = new LinkedHashMap<>();
+        for (Map.Entry<Long, Path> file : files.entrySet()) {
+            Segment segment = new Segment(file.getKey(), file.getValue(), null);
+            segments.addLast(segment);
+            ByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(file.getValue(), StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            readSegment(buffer, segment, tasks);
+        }
+
+        List<Task> live = new ArrayList<>();
+        for (Map.Entry<UUID, RecoveredTask> entry : tasks.entrySet()) {
+            RecoveredTask recovered = entry.getValue();
+            if (recovered.status.isTerminal()) {
+                continue;
+            }
+            Task task = recovered.task;
+            Task restored = Task.restore(task.getId(), task.getName(), task.getPriority(), task.getCreatedTimestamp(),
+                    task.getPayload(), task.getResourceKeys(), task.getRetryPolicy(), recovered.retryCount,
+                    task.getIdempotencyKey());
+            restored.setTenant(task.getTenant());
+            live.add(restored);
+            liveTaskSegments.put(entry.getKey(), recovered.segment);
+            recovered.segment.liveTasks.incrementAndGet();
+        }
+        if (!files.isEmpty()) {
+            TaskLogger.log("Replayed " + files.size() + " WAL segments from " + directory + ": " +
+                    tasks.size() + " tasks logged, " + live.size() + " to recover.");
+        }
+        return live;
+    }
+
+    private static void readSegment(ByteBuffer buffer, Segment segment, Map<UUID, RecoveredTask> tasks) {
+        while (buffer.remaining() >= HEADER_BYTES) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int expectedCrc = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                return;
+            }
+            byte[] body = new byte[length];
+            buffer.get(body);
+            CRC32C crc = new CRC32C();
+            crc.update(body);
+            if ((int) crc.getValue() != expectedCrc) {
+                TaskLogger.logWarning("WAL segment " + segment.path.getFileName() + " ends with a torn record at offset " + start + ".");
+                return;
+            }
+            try {
+                applyRecord(ByteBuffer.wrap(body), segment, tasks);
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                TaskLogger.logWarning("Skipping unreadable WAL record in " + segment.path.getFileName() + " at offset " + start + ".");
+            }
+        }
+    }
+
+    private static void applyRecord(ByteBuffer record, Segment segment, Map<UUID, RecoveredTask> tasks) {
+        byte type = record.get();
+        UUID taskId = TaskRecords.readId(record);
+        if (type == SUBMIT) {
+            tasks.putIfAbsent(taskId, new RecoveredTask(TaskRecords.read(taskId, record), segment));
+        } else if (type == STATUS) {
+            byte status = record.get();
+            int retryCount = record.getInt();
+            RecoveredTask recovered = tasks.get(taskId);
+            if (recovered == null) {
+                return;
+            }
+            if (status == REMOVED) {
+                // The task was withdrawn (e.g. the queue refused it); it must not be resurrected.
+                tasks.remove(taskId);
+            } else {
+                recovered.status = TaskStatus.fromCode(status);
+                recovered.retryCount = Math.max(recovered.retryCount, retryCount);
+            }
+        }
+    }
+
+    private static byte[] encodeSubmit(Task task) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(SUBMIT);
+            TaskRecords.write(out, task);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] encodeStatus(UUID taskId, TaskStatus status, int retryCount) {
+        ByteBuffer record = ByteBuffer.allocate(1 + 16 + 1 + 4);
+        record.put(STATUS);
+        record.putLong(taskId.getMostSignificantBits());
+        record.putLong(taskId.getLeastSignificantBits());
+        record.put(status == null ? REMOVED : status.getCode());
+        record.putInt(retryCount);
+        return record.array();
+    }
+}
@@ -0,0 +1,68 @@
+package com.moadams.service;
+
+import com.moadams.enums.TaskStatus;
+import com.moadams.model.Task;
+import com.moadams.model.TaskGraph;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TaskGraphHandleTest {
+    private TaskDispatcher dispatcher;
+
+    @AfterEach
+    void shutDown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void interruptedRootSubmitCancelsWholeGraph() throws Exception {
+        // One queue slot and no workers: the first root fills the queue and the second blocks waiting for space.
+        dispatcher = new TaskDispatcher(1, 1, new Object(), new Object(), false);
+        Task first = new Task("Graph-first", 5, "x");
+        Task second = new Task("Graph-second", 5, "x");
+        Task third = new Task("Graph-third", 5, "x");
+        Task join = new Task("Graph-join", 5, "x");
+        TaskGraph graph = TaskGraph.builder("interrupted").add(first).add(second).add(third)
+                .add(join, first, second).build();
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        Thread submitter = new Thread(() -> {
+            try {
+                dispatcher.submitGraph(graph);
+            } catch (Throwable t) {
+                thrown.set(t);
+            } finally {
+                done.countDown();
+            }
+        }, "Graph-submitter");
+        submitter.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (submitter.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(Thread.State.WAITING, submitter.getState(), "the second root should block on the full queue");
+        TaskGraphHandle handle = dispatcher.getActiveGraphs().iterator().next();
+        submitter.interrupt();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertInstanceOf(InterruptedException.class, thrown.get());
+        assertTrue(handle.isDone(), "the graph should settle even though some roots were never submitted");
+        assertTrue(handle.isCancelled());
+        assertEquals(TaskStatus.CANCELLED, handle.getStatus());
+        assertEquals(0, handle.getHeldCount());
+        for (Task task : graph.getTasks()) {
+            assertEquals(TaskStatus.CANCELLED, handle.getTaskStatus(task), task.getName());
+        }
+        assertTrue(dispatcher.getActiveGraphs().isEmpty());
+    }
+}